@@ -0,0 +1,217 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.velocity.context.Context;
+import org.arachna.ant.AntHelper;
+import org.arachna.netweaver.dc.types.Compartment;
+import org.arachna.netweaver.dc.types.CompartmentState;
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.arachna.netweaver.dc.types.DevelopmentConfiguration;
+import org.arachna.netweaver.dc.types.PublicPart;
+import org.arachna.netweaver.dc.types.PublicPartReference;
+import org.arachna.netweaver.dc.types.PublicPartType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time {@link BuildFileGenerator} needs to set up the contexts of and render the build files of a synthetic graph of
+ * development components and to group them into levels for the aggregated build file.
+ * 
+ * Each synthetic development component uses up to three development components created before it, so that the graph has several
+ * levels.
+ * 
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BuildFileGeneratorBenchmark {
+    /**
+     * path to workspace folder.
+     */
+    private static final String WORKSPACE = "/opt/jenkins/jobs/example-track/workspace";
+
+    /**
+     * An example vendor.
+     */
+    private static final String VENDOR = "example.org";
+
+    /**
+     * source folders of the synthetic development components.
+     */
+    private static final Collection<String> SOURCES = Arrays.asList("src/packages", "test/packages");
+
+    /**
+     * manifest of the (empty) source folders of the synthetic development components.
+     */
+    private static final SourceManifest MANIFEST = SourceManifest.scan(SOURCES);
+
+    /**
+     * number of synthetic development components to generate build files for.
+     */
+    @Param({ "10", "100", "1000" })
+    private int componentCount;
+
+    /**
+     * number of folders in the class path of each synthetic development component.
+     */
+    @Param({ "20", "200" })
+    private int classPathWidth;
+
+    /**
+     * the generator under test.
+     */
+    private BuildFileGenerator generator;
+
+    /**
+     * the synthetic development components.
+     */
+    private List<DevelopmentComponent> components;
+
+    /**
+     * build files of the synthetic development components.
+     */
+    private Map<DevelopmentComponent, String> buildFiles;
+
+    /**
+     * Create the synthetic development components and the generator.
+     */
+    @Setup
+    public void setUp() {
+        final DevelopmentComponentFactory dcFactory = new DevelopmentComponentFactory();
+        final Set<String> classPath = new HashSet<String>();
+
+        for (int i = 0; i < classPathWidth; i++) {
+            classPath.add(String.format("%s/.dtc/DCs/sap.com/lib%d/_comp/gen/default/public/api/lib/java", WORKSPACE, i));
+        }
+
+        final AntHelper antHelper = new AntHelper(WORKSPACE, dcFactory) {
+            @Override
+            public Collection<String> createSourceFileSets(final DevelopmentComponent component) {
+                return new ArrayList<String>(SOURCES);
+            }
+
+            @Override
+            public Set<String> createClassPath(final DevelopmentComponent component) {
+                return classPath;
+            }
+        };
+
+        final DevelopmentConfiguration config = new DevelopmentConfiguration("DI1_Example_D");
+        final Compartment compartment = Compartment.create(VENDOR, "SC1", CompartmentState.Source, "");
+        config.add(compartment);
+        components = new ArrayList<DevelopmentComponent>(componentCount);
+        buildFiles = new LinkedHashMap<DevelopmentComponent, String>();
+
+        for (int i = 0; i < componentCount; i++) {
+            final DevelopmentComponent component =
+                dcFactory.create(VENDOR, "lib/dc" + i, new PublicPart[] { new PublicPart("api", "", "", PublicPartType.COMPILE) },
+                    createReferences(i));
+            component.setOutputFolder(String.format("%s/.dtc/t/%d/classes", WORKSPACE, i));
+            compartment.add(component);
+            components.add(component);
+            buildFiles.put(component, String.format("%s/.dtc/t/%d/cobertura-build.xml", WORKSPACE, i));
+        }
+
+        generator = new BuildFileGenerator(antHelper, "UTF-8", "/opt/jenkins/plugins/NWDI-Cobertura-Plugin/WEB-INF/lib", 0);
+    }
+
+    /**
+     * Create the references of the synthetic development component with the given index to the development components it uses.
+     * 
+     * @param index
+     *            index of synthetic development component
+     * @return references to the public parts of up to three development components created before the given one
+     */
+    private PublicPartReference[] createReferences(final int index) {
+        final Set<Integer> used = new HashSet<Integer>();
+
+        if (index > 0) {
+            used.add(index - 1);
+            used.add(index / 2);
+            used.add(index / 3);
+        }
+
+        final List<PublicPartReference> references = new ArrayList<PublicPartReference>();
+
+        for (final Integer usedIndex : used) {
+            references.add(new PublicPartReference(VENDOR, "lib/dc" + usedIndex, "api"));
+        }
+
+        return references.toArray(new PublicPartReference[references.size()]);
+    }
+
+    /**
+     * Set up the velocity contexts of the build files of all synthetic development components without rendering them.
+     * 
+     * @return total number of keys of the created contexts
+     */
+    @Benchmark
+    public int createContexts() {
+        int keys = 0;
+
+        for (final DevelopmentComponent component : components) {
+            final Context context = generator.createContext(component, SOURCES, MANIFEST);
+            keys += context.getKeys().length;
+        }
+
+        return keys;
+    }
+
+    /**
+     * Set up the velocity context of the aggregated build file, i.e. group the synthetic development components into levels.
+     * 
+     * @return the created context
+     */
+    @Benchmark
+    public Context createAggregateContext() {
+        return generator.createAggregateContext(buildFiles, 4);
+    }
+
+    /**
+     * Render the build files of all synthetic development components.
+     * 
+     * @return total length of the rendered build files
+     * @throws IOException
+     *             when rendering a build file failed
+     */
+    @Benchmark
+    public int generateBuildFiles() throws IOException {
+        int length = 0;
+
+        for (final DevelopmentComponent component : components) {
+            final StringWriter writer = new StringWriter();
+            generator.evaluateContext(component, writer, SOURCES, MANIFEST);
+            length += writer.getBuffer().length();
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.arachna.netweaver.dc.types.PublicPart;
+import org.arachna.netweaver.dc.types.PublicPartReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading the Cobertura data files of a set of synthetic development components and merging them into track level coverage
+ * data as done by {@link CoverageAggregator}.
+ * 
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = { "-Xmx1g" })
+public class CoverageDataBenchmark {
+    /**
+     * number of classes per synthetic development component.
+     */
+    private static final int CLASSES_PER_COMPONENT = 50;
+
+    /**
+     * number of lines per class.
+     */
+    private static final int LINES_PER_CLASS = 100;
+
+    /**
+     * number of synthetic development components.
+     */
+    @Param({ "10", "100" })
+    private int componentCount;
+
+    /**
+     * folder containing the data files.
+     */
+    private File folder;
+
+    /**
+     * the data files of the synthetic development components.
+     */
+    private List<File> dataFiles;
+
+    /**
+     * the synthetic development components the data files belong to.
+     */
+    private List<DevelopmentComponent> components;
+
+    /**
+     * the coverage data of the synthetic development components (loaded anew for each invocation since merging changes it).
+     */
+    private List<ProjectData> projectData;
+
+    /**
+     * Create the data files of the synthetic development components. Every other development component shares its classes with the
+     * previous one, so that merging has to combine the data of classes.
+     * 
+     * @throws IOException
+     *             when the folder for the data files could not be created
+     */
+    @Setup
+    public void setUp() throws IOException {
+        folder = File.createTempFile("coverage", "");
+        folder.delete();
+
+        if (!folder.mkdirs()) {
+            throw new IOException(String.format("Could not create %s.", folder.getAbsolutePath()));
+        }
+
+        dataFiles = new ArrayList<File>(componentCount);
+        components = new ArrayList<DevelopmentComponent>(componentCount);
+        final DevelopmentComponentFactory factory = new DevelopmentComponentFactory();
+
+        for (int i = 0; i < componentCount; i++) {
+            final File dataFile = new File(folder, String.format("cobertura%d.ser", i));
+            CoverageDataFileHandler.saveCoverageData(createProjectData(i / 2, i), dataFile);
+            dataFiles.add(dataFile);
+            components.add(factory.create("example.org", String.format("dc%d", i), new PublicPart[0],
+                new PublicPartReference[0]));
+        }
+    }
+
+    /**
+     * Load the coverage data of the synthetic development components for merging.
+     */
+    @Setup(Level.Invocation)
+    public void loadProjectData() {
+        projectData = new ArrayList<ProjectData>(componentCount);
+
+        for (final File dataFile : dataFiles) {
+            projectData.add(CoverageDataFileHandler.loadCoverageData(dataFile));
+        }
+    }
+
+    /**
+     * Create the coverage data of a synthetic development component.
+     * 
+     * @param packageIndex
+     *            index of the package containing the classes of the development component
+     * @param seed
+     *            value varying the lines and branches covered
+     * @return the coverage data of a synthetic development component
+     */
+    private ProjectData createProjectData(final int packageIndex, final int seed) {
+        final ProjectData data = new ProjectData();
+
+        for (int i = 0; i < CLASSES_PER_COMPONENT; i++) {
+            final ClassData classData = new ClassData(String.format("org.example.p%d.C%d", packageIndex, i));
+
+            for (int line = 1; line <= LINES_PER_CLASS; line++) {
+                classData.addLine(line, "m", "()V");
+
+                if (line % 10 == 0) {
+                    classData.addLineJump(line, 0);
+                    classData.touchJump(line, 0, (line + seed) % 3 == 0, 1);
+                }
+
+                if ((line + seed) % 3 != 0) {
+                    classData.touch(line, 1);
+                }
+            }
+
+            data.addClassData(classData);
+        }
+
+        return data;
+    }
+
+    /**
+     * Remove the data files.
+     */
+    @TearDown
+    public void tearDown() {
+        for (final File dataFile : dataFiles) {
+            dataFile.delete();
+        }
+
+        folder.delete();
+    }
+
+    /**
+     * Load the data files of all synthetic development components.
+     * 
+     * @return total number of classes loaded
+     */
+    @Benchmark
+    public int load() {
+        int classes = 0;
+
+        for (final File dataFile : dataFiles) {
+            classes += CoverageDataFileHandler.loadCoverageData(dataFile).getNumberOfClasses();
+        }
+
+        return classes;
+    }
+
+    /**
+     * Merge the coverage data of all synthetic development components already loaded into memory.
+     * 
+     * @return number of covered lines of the merged coverage data
+     */
+    @Benchmark
+    public int merge() {
+        final ProjectData merged = new ProjectData();
+
+        for (final ProjectData data : projectData) {
+            merged.merge(data);
+        }
+
+        return merged.getNumberOfCoveredLines();
+    }
+
+    /**
+     * Load and merge the data files of all synthetic development components using {@link CoverageAggregator}.
+     * 
+     * @return number of covered lines of the merged coverage data
+     */
+    @Benchmark
+    public int aggregate() {
+        final CoverageAggregator aggregator = new CoverageAggregator(components);
+
+        for (int i = 0; i < componentCount; i++) {
+            aggregator.add(components.get(i), dataFiles.get(i), Collections.<String> emptyList());
+        }
+
+        return aggregator.getProjectData().getNumberOfCoveredLines();
+    }
+}
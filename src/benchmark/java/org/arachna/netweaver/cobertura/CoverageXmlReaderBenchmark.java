@@ -0,0 +1,185 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Compares reading a synthetic Cobertura coverage report using {@link CoverageXmlReader} with loading it into a DOM and computing the
+ * same line and branch counts from it.
+ * 
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = { "-Xmx1g" })
+public class CoverageXmlReaderBenchmark {
+    /**
+     * number of lines per class of the synthetic report.
+     */
+    private static final int LINES_PER_CLASS = 100;
+
+    /**
+     * number of classes in the synthetic report.
+     */
+    @Param({ "500", "5000" })
+    private int classCount;
+
+    /**
+     * the synthetic coverage report.
+     */
+    private byte[] report;
+
+    /**
+     * Create the synthetic coverage report.
+     * 
+     * @throws IOException
+     *             never
+     */
+    @Setup
+    public void setUp() throws IOException {
+        final StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<coverage line-rate=\"0.5\" branch-rate=\"0.5\">\n");
+        xml.append("<packages>\n");
+
+        for (int i = 0; i < classCount; i++) {
+            if (i % 20 == 0) {
+                if (i > 0) {
+                    xml.append("</classes></package>\n");
+                }
+
+                xml.append(String.format("<package name=\"org.example.p%d\"><classes>\n", i / 20));
+            }
+
+            xml.append(String.format("<class name=\"org.example.p%d.C%d\" filename=\"org/example/p%d/C%d.java\">\n", i / 20, i,
+                i / 20, i));
+            xml.append("<methods><method name=\"m\" signature=\"()V\"><lines>");
+            appendLines(xml);
+            xml.append("</lines></method></methods>\n<lines>");
+            appendLines(xml);
+            xml.append("</lines></class>\n");
+        }
+
+        xml.append("</classes></package>\n</packages>\n</coverage>\n");
+        report = xml.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * Append the lines of a class to the synthetic report.
+     * 
+     * @param xml
+     *            the report to append to
+     */
+    private void appendLines(final StringBuilder xml) {
+        for (int line = 1; line <= LINES_PER_CLASS; line++) {
+            if (line % 10 == 0) {
+                xml.append(String.format(
+                    "<line number=\"%d\" hits=\"%d\" branch=\"true\" condition-coverage=\"50%% (1/2)\"><conditions>"
+                        + "<condition number=\"0\" type=\"jump\" coverage=\"50%%\"/></conditions></line>", line, line % 3));
+            }
+            else {
+                xml.append(String.format("<line number=\"%d\" hits=\"%d\" branch=\"false\"/>", line, line % 3));
+            }
+        }
+    }
+
+    /**
+     * Read the synthetic report using the StAX based {@link CoverageXmlReader}.
+     * 
+     * @return number of covered lines and branches
+     * @throws XMLStreamException
+     *             when parsing the report failed
+     */
+    @Benchmark
+    public int readUsingStax() throws XMLStreamException {
+        final CoverageModel model = new CoverageXmlReader().read(new ByteArrayInputStream(report));
+
+        return model.getLinesCovered() + model.getBranchesCovered();
+    }
+
+    /**
+     * Load the synthetic report into a DOM and count covered lines and branches.
+     * 
+     * @return number of covered lines and branches
+     * @throws ParserConfigurationException
+     *             when no document builder could be created
+     * @throws SAXException
+     *             when parsing the report failed
+     * @throws IOException
+     *             when reading the report failed
+     */
+    @Benchmark
+    public int readUsingDom() throws ParserConfigurationException, SAXException, IOException {
+        final DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        final Document document = builder.parse(new ByteArrayInputStream(report));
+        final NodeList classes = document.getElementsByTagName("class");
+        int covered = 0;
+
+        for (int i = 0; i < classes.getLength(); i++) {
+            for (Node child = classes.item(i).getFirstChild(); child != null; child = child.getNextSibling()) {
+                if ("lines".equals(child.getNodeName())) {
+                    covered += countCovered((Element)child);
+                }
+            }
+        }
+
+        return covered;
+    }
+
+    /**
+     * Count covered lines and branches of the given <code>lines</code> element.
+     * 
+     * @param lines
+     *            a <code>lines</code> element of a class
+     * @return number of covered lines and branches
+     */
+    private int countCovered(final Element lines) {
+        final NodeList lineElements = lines.getElementsByTagName("line");
+        int covered = 0;
+
+        for (int i = 0; i < lineElements.getLength(); i++) {
+            final Element line = (Element)lineElements.item(i);
+
+            if (Long.parseLong(line.getAttribute("hits")) > 0) {
+                covered++;
+            }
+
+            final String conditionCoverage = line.getAttribute("condition-coverage");
+
+            if (conditionCoverage.length() > 0) {
+                covered +=
+                    Integer.parseInt(conditionCoverage.substring(conditionCoverage.indexOf('(') + 1,
+                        conditionCoverage.indexOf('/')));
+            }
+        }
+
+        return covered;
+    }
+}
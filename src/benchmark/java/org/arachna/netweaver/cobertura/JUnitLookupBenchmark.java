@@ -0,0 +1,216 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.arachna.ant.AntHelper;
+import org.arachna.netweaver.dc.types.Compartment;
+import org.arachna.netweaver.dc.types.CompartmentState;
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.arachna.netweaver.dc.types.DevelopmentConfiguration;
+import org.arachna.netweaver.dc.types.PublicPart;
+import org.arachna.netweaver.dc.types.PublicPartReference;
+import org.arachna.netweaver.dc.types.PublicPartType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time {@link BuildFileGenerator#hasJunitInClassPath(DevelopmentComponent)} needs to find JUnit in the class paths of
+ * a set of synthetic development components.
+ * 
+ * The class path folders are synthetic directory trees containing (empty) archives. Only the last folder of the class path contains
+ * a JUnit archive so that every other folder has to be searched completely. Each invocation uses a new generator, i.e. an empty
+ * class path cache.
+ * 
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JUnitLookupBenchmark {
+    /**
+     * An example vendor.
+     */
+    private static final String VENDOR = "example.org";
+
+    /**
+     * number of sub folders of each folder of a synthetic directory tree.
+     */
+    private static final int FAN_OUT = 3;
+
+    /**
+     * depth of a synthetic directory tree.
+     */
+    private static final int DEPTH = 3;
+
+    /**
+     * number of archives in each folder of a synthetic directory tree.
+     */
+    private static final int ARCHIVES_PER_FOLDER = 5;
+
+    /**
+     * number of synthetic development components to look up JUnit for.
+     */
+    @Param({ "10", "100", "1000" })
+    private int componentCount;
+
+    /**
+     * number of folders in the class path of each synthetic development component.
+     */
+    @Param({ "20", "200" })
+    private int classPathWidth;
+
+    /**
+     * folder containing the synthetic class path folders.
+     */
+    private File workspace;
+
+    /**
+     * helper returning the synthetic class path.
+     */
+    private AntHelper antHelper;
+
+    /**
+     * the synthetic development components.
+     */
+    private List<DevelopmentComponent> components;
+
+    /**
+     * Create the synthetic class path folders and development components.
+     * 
+     * @throws IOException
+     *             when the synthetic class path folders could not be created
+     */
+    @Setup
+    public void setUp() throws IOException {
+        workspace = File.createTempFile("workspace", "");
+        workspace.delete();
+
+        final Set<String> classPath = new LinkedHashSet<String>();
+
+        for (int i = 0; i < classPathWidth; i++) {
+            final File folder = new File(workspace, String.format(".dtc/DCs/sap.com/lib%d/_comp/gen/default/public/api/lib/java", i));
+            createTree(folder, DEPTH);
+            classPath.add(folder.getAbsolutePath());
+
+            if (i == classPathWidth - 1) {
+                new File(folder, "junit-4.8.2.jar").createNewFile();
+            }
+        }
+
+        final DevelopmentComponentFactory dcFactory = new DevelopmentComponentFactory();
+        antHelper = new AntHelper(workspace.getAbsolutePath(), dcFactory) {
+            @Override
+            public Set<String> createClassPath(final DevelopmentComponent component) {
+                return classPath;
+            }
+        };
+
+        final DevelopmentConfiguration config = new DevelopmentConfiguration("DI1_Example_D");
+        final Compartment compartment = Compartment.create(VENDOR, "SC1", CompartmentState.Source, "");
+        config.add(compartment);
+        components = new ArrayList<DevelopmentComponent>(componentCount);
+
+        for (int i = 0; i < componentCount; i++) {
+            final DevelopmentComponent component =
+                dcFactory.create(VENDOR, "lib/dc" + i, new PublicPart[] { new PublicPart("api", "", "", PublicPartType.COMPILE) },
+                    new PublicPartReference[] {});
+            compartment.add(component);
+            components.add(component);
+        }
+    }
+
+    /**
+     * Create a synthetic directory tree of the given depth containing archives.
+     * 
+     * @param folder
+     *            root of the directory tree
+     * @param depth
+     *            depth of the directory tree
+     * @throws IOException
+     *             when the directory tree could not be created
+     */
+    private void createTree(final File folder, final int depth) throws IOException {
+        if (!folder.mkdirs()) {
+            throw new IOException(String.format("Could not create %s.", folder.getAbsolutePath()));
+        }
+
+        for (int i = 0; i < ARCHIVES_PER_FOLDER; i++) {
+            new File(folder, String.format("lib%d.jar", i)).createNewFile();
+        }
+
+        if (depth > 0) {
+            for (int i = 0; i < FAN_OUT; i++) {
+                createTree(new File(folder, "sub" + i), depth - 1);
+            }
+        }
+    }
+
+    /**
+     * Remove the synthetic class path folders.
+     */
+    @TearDown
+    public void tearDown() {
+        delete(workspace);
+    }
+
+    /**
+     * Delete the given file or folder including its contents.
+     * 
+     * @param file
+     *            file or folder to delete
+     */
+    private void delete(final File file) {
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Look up JUnit in the class paths of all synthetic development components.
+     * 
+     * @return number of development components having JUnit in their class path
+     */
+    @Benchmark
+    public int hasJunitInClassPath() {
+        final BuildFileGenerator generator =
+            new BuildFileGenerator(antHelper, "UTF-8", "/opt/jenkins/plugins/NWDI-Cobertura-Plugin/WEB-INF/lib", 0);
+        int count = 0;
+
+        for (final DevelopmentComponent component : components) {
+            if (generator.hasJunitInClassPath(component)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Task run in a worker thread whose console output is buffered and written into the build log as one block when it is done, so the
+ * output of tasks running in parallel is not interleaved.
+ * 
+ * @author Dirk Weigenand
+ */
+abstract class BufferedTask implements Callable<Boolean> {
+    /**
+     * listener for the build log.
+     */
+    private final BuildListener listener;
+
+    /**
+     * name of the task used in the build log.
+     */
+    private final String name;
+
+    /**
+     * Create a task writing its output into the given listener when done.
+     * 
+     * @param listener
+     *            listener for the build log.
+     * @param name
+     *            name of the task used in the build log.
+     */
+    BufferedTask(final BuildListener listener, final String name) {
+        this.listener = listener;
+        this.name = name;
+    }
+
+    /**
+     * Wait for the given results of buffered tasks.
+     * 
+     * @param results
+     *            results of the submitted tasks.
+     * @return <code>true</code> when all tasks succeeded, <code>false</code> otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when a task failed with an {@link IOException}
+     */
+    static boolean awaitAll(final List<Future<Boolean>> results) throws InterruptedException, IOException {
+        boolean result = true;
+
+        try {
+            for (final Future<Boolean> future : results) {
+                result &= future.get();
+            }
+        }
+        catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException)cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean call() throws Exception {
+        final Charset charset = Charset.defaultCharset();
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final BuildListener bufferedListener = new StreamBuildListener(buffer, charset);
+        boolean result = false;
+
+        try {
+            result = run(bufferedListener);
+        }
+        finally {
+            bufferedListener.getLogger().flush();
+
+            synchronized (listener) {
+                final PrintStream logger = listener.getLogger();
+                logger.println(String.format("[%s] %s", name, result ? "SUCCESS" : "FAILURE"));
+                logger.print(buffer.toString(charset.name()));
+                logger.flush();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Run the task.
+     * 
+     * @param bufferedListener
+     *            listener buffering the output of the task.
+     * @return <code>true</code> when the task succeeded, <code>false</code> otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when running the task failed
+     */
+    protected abstract boolean run(BuildListener bufferedListener) throws InterruptedException, IOException;
+
+    /**
+     * @return the listener for the build log
+     */
+    protected final BuildListener getListener() {
+        return listener;
+    }
+}
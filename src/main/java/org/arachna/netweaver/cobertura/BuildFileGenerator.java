@@ -3,24 +3,35 @@
  */
 package org.arachna.netweaver.cobertura;
 
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.logging.Logger;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.context.Context;
 import org.arachna.ant.AntHelper;
+import org.arachna.netweaver.cobertura.ant.ResourceUsage;
 import org.arachna.netweaver.dc.types.DevelopmentComponent;
-import org.arachna.util.io.FileFinder;
+import org.arachna.netweaver.dc.types.PublicPartReference;
 
 /**
  * Ant build file generator for junit/cobertura combo for unit testing development components.
@@ -29,9 +40,44 @@ import org.arachna.util.io.FileFinder;
  */
 public class BuildFileGenerator {
     /**
-     * regular expression for matching class path entries against to find a JUnit java archive.
+     * fork mode running tests in the ant JVM.
      */
-    private static final String JUNIT_JAR_REGEXP = "junit.*\\.jar";
+    static final String FORK_MODE_NONE = "none";
+
+    /**
+     * fork mode running tests in the ant JVM using a Cobertura runtime shared by all development components.
+     */
+    static final String FORK_MODE_WARM = "warm";
+
+    /**
+     * coverage engine instrumenting the class files with Cobertura before running the tests.
+     */
+    static final String COVERAGE_ENGINE_OFFLINE = "offline";
+
+    /**
+     * coverage engine instrumenting classes when they are loaded using the JaCoCo agent in the forked test JVMs.
+     */
+    static final String COVERAGE_ENGINE_AGENT = "agent";
+
+    /**
+     * folder (relative to the base folder of a development component) the manifests of its source folders are written to.
+     */
+    private static final String MANIFEST_FOLDER = "gen/cobertura";
+
+    /**
+     * name of the manifest listing the Java sources of a development component.
+     */
+    private static final String JAVA_SOURCES_MANIFEST = "java-sources.lst";
+
+    /**
+     * name of the manifest listing the Java sources of the test classes of a development component.
+     */
+    private static final String TESTS_MANIFEST = "tests.lst";
+
+    /**
+     * name of the manifest listing the resources of a development component.
+     */
+    private static final String RESOURCES_MANIFEST = "resources.lst";
 
     /**
      * Helper class for setting up an ant task with class path, source file sets etc.
@@ -39,9 +85,14 @@ public class BuildFileGenerator {
     private final AntHelper antHelper;
 
     /**
-     * The template engine to use for build file generation.
+     * Cache for class paths and class path folders containing JUnit.
+     */
+    private final ClassPathCache classPathCache;
+
+    /**
+     * The template to use for build file generation.
      */
-    private final VelocityEngine engine;
+    private final BuildFileTemplate template;
 
     /**
      * timeout for JUnit tests.
@@ -64,12 +115,61 @@ public class BuildFileGenerator {
     private IBuildFileWriterFactory writerFactory;
 
     /**
-     * Create a new instance of the ant build file generate using the given {@link AntHelper} and {@link VelocityEngine} .
+     * Indicates whether only stale sources (and their dependents) should be recompiled.
+     */
+    private boolean incrementalCompile;
+
+    /**
+     * Instrument only class files whose content changed since the last run.
+     */
+    private boolean incrementalInstrumentation;
+
+    /**
+     * Write only the XML coverage report.
+     */
+    private boolean skipHtmlReport;
+
+    /**
+     * Run only the tests affected by class files changed since the last test run.
+     */
+    private boolean testSelection;
+
+    /**
+     * Run the tests and create the coverage report of a development component in the same ant process.
+     */
+    private boolean singleAntProcess;
+
+    /**
+     * how to fork JVMs for running tests (<code>none</code>, <code>warm</code>, <code>once</code>, <code>perBatch</code> or
+     * <code>perTest</code>).
+     */
+    private String forkMode = FORK_MODE_NONE;
+
+    /**
+     * number of JVMs to split the tests of a development component across.
+     */
+    private int forks = 1;
+
+    /**
+     * arguments for forked test JVMs.
+     */
+    private String jvmArgs = "";
+
+    /**
+     * how coverage data is recorded (<code>offline</code> or <code>agent</code>).
+     */
+    private String coverageEngine = COVERAGE_ENGINE_OFFLINE;
+
+    /**
+     * action recording the resources used to generate each build file (may be <code>null</code>).
+     */
+    private PhaseMetricsAction phaseMetrics;
+
+    /**
+     * Create a new instance of the ant build file generate using the given {@link AntHelper}.
      * 
      * @param antHelper
      *            helper object for ant build file creation
-     * @param engine
-     *            {@link VelocityEngine} to transform the velocity template into an ant build file.
      * @param encoding
      *            encoding of source files.
      * @param coberturaDir
@@ -77,10 +177,10 @@ public class BuildFileGenerator {
      * @param junitTimeOut
      *            timeout for JUnit tests
      */
-    BuildFileGenerator(final AntHelper antHelper, final VelocityEngine engine, final String encoding, final String coberturaDir,
-        final int junitTimeOut) {
+    BuildFileGenerator(final AntHelper antHelper, final String encoding, final String coberturaDir, final int junitTimeOut) {
         this.antHelper = antHelper;
-        this.engine = engine;
+        this.classPathCache = new ClassPathCache(antHelper);
+        this.template = BuildFileTemplate.getInstance();
         this.encoding = encoding;
         this.coberturaDir = coberturaDir;
         this.junitTimeOut = junitTimeOut;
@@ -92,20 +192,128 @@ public class BuildFileGenerator {
      * 
      * @param components
      *            development components to create build files for.
-     * @return a collection of paths to the created build files
+     * @return a collection of paths to the created build files ordered by vendor and name of the development components
      */
     public final Map<DevelopmentComponent, String> execute(final Collection<DevelopmentComponent> components) {
-        final Map<DevelopmentComponent, String> buildFileNames = new HashMap<DevelopmentComponent, String>();
-        for (final DevelopmentComponent component : components) {
+        final Map<DevelopmentComponent, String> buildFileNames = new LinkedHashMap<DevelopmentComponent, String>();
+
+        for (final DevelopmentComponent component : sort(components)) {
+            final String buildFileName = generateBuildFile(component);
+
+            if (buildFileName != null) {
+                buildFileNames.put(component, buildFileName);
+            }
+        }
+
+        return buildFileNames;
+    }
+
+    /**
+     * Create the build files for the given development components using the given executor. The returned map is identical to the one
+     * returned by {@link #execute(Collection)}.
+     * 
+     * @param components
+     *            development components to create build files for.
+     * @param executor
+     *            executor to generate the build files with.
+     * @return a collection of paths to the created build files ordered by vendor and name of the development components
+     * @throws InterruptedException
+     *             when the build was interrupted while waiting for the build files to be generated
+     */
+    public final Map<DevelopmentComponent, String> execute(final Collection<DevelopmentComponent> components,
+        final ExecutorService executor) throws InterruptedException {
+        final List<DevelopmentComponent> sortedComponents = sort(components);
+        final List<Future<String>> results = new ArrayList<Future<String>>(sortedComponents.size());
+
+        for (final DevelopmentComponent component : sortedComponents) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return generateBuildFile(component);
+                }
+            }));
+        }
+
+        final Map<DevelopmentComponent, String> buildFileNames = new LinkedHashMap<DevelopmentComponent, String>();
+
+        try {
+            for (int i = 0; i < sortedComponents.size(); i++) {
+                final String buildFileName = results.get(i).get();
+
+                if (buildFileName != null) {
+                    buildFileNames.put(sortedComponents.get(i), buildFileName);
+                }
+            }
+        }
+        catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            for (final Future<String> result : results) {
+                result.cancel(true);
+            }
+        }
+
+        return buildFileNames;
+    }
+
+    /**
+     * Create the build file for the given development component when it has sources and JUnit in its class path.
+     * 
+     * @param component
+     *            development component to create the build file for.
+     * @return the absolute path to the generated build file or <code>null</code> when no build file was generated.
+     */
+    private String generateBuildFile(final DevelopmentComponent component) {
+        final ResourceUsage start = ResourceUsage.current();
+        boolean failed = true;
+
+        try {
             final Collection<String> sources = antHelper.createSourceFileSets(component);
             sources.addAll(component.getTestSourceFolders());
+            String buildFileName = null;
 
             if (!sources.isEmpty() && hasJunitInClassPath(component)) {
-                buildFileNames.put(component, createBuildFile(component, sources));
+                buildFileName = createBuildFile(component, sources);
+            }
+
+            failed = false;
+
+            return buildFileName;
+        }
+        finally {
+            if (phaseMetrics != null) {
+                final ResourceUsage usage = ResourceUsage.current();
+                phaseMetrics.add(String.format("%s:%s", component.getVendor(), component.getName()),
+                    PhaseMetricsAction.GENERATE_PHASE, usage.getWallTime(start), usage.getCpuTime(start), usage.getBytesRead(start),
+                    usage.getBytesWritten(start), failed);
             }
         }
+    }
 
-        return buildFileNames;
+    /**
+     * Sort the given development components by vendor and name so that build files are generated and executed in a stable order.
+     * 
+     * @param components
+     *            development components to sort.
+     * @return the development components sorted by vendor and name
+     */
+    private List<DevelopmentComponent> sort(final Collection<DevelopmentComponent> components) {
+        final List<DevelopmentComponent> sortedComponents = new ArrayList<DevelopmentComponent>(components);
+        Collections.sort(sortedComponents, new Comparator<DevelopmentComponent>() {
+            @Override
+            public int compare(final DevelopmentComponent first, final DevelopmentComponent second) {
+                final int result = first.getVendor().compareTo(second.getVendor());
+
+                return result == 0 ? first.getName().compareTo(second.getName()) : result;
+            }
+        });
+
+        return sortedComponents;
     }
 
     /**
@@ -116,25 +324,18 @@ public class BuildFileGenerator {
      * @return <code>true</code> when JUnit is contained in the class path of this DC, <code>false</code> otherwise.
      */
     protected boolean hasJunitInClassPath(final DevelopmentComponent component) {
-        final Set<String> classPath = antHelper.createClassPath(component);
-        boolean hasJunitInClassPath = false;
-
-        for (final String path : classPath) {
-            final FileFinder finder = new FileFinder(new File(path), JUNIT_JAR_REGEXP);
-
-            if (!finder.find().isEmpty()) {
-                hasJunitInClassPath = true;
-                break;
+        for (final String path : classPathCache.getClassPath(component)) {
+            if (classPathCache.containsJUnit(path)) {
+                return true;
             }
-
-            Logger.getLogger(getClass().getName()).fine(String.format("Could not find a JUnit jar in %s.", path));
         }
 
-        return hasJunitInClassPath;
+        return false;
     }
 
     /**
-     * Creates the build file for running junit tests with cobertura.
+     * Creates the build file for running junit tests with cobertura. The source folders are scanned once, the manifests of their Java
+     * sources, test classes and resources are written before the build file.
      * 
      * @param component
      *            development component to create build file for
@@ -143,12 +344,56 @@ public class BuildFileGenerator {
      * @return the absolute path to the generated build file.
      */
     protected final String createBuildFile(final DevelopmentComponent component, final Collection<String> sources) {
-        final String buildFileName = String.format("%s/cobertura-build.xml", antHelper.getBaseLocation(component));
+        final String baseLocation = antHelper.getBaseLocation(component);
+        final String buildFileName = String.format("%s/cobertura-build.xml", baseLocation);
+        final SourceManifest manifest = SourceManifest.scan(sources);
+        Writer writer = null;
+
+        try {
+            writeManifest(String.format("%s/%s/%s", baseLocation, MANIFEST_FOLDER, JAVA_SOURCES_MANIFEST), manifest.getJavaSources());
+            writeManifest(String.format("%s/%s/%s", baseLocation, MANIFEST_FOLDER, TESTS_MANIFEST), manifest.getTests());
+            writeManifest(String.format("%s/%s/%s", baseLocation, MANIFEST_FOLDER, RESOURCES_MANIFEST), manifest.getResources());
+            writer = writerFactory.create(buildFileName);
+            evaluateContext(component, writer, sources, manifest);
+        }
+        catch (final IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                }
+                catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        return buildFileName;
+    }
+
+    /**
+     * Creates a build file running the coverage targets of the given build files in a single ant process. Development components are
+     * grouped into levels so that each development component runs after the development components it depends on. The build files of
+     * a level are run in parallel.
+     * 
+     * @param buildFiles
+     *            build files of development components as returned by {@link #execute(Collection)}.
+     * @param buildFileName
+     *            absolute path of the build file to create.
+     * @param threadCount
+     *            maximum number of build files to run in parallel.
+     * @return the absolute path to the generated build file.
+     */
+    public final String createAggregateBuildFile(final Map<DevelopmentComponent, String> buildFiles, final String buildFileName,
+        final int threadCount) {
         Writer writer = null;
 
         try {
             writer = writerFactory.create(buildFileName);
-            evaluateContext(component, writer, sources);
+            BuildFileTemplate.getInstance(BuildFileTemplate.AGGREGATE_BUILD).merge(
+                createAggregateContext(buildFiles, threadCount), writer);
         }
         catch (final IOException ioe) {
             throw new IllegalStateException(ioe);
@@ -167,6 +412,149 @@ public class BuildFileGenerator {
         return buildFileName;
     }
 
+    /**
+     * Set up the velocity context for transforming the aggregate template into an ant build file.
+     * 
+     * @param buildFiles
+     *            build files of development components.
+     * @param threadCount
+     *            maximum number of build files to run in parallel.
+     * @return velocity context object
+     */
+    final Context createAggregateContext(final Map<DevelopmentComponent, String> buildFiles, final int threadCount) {
+        final List<Map<String, Object>> levels = new ArrayList<Map<String, Object>>();
+        final StringBuilder levelNames = new StringBuilder();
+
+        for (final List<DevelopmentComponent> components : groupByDependencies(buildFiles.keySet())) {
+            final List<Map<String, String>> builds = new ArrayList<Map<String, String>>();
+
+            for (final DevelopmentComponent component : components) {
+                final Map<String, String> build = new HashMap<String, String>();
+                build.put("buildFile", buildFiles.get(component));
+                build.put("target", "coverage-" + component.getNormalizedName("~"));
+                builds.add(build);
+            }
+
+            final String name = "level-" + (levels.size() + 1);
+            final Map<String, Object> level = new HashMap<String, Object>();
+            level.put("name", name);
+            level.put("builds", builds);
+            levels.add(level);
+
+            if (levelNames.length() > 0) {
+                levelNames.append(", ");
+            }
+
+            levelNames.append(name);
+        }
+
+        final Context context = new VelocityContext();
+        context.put("coberturaDir", coberturaDir);
+        context.put("threadCount", Math.max(1, threadCount));
+        context.put("levels", levels);
+        context.put("levelNames", levelNames.toString());
+
+        return context;
+    }
+
+    /**
+     * Group the given development components into levels. A development component is put into the level following the highest level of
+     * the development components among the given ones it depends on. Development components in a dependency cycle are put into the
+     * last level.
+     * 
+     * @param components
+     *            development components to group.
+     * @return the development components grouped into levels (the order of the given components is kept within each level).
+     */
+    final List<List<DevelopmentComponent>> groupByDependencies(final Collection<DevelopmentComponent> components) {
+        final Map<String, DevelopmentComponent> componentsByName = new HashMap<String, DevelopmentComponent>();
+
+        for (final DevelopmentComponent component : components) {
+            componentsByName.put(component.getVendor() + ':' + component.getName(), component);
+        }
+
+        final List<List<DevelopmentComponent>> levels = new ArrayList<List<DevelopmentComponent>>();
+        final Map<DevelopmentComponent, Integer> placed = new HashMap<DevelopmentComponent, Integer>();
+        List<DevelopmentComponent> remaining = new ArrayList<DevelopmentComponent>(components);
+
+        while (!remaining.isEmpty()) {
+            final List<DevelopmentComponent> level = new ArrayList<DevelopmentComponent>();
+            final List<DevelopmentComponent> unplaced = new ArrayList<DevelopmentComponent>();
+
+            for (final DevelopmentComponent component : remaining) {
+                if (dependenciesPlaced(component, componentsByName, placed)) {
+                    level.add(component);
+                }
+                else {
+                    unplaced.add(component);
+                }
+            }
+
+            // a dependency cycle: run the remaining development components together
+            if (level.isEmpty()) {
+                level.addAll(unplaced);
+                unplaced.clear();
+            }
+
+            for (final DevelopmentComponent component : level) {
+                placed.put(component, levels.size());
+            }
+
+            levels.add(level);
+            remaining = unplaced;
+        }
+
+        return levels;
+    }
+
+    /**
+     * Checks whether all development components the given one depends on have been placed into a previous level.
+     * 
+     * @param component
+     *            development component to check.
+     * @param componentsByName
+     *            development components to be grouped keyed by vendor and name.
+     * @param placed
+     *            development components already placed into a level.
+     * @return <code>true</code> when the given development component can be placed into the next level, <code>false</code> otherwise.
+     */
+    private boolean dependenciesPlaced(final DevelopmentComponent component,
+        final Map<String, DevelopmentComponent> componentsByName, final Map<DevelopmentComponent, Integer> placed) {
+        for (final PublicPartReference reference : component.getUsedDevelopmentComponents()) {
+            final DevelopmentComponent dependency = componentsByName.get(reference.getVendor() + ':' + reference.getComponentName());
+
+            if (dependency != null && dependency != component && !placed.containsKey(dependency)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the given paths into the given manifest file, one path per line.
+     * 
+     * @param manifestFileName
+     *            name of manifest file
+     * @param paths
+     *            paths to write
+     * @throws IOException
+     *             when writing the manifest fails
+     */
+    private void writeManifest(final String manifestFileName, final Collection<String> paths) throws IOException {
+        final Writer writer = writerFactory.create(manifestFileName);
+
+        try {
+            for (final String path : paths) {
+                writer.write(path);
+                writer.write('\n');
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
     /**
      * Evaluates the template and writes it into the given writer.
      * 
@@ -176,21 +564,14 @@ public class BuildFileGenerator {
      *            <code>Writer</code> to write the build file into
      * @param sources
      *            source folders
+     * @param manifest
+     *            manifest of the files in the source folders
      * @throws IOException
      *             when writing the build file fails
      */
-    final void evaluateContext(final DevelopmentComponent component, final Writer writer, final Collection<String> sources)
-        throws IOException {
-        engine.evaluate(createContext(component, sources), writer, "", getTemplate());
-    }
-
-    /**
-     * Return a {@link Reader} object for the velocity template used to generate the build file.
-     * 
-     * @return <code>Reader</code> object for the velocity template used to generate the build file.
-     */
-    private Reader getTemplate() {
-        return new InputStreamReader(this.getClass().getResourceAsStream("cobertura-build.vm"));
+    final void evaluateContext(final DevelopmentComponent component, final Writer writer, final Collection<String> sources,
+        final SourceManifest manifest) throws IOException {
+        template.merge(createContext(component, sources, manifest), writer);
     }
 
     /**
@@ -200,24 +581,177 @@ public class BuildFileGenerator {
      *            the development component the build file should be created for.
      * @param sources
      *            collection of folders containing java sources.
+     * @param manifest
+     *            manifest of the files in the source folders
      * @return velocity context object
      */
-    final Context createContext(final DevelopmentComponent component, final Collection<String> sources) {
+    final Context createContext(final DevelopmentComponent component, final Collection<String> sources,
+        final SourceManifest manifest) {
         final Context context = new VelocityContext();
 
         context.put("normalizedComponentName", component.getNormalizedName("~"));
         context.put("componentBase", antHelper.getBaseLocation(component));
-        context.put("classpaths", antHelper.createClassPath(component));
+        context.put("classpaths", classPathCache.getClassPath(component));
         context.put("classesDir", component.getOutputFolder());
         context.put("sources", sources);
+
+        // empty manifests are left out, an empty includes file would include every file
+        if (!manifest.getJavaSources().isEmpty()) {
+            context.put("javaSourcesManifest", JAVA_SOURCES_MANIFEST);
+        }
+
+        if (!manifest.getTests().isEmpty()) {
+            context.put("testsManifest", TESTS_MANIFEST);
+        }
+
+        if (!manifest.getResources().isEmpty()) {
+            context.put("resourcesManifest", RESOURCES_MANIFEST);
+        }
+
         context.put("junitTimeout", junitTimeOut);
         context.put("targetVersion", component.getCompartment().getDevelopmentConfiguration().getSourceVersion());
         context.put("coberturaDir", coberturaDir);
         context.put("encoding", encoding);
+        context.put("incrementalCompile", incrementalCompile);
+
+        if (incrementalCompile) {
+            context.put("sourcePath", createSourcePath(sources));
+        }
+
+        if (incrementalCompile || testSelection) {
+            context.put("compileSignature", createCompileSignature(component));
+        }
+
+        // the agent records execution data only, there is neither instrumentation nor per class coverage data of an earlier run
+        final boolean agent = COVERAGE_ENGINE_AGENT.equals(coverageEngine);
+        context.put("coverageAgent", agent);
+
+        if (agent) {
+            context.put("agentIncludes", createAgentIncludes(manifest.getJavaSources()));
+        }
+
+        context.put("incrementalInstrumentation", incrementalInstrumentation && !agent);
+        context.put("skipHtmlReport", skipHtmlReport);
+        context.put("testSelection", testSelection && !agent);
+
+        // tests split across several JVMs or recorded by the agent have to be forked. Cobertura saves the coverage data of tests run
+        // by the junit task in the ant JVM only when that JVM exits, so these tests are forked too when the report is created by the
+        // same ant process. The warm test runner saves the coverage data itself.
+        final boolean warm = FORK_MODE_WARM.equals(forkMode);
+        final boolean inAntJvm = FORK_MODE_NONE.equals(forkMode) || warm;
+        final boolean fork = forks > 1 || !inAntJvm || agent || singleAntProcess && !warm;
+        context.put("junitFork", fork ? "yes" : "no");
+        context.put("forkMode", inAntJvm ? "once" : forkMode);
+        context.put("warmTestRunner", !fork && warm);
+        context.put("forks", forks);
+        context.put("jvmArgs", escape(jvmArgs));
+
+        final List<Integer> forkIndices = new ArrayList<Integer>();
+
+        for (int i = 1; i <= forks; i++) {
+            forkIndices.add(i);
+        }
+
+        context.put("forkIndices", forkIndices);
 
         return context;
     }
 
+    /**
+     * Create the include patterns for the coverage agent from the packages of the Java sources of a development component, so classes
+     * of archives in the class path are not instrumented.
+     * 
+     * @param javaSources
+     *            paths of the Java sources relative to their source folder
+     * @return the patterns of the class names to instrument separated by <code>:</code> (<code>*</code> for classes in the default
+     *         package)
+     */
+    static String createAgentIncludes(final Collection<String> javaSources) {
+        final TreeSet<String> packages = new TreeSet<String>();
+
+        for (final String source : javaSources) {
+            final int index = source.lastIndexOf('/');
+
+            // the pattern of a package includes its sub packages
+            if (index < 0) {
+                return "*";
+            }
+
+            packages.add(source.substring(0, index).replace('/', '.'));
+        }
+
+        final StringBuilder includes = new StringBuilder();
+        String previous = null;
+
+        for (final String name : packages) {
+            if (previous == null || !name.startsWith(previous + '.')) {
+                if (includes.length() > 0) {
+                    includes.append(':');
+                }
+
+                includes.append(name).append(".*");
+                previous = name;
+            }
+        }
+
+        return includes.toString();
+    }
+
+    /**
+     * Join the given source folders into a path suitable for ant tasks expecting a path of source folders.
+     * 
+     * @param sources
+     *            collection of folders containing java sources.
+     * @return the source folders separated by the platform path separator
+     */
+    private String createSourcePath(final Collection<String> sources) {
+        final StringBuilder sourcePath = new StringBuilder();
+
+        for (final String source : sources) {
+            if (sourcePath.length() > 0) {
+                sourcePath.append(File.pathSeparatorChar);
+            }
+
+            sourcePath.append(source);
+        }
+
+        return sourcePath.toString();
+    }
+
+    /**
+     * Create a signature of the compiler settings (class path including the contents of its archives, target version and encoding) for
+     * the given development component. A changed signature forces a full recompilation when compiling incrementally and running the
+     * whole suite when selecting tests, e.g. when a used development component was rebuilt.
+     * 
+     * @param component
+     *            the development component the build file should be created for.
+     * @return signature of the compiler settings
+     */
+    private String createCompileSignature(final DevelopmentComponent component) {
+        final Fingerprint fingerprint = new Fingerprint();
+
+        try {
+            classPathCache.addClassPath(fingerprint, classPathCache.getClassPath(component));
+        }
+        catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        fingerprint.add(component.getCompartment().getDevelopmentConfiguration().getSourceVersion());
+        fingerprint.add(encoding);
+
+        return fingerprint.getValue();
+    }
+
+    /**
+     * Returns the cache of class paths used by this generator. The cache is valid for the current build only.
+     * 
+     * @return the class path cache
+     */
+    final ClassPathCache getClassPathCache() {
+        return classPathCache;
+    }
+
     /**
      * Set factory for build file writer instances for testing.
      * 
@@ -228,6 +762,124 @@ public class BuildFileGenerator {
         this.writerFactory = writerFactory;
     }
 
+    /**
+     * Set whether only stale sources (and their dependents) should be recompiled instead of recompiling all sources.
+     * 
+     * @param incrementalCompile
+     *            <code>true</code> to compile incrementally, <code>false</code> to recompile all sources on every run.
+     */
+    final void setIncrementalCompile(final boolean incrementalCompile) {
+        this.incrementalCompile = incrementalCompile;
+    }
+
+    /**
+     * Set whether only class files changed since the last run should be instrumented.
+     * 
+     * @param incrementalInstrumentation
+     *            <code>true</code> to instrument only new or changed class files, <code>false</code> to instrument all class files on
+     *            every run.
+     */
+    final void setIncrementalInstrumentation(final boolean incrementalInstrumentation) {
+        this.incrementalInstrumentation = incrementalInstrumentation;
+    }
+
+    /**
+     * Set whether only the XML coverage report should be written.
+     * 
+     * @param skipHtmlReport
+     *            <code>true</code> to skip the HTML coverage report, <code>false</code> to write both reports.
+     */
+    final void setSkipHtmlReport(final boolean skipHtmlReport) {
+        this.skipHtmlReport = skipHtmlReport;
+    }
+
+    /**
+     * Set whether only the tests affected by class files changed since the last test run should be run.
+     * 
+     * @param testSelection
+     *            <code>true</code> to select the affected tests, <code>false</code> to run all tests on every run.
+     */
+    final void setTestSelection(final boolean testSelection) {
+        this.testSelection = testSelection;
+    }
+
+    /**
+     * Set whether the tests and the coverage report of a development component are run by the same ant process.
+     * 
+     * @param singleAntProcess
+     *            <code>true</code> when the report is created by the ant process running the tests, <code>false</code> when the tests
+     *            are run by an ant process of their own.
+     */
+    final void setSingleAntProcess(final boolean singleAntProcess) {
+        this.singleAntProcess = singleAntProcess;
+    }
+
+    /**
+     * Set how JVMs for running tests should be forked.
+     * 
+     * @param forkMode
+     *            <code>none</code> to run tests in the ant JVM, <code>warm</code> to run them in the ant JVM using a Cobertura runtime
+     *            shared by all development components tested in this JVM, <code>once</code>, <code>perBatch</code> or
+     *            <code>perTest</code> to fork JVMs as the ant junit task does for the respective fork mode.
+     */
+    final void setForkMode(final String forkMode) {
+        this.forkMode = forkMode == null || forkMode.length() == 0 ? FORK_MODE_NONE : forkMode;
+    }
+
+    /**
+     * Set how coverage data should be recorded.
+     * 
+     * @param coverageEngine
+     *            <code>offline</code> to instrument the class files with Cobertura before running the tests, <code>agent</code> to
+     *            instrument classes when they are loaded by the forked test JVMs using the JaCoCo agent.
+     */
+    final void setCoverageEngine(final String coverageEngine) {
+        this.coverageEngine =
+            coverageEngine == null || coverageEngine.length() == 0 ? COVERAGE_ENGINE_OFFLINE : coverageEngine;
+    }
+
+    /**
+     * Set the number of JVMs to split the tests of a development component across.
+     * 
+     * @param forks
+     *            number of JVMs running tests of a development component in parallel (<code>1</code> runs all tests of a development
+     *            component in one batch).
+     */
+    final void setForks(final int forks) {
+        this.forks = Math.max(1, forks);
+    }
+
+    /**
+     * Set the arguments for forked test JVMs.
+     * 
+     * @param jvmArgs
+     *            arguments for forked test JVMs (e.g. heap size or garbage collector).
+     */
+    final void setJvmArgs(final String jvmArgs) {
+        this.jvmArgs = jvmArgs == null ? "" : jvmArgs.trim();
+    }
+
+    /**
+     * Set the action to record the resources used to generate each build file in.
+     * 
+     * @param phaseMetrics
+     *            action recording the resources used by each phase of each development component.
+     */
+    final void setPhaseMetrics(final PhaseMetricsAction phaseMetrics) {
+        this.phaseMetrics = phaseMetrics;
+    }
+
+    /**
+     * Escape the given value for use in an XML attribute.
+     * 
+     * @param value
+     *            value to escape
+     * @return the escaped value
+     */
+    private static String escape(final String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
     /**
      * Factory for writers of build file content.
      * 
@@ -259,7 +911,118 @@ public class BuildFileGenerator {
          */
         @Override
         public Writer create(final String buildFileName) throws IOException {
-            return new FileWriter(buildFileName);
+            final File buildFile = new File(buildFileName);
+            buildFile.getParentFile().mkdirs();
+
+            return new UpdatingFileWriter(buildFile);
+        }
+    }
+
+    /**
+     * Writer buffering the build file contents in memory. When closed, the contents are written to the build file only when it does
+     * not exist or its contents differ. The build file is replaced atomically by renaming a temporary file. On platforms where renaming
+     * onto an existing file fails the temporary file is copied over the build file instead, so the build file never goes missing.
+     * 
+     * @author Dirk Weigenand
+     */
+    static final class UpdatingFileWriter extends StringWriter {
+        /**
+         * encoding of generated build files (as declared in the XML header of the template).
+         */
+        private static final String BUILD_FILE_ENCODING = "UTF-8";
+
+        /**
+         * the build file to write.
+         */
+        private final File buildFile;
+
+        /**
+         * indicates whether this writer has already been closed.
+         */
+        private boolean closed;
+
+        /**
+         * Create a writer for the given build file.
+         * 
+         * @param buildFile
+         *            the build file to write.
+         */
+        UpdatingFileWriter(final File buildFile) {
+            this.buildFile = buildFile;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            final byte[] content = toString().getBytes(BUILD_FILE_ENCODING);
+
+            if (buildFile.isFile() && buildFile.length() == content.length && Arrays.equals(content, read())) {
+                return;
+            }
+
+            final File tempFile = new File(buildFile.getParentFile(), buildFile.getName() + ".tmp");
+            write(tempFile, content);
+
+            // renaming onto an existing file fails on some platforms
+            if (!tempFile.renameTo(buildFile)) {
+                write(buildFile, content);
+
+                if (!tempFile.delete()) {
+                    throw new IOException(String.format("Could not delete %s.", tempFile));
+                }
+            }
+        }
+
+        /**
+         * Write the given content into the given file replacing its current contents.
+         * 
+         * @param file
+         *            the file to write.
+         * @param content
+         *            the content to write.
+         * @throws IOException
+         *             when writing the file failed
+         */
+        private void write(final File file, final byte[] content) throws IOException {
+            final OutputStream out = new FileOutputStream(file);
+
+            try {
+                out.write(content);
+            }
+            finally {
+                out.close();
+            }
+        }
+
+        /**
+         * Read the current contents of the build file.
+         * 
+         * @return the current contents of the build file (empty when it does not exist).
+         * @throws IOException
+         *             when reading the build file failed
+         */
+        private byte[] read() throws IOException {
+            final byte[] content = new byte[(int)buildFile.length()];
+
+            if (content.length > 0) {
+                final DataInputStream in = new DataInputStream(new FileInputStream(buildFile));
+
+                try {
+                    in.readFully(content);
+                }
+                finally {
+                    in.close();
+                }
+            }
+
+            return content;
         }
     }
 }
@@ -0,0 +1,120 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.log.JdkLogChute;
+import org.apache.velocity.runtime.parser.ParseException;
+
+/**
+ * A velocity template used to generate cobertura build files.
+ * 
+ * Each template is read and parsed only once per plugin lifetime. Merging the parsed template with a context is thread safe.
+ * 
+ * @author Dirk Weigenand
+ */
+final class BuildFileTemplate {
+    /**
+     * name of the template resource for the build file of a single development component.
+     */
+    static final String COMPONENT_BUILD = "cobertura-build.vm";
+
+    /**
+     * name of the template resource for the build file running the build files of several development components.
+     */
+    static final String AGGREGATE_BUILD = "cobertura-aggregate-build.vm";
+
+    /**
+     * the shared instances of the build file templates keyed by name of template resource.
+     */
+    private static final Map<String, BuildFileTemplate> INSTANCES = new HashMap<String, BuildFileTemplate>();
+
+    /**
+     * the parsed template.
+     */
+    private final Template template;
+
+    /**
+     * Read and parse the velocity template used to generate the build files.
+     * 
+     * @param templateName
+     *            name of the template resource.
+     */
+    private BuildFileTemplate(final String templateName) {
+        final RuntimeInstance runtime = new RuntimeInstance();
+        runtime.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS, JdkLogChute.class.getName());
+        runtime.init();
+
+        final Reader reader = new InputStreamReader(getClass().getResourceAsStream(templateName), Charset.forName("UTF-8"));
+
+        try {
+            template = new Template();
+            template.setName(templateName);
+            template.setRuntimeServices(runtime);
+            template.setData(runtime.parse(reader, templateName));
+            template.initDocument();
+        }
+        catch (final ParseException e) {
+            throw new IllegalStateException(e);
+        }
+        finally {
+            try {
+                reader.close();
+            }
+            catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the shared template for the build file of a single development component, parsing it on first use.
+     * 
+     * @return the build file template
+     */
+    static BuildFileTemplate getInstance() {
+        return getInstance(COMPONENT_BUILD);
+    }
+
+    /**
+     * Returns the shared build file template with the given name, parsing it on first use.
+     * 
+     * @param templateName
+     *            name of the template resource.
+     * @return the build file template
+     */
+    static synchronized BuildFileTemplate getInstance(final String templateName) {
+        BuildFileTemplate instance = INSTANCES.get(templateName);
+
+        if (instance == null) {
+            instance = new BuildFileTemplate(templateName);
+            INSTANCES.put(templateName, instance);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Merge the template with the given context and write the result into the given writer.
+     * 
+     * @param context
+     *            velocity context holding the values for the development component.
+     * @param writer
+     *            <code>Writer</code> to write the build file into.
+     */
+    void merge(final Context context, final Writer writer) {
+        template.merge(context, writer);
+    }
+}
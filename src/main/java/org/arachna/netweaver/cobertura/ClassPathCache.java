@@ -0,0 +1,190 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import org.arachna.ant.AntHelper;
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.util.io.FileFinder;
+
+/**
+ * Build scoped cache of the class paths of development components, of the class path folders containing a JUnit archive and of the
+ * fingerprints of class path archives.
+ * 
+ * Development components often share the same public part folders. This cache resolves the class path of each development component
+ * only once, searches each folder only once for JUnit archives and reads each archive only once to compute its fingerprint.
+ * 
+ * @author Dirk Weigenand
+ */
+final class ClassPathCache {
+    /**
+     * regular expression for matching class path entries against to find a JUnit java archive.
+     */
+    private static final String JUNIT_JAR_REGEXP = "junit.*\\.jar";
+
+    /**
+     * Helper class for computing the class path of development components.
+     */
+    private final AntHelper antHelper;
+
+    /**
+     * class paths of development components already resolved.
+     */
+    private final ConcurrentMap<DevelopmentComponent, Set<String>> classPaths =
+        new ConcurrentHashMap<DevelopmentComponent, Set<String>>();
+
+    /**
+     * class path folders already searched for a JUnit archive.
+     */
+    private final ConcurrentMap<String, Boolean> junitFolders = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * fingerprints of class path archives already computed, keyed by path, size and modification time.
+     */
+    private final ConcurrentMap<String, String> archiveFingerprints = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Create a new class path cache using the given {@link AntHelper} to resolve class paths.
+     * 
+     * @param antHelper
+     *            helper object for computing class paths of development components.
+     */
+    ClassPathCache(final AntHelper antHelper) {
+        this.antHelper = antHelper;
+    }
+
+    /**
+     * Returns the class path of the given development component. Resolves it only on first request.
+     * 
+     * @param component
+     *            development component to get the class path for.
+     * @return the class path of the given development component.
+     */
+    Set<String> getClassPath(final DevelopmentComponent component) {
+        Set<String> classPath = classPaths.get(component);
+
+        if (classPath == null) {
+            classPath = antHelper.createClassPath(component);
+            final Set<String> previous = classPaths.putIfAbsent(component, classPath);
+
+            if (previous != null) {
+                classPath = previous;
+            }
+        }
+
+        return classPath;
+    }
+
+    /**
+     * Checks whether the given class path folder contains a JUnit archive. Searches the folder only on first request.
+     * 
+     * @param path
+     *            class path folder to check.
+     * @return <code>true</code> when a JUnit archive was found in the given folder or its sub folders, <code>false</code> otherwise.
+     */
+    boolean containsJUnit(final String path) {
+        Boolean containsJUnit = junitFolders.get(path);
+
+        if (containsJUnit == null) {
+            containsJUnit = !new FileFinder(new File(path), JUNIT_JAR_REGEXP).find().isEmpty();
+            junitFolders.putIfAbsent(path, containsJUnit);
+
+            if (!containsJUnit) {
+                Logger.getLogger(getClass().getName()).fine(String.format("Could not find a JUnit jar in %s.", path));
+            }
+        }
+
+        return containsJUnit;
+    }
+
+    /**
+     * Add the given class path to the fingerprint: the path of each class path folder followed by the fingerprints of the archives in it.
+     * So the fingerprint changes when an archive in the class path was rebuilt, even when the class path itself did not change.
+     * 
+     * @param fingerprint
+     *            fingerprint to update.
+     * @param classPath
+     *            class path folders (or archives) of a development component.
+     * @throws IOException
+     *             when reading an archive failed
+     */
+    void addClassPath(final Fingerprint fingerprint, final Collection<String> classPath) throws IOException {
+        for (final String path : new TreeSet<String>(classPath)) {
+            fingerprint.add(path);
+
+            for (final File archive : listArchives(new File(path))) {
+                fingerprint.add(getArchiveFingerprint(archive));
+            }
+        }
+    }
+
+    /**
+     * Discard all cached class paths, JUnit lookups and archive fingerprints.
+     */
+    void invalidate() {
+        classPaths.clear();
+        junitFolders.clear();
+        archiveFingerprints.clear();
+    }
+
+    /**
+     * List the java archives in the given class path entry: the entry itself when it is an archive, otherwise the archives in the
+     * folder and its sub folders.
+     * 
+     * @param path
+     *            class path entry to search for archives.
+     * @return archives found sorted by path
+     */
+    private Collection<File> listArchives(final File path) {
+        final Collection<File> archives = new TreeSet<File>();
+
+        if (path.isFile()) {
+            if (path.getName().endsWith(".jar")) {
+                archives.add(path);
+            }
+
+            return archives;
+        }
+
+        final File[] files = path.listFiles();
+
+        if (files != null) {
+            for (final File file : files) {
+                archives.addAll(listArchives(file));
+            }
+        }
+
+        return archives;
+    }
+
+    /**
+     * Returns the fingerprint of the given archive. Computes it only once per build for archives shared between development
+     * components.
+     * 
+     * @param archive
+     *            archive to compute the fingerprint of.
+     * @return fingerprint of the archive
+     * @throws IOException
+     *             when reading the archive failed
+     */
+    private String getArchiveFingerprint(final File archive) throws IOException {
+        final String id = String.format("%s:%d:%d", archive.getAbsolutePath(), archive.length(), archive.lastModified());
+        String fingerprint = archiveFingerprints.get(id);
+
+        if (fingerprint == null) {
+            fingerprint = new Fingerprint().add(archive).getValue();
+            archiveFingerprints.putIfAbsent(id, fingerprint);
+        }
+
+        return fingerprint;
+    }
+}
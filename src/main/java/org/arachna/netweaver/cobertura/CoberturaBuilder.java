@@ -5,6 +5,7 @@ package org.arachna.netweaver.cobertura;
 
 import hudson.Extension;
 import hudson.Launcher;
+import hudson.PluginWrapper;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -13,13 +14,26 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.ListBoxModel;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.sf.json.JSONObject;
 
-import org.apache.velocity.app.VelocityEngine;
+import org.arachna.ant.AntHelper;
+import org.arachna.netweaver.cobertura.ComponentExecutor.ComponentTask;
 import org.arachna.netweaver.dc.types.DevelopmentComponent;
 import org.arachna.netweaver.hudson.nwdi.AntTaskBuilder;
 import org.arachna.netweaver.hudson.nwdi.DCWithJavaSourceAcceptingFilter;
@@ -45,6 +59,61 @@ public final class CoberturaBuilder extends AntTaskBuilder {
      */
     private static final int DEFAULT_JUNIT_TIMEOUT = 30000;
 
+    /**
+     * name of this plugin.
+     */
+    private static final String PLUGIN_NAME = "NWDI-Cobertura-Plugin";
+
+    /**
+     * name of the folder in the project folder containing the result cache.
+     */
+    private static final String RESULT_CACHE_DIR = "cobertura-results";
+
+    /**
+     * name of the aggregated build file generated into the workspace.
+     */
+    private static final String AGGREGATE_BUILD_FILE = "cobertura-aggregate-build.xml";
+
+    /**
+     * name of the file in the project folder containing the coverage trend.
+     */
+    static final String TREND_FILE = "coverage-trend.dat";
+
+    /**
+     * name of the file in the project folder containing the durations of test classes.
+     */
+    static final String TEST_DURATIONS_FILE = "test-durations.dat";
+
+    /**
+     * name of the file the durations of the test classes of a development component are passed to its build file in.
+     */
+    private static final String COMPONENT_TEST_DURATIONS_FILE = "gen/cobertura/test-durations.properties";
+
+    /**
+     * name of the file the phase timer of the build file of a development component records the resources used by each target in.
+     */
+    private static final String COMPONENT_PHASE_METRICS_FILE = "gen/cobertura/phase-metrics.txt";
+
+    /**
+     * path of the XML coverage report relative to the log folder of a development component.
+     */
+    private static final String COVERAGE_REPORT = "coveragereport/coverage.xml";
+
+    /**
+     * folder containing the JUnit reports relative to the log folder of a development component.
+     */
+    private static final String JUNIT_REPORT_DIR = "junit";
+
+    /**
+     * name of the folder in the build folder containing the track level coverage report.
+     */
+    static final String AGGREGATED_REPORT_DIR = "cobertura";
+
+    /**
+     * name of the file the build file of a development component creates when tests and coverage report were run successfully.
+     */
+    private static final String COVERAGE_DONE_FILE = "gen/cobertura/coverage.done";
+
     /**
      * timeout for running junit tasks.
      */
@@ -55,6 +124,86 @@ public final class CoberturaBuilder extends AntTaskBuilder {
      */
     private String encoding = "UTF-8";
 
+    /**
+     * number of development components to test in parallel.
+     */
+    private int concurrency = 1;
+
+    /**
+     * run tests and create the coverage report using one ant invocation per development component.
+     */
+    private boolean singleInvocation;
+
+    /**
+     * recompile only stale sources and their dependents.
+     */
+    private boolean incrementalCompile;
+
+    /**
+     * instrument only class files whose content changed since the last run.
+     */
+    private boolean incrementalInstrumentation;
+
+    /**
+     * restore results of development components whose inputs did not change since their last successful run.
+     */
+    private boolean resultCache;
+
+    /**
+     * run the build files of all development components from one aggregated build file in a single ant process.
+     */
+    private boolean aggregateBuild;
+
+    /**
+     * write only the XML coverage report.
+     */
+    private boolean skipHtmlReport;
+
+    /**
+     * minimum line coverage of each development component in percent (<code>0</code> disables the check).
+     */
+    private int lineThreshold;
+
+    /**
+     * minimum branch coverage of each development component in percent (<code>0</code> disables the check).
+     */
+    private int branchThreshold;
+
+    /**
+     * line and branch thresholds overriding the global ones for individual development components.
+     */
+    private String thresholdOverrides = "";
+
+    /**
+     * skip the remaining development components as soon as one of them failed or did not reach its coverage thresholds.
+     */
+    private boolean failFast;
+
+    /**
+     * run only the tests affected by class files changed since the last test run.
+     */
+    private boolean testSelection;
+
+    /**
+     * how to fork JVMs for running tests.
+     */
+    private String forkMode = BuildFileGenerator.FORK_MODE_NONE;
+
+    /**
+     * number of JVMs to split the tests of a development component across.
+     */
+    private int testForks = 1;
+
+    /**
+     * arguments for forked test JVMs.
+     */
+    private String jvmArgs = "";
+
+    /**
+     * how coverage data is recorded.
+     */
+    private String coverageEngine = BuildFileGenerator.COVERAGE_ENGINE_OFFLINE;
+
     /**
      * Create a new instance of a <code>CoberturaBuilder</code> using the given timeout for running the junit ant task. Use the given
      * encoding for compiling the Java sources before running the tests.
@@ -63,9 +212,47 @@ public final class CoberturaBuilder extends AntTaskBuilder {
      *            timeout for junit ant task
      * @param encoding
      *            to use for compiling Java sources before running JUnit/Cobertura.
+     * @param concurrency
+     *            number of development components to test in parallel.
+     * @param singleInvocation
+     *            whether to run tests and create the coverage report using one ant invocation per development component.
+     * @param incrementalCompile
+     *            whether to recompile only stale sources and their dependents.
+     * @param incrementalInstrumentation
+     *            whether to instrument only class files whose content changed since the last run.
+     * @param resultCache
+     *            whether to restore results of development components whose inputs did not change since their last successful run.
+     * @param aggregateBuild
+     *            whether to run the build files of all development components from one aggregated build file in a single ant process.
+     * @param skipHtmlReport
+     *            whether to write only the XML coverage report.
+     * @param lineThreshold
+     *            minimum line coverage of each development component in percent.
+     * @param branchThreshold
+     *            minimum branch coverage of each development component in percent.
+     * @param thresholdOverrides
+     *            thresholds for individual development components, one <code>vendor:name=line[,branch]</code> per line.
+     * @param failFast
+     *            whether to skip the remaining development components as soon as one of them failed.
+     * @param testSelection
+     *            whether to run only the tests affected by class files changed since the last test run.
+     * @param forkMode
+     *            how to fork JVMs for running tests (<code>none</code>, <code>warm</code>, <code>once</code>, <code>perBatch</code>
+     *            or <code>perTest</code>).
+     * @param testForks
+     *            number of JVMs to split the tests of a development component across.
+     * @param jvmArgs
+     *            arguments for forked test JVMs.
+     * @param coverageEngine
+     *            how coverage data is recorded (<code>offline</code> or <code>agent</code>).
      */
     @DataBoundConstructor
-    public CoberturaBuilder(final String junitTimeOut, final String encoding) {
+    public CoberturaBuilder(final String junitTimeOut, final String encoding, final String concurrency,
+        final boolean singleInvocation, final boolean incrementalCompile, final boolean incrementalInstrumentation,
+        final boolean resultCache, final boolean aggregateBuild, final boolean skipHtmlReport, final String lineThreshold,
+        final String branchThreshold, final String thresholdOverrides, final boolean failFast, final boolean testSelection,
+        final String forkMode, final String testForks, final String jvmArgs,
+        final String coverageEngine) {
         try {
             if (junitTimeOut != null) {
                 final int timeOut = Integer.parseInt(junitTimeOut);
@@ -81,6 +268,111 @@ public final class CoberturaBuilder extends AntTaskBuilder {
         if (encoding != null && !encoding.isEmpty()) {
             this.encoding = encoding;
         }
+
+        try {
+            if (concurrency != null) {
+                final int threads = Integer.parseInt(concurrency);
+
+                if (threads > 0) {
+                    this.concurrency = threads;
+                }
+            }
+        }
+        catch (final NumberFormatException nfe) {
+        }
+
+        this.singleInvocation = singleInvocation;
+        this.incrementalCompile = incrementalCompile;
+        this.incrementalInstrumentation = incrementalInstrumentation;
+        this.resultCache = resultCache;
+        this.aggregateBuild = aggregateBuild;
+        this.skipHtmlReport = skipHtmlReport;
+        this.lineThreshold = parseThreshold(lineThreshold);
+        this.branchThreshold = parseThreshold(branchThreshold);
+
+        if (thresholdOverrides != null) {
+            this.thresholdOverrides = thresholdOverrides;
+        }
+
+        this.failFast = failFast;
+        this.testSelection = testSelection;
+
+        if (forkMode != null && !forkMode.isEmpty()) {
+            this.forkMode = forkMode;
+        }
+
+        try {
+            if (testForks != null) {
+                final int forks = Integer.parseInt(testForks);
+
+                if (forks > 0) {
+                    this.testForks = forks;
+                }
+            }
+        }
+        catch (final NumberFormatException nfe) {
+        }
+
+        if (jvmArgs != null) {
+            this.jvmArgs = jvmArgs.trim();
+        }
+
+        if (coverageEngine != null && !coverageEngine.isEmpty()) {
+            this.coverageEngine = coverageEngine;
+        }
+    }
+
+    /**
+     * Parse the given coverage threshold.
+     * 
+     * @param threshold
+     *            coverage threshold in percent
+     * @return the parsed threshold limited to <code>0</code>..<code>100</code> (<code>0</code> when the threshold could not be parsed)
+     */
+    private static int parseThreshold(final String threshold) {
+        try {
+            if (threshold != null && threshold.trim().length() > 0) {
+                return Math.max(0, Math.min(100, Integer.parseInt(threshold.trim())));
+            }
+        }
+        catch (final NumberFormatException nfe) {
+        }
+
+        return 0;
+    }
+
+    /**
+     * Set the defaults of settings missing from configurations saved by earlier versions of this plugin. XStream does not run the
+     * constructor or the field initializers when reading a configuration.
+     * 
+     * @return this builder with missing settings set to their defaults
+     */
+    protected Object readResolve() {
+        if (concurrency < 1) {
+            concurrency = 1;
+        }
+
+        if (thresholdOverrides == null) {
+            thresholdOverrides = "";
+        }
+
+        if (forkMode == null || forkMode.isEmpty()) {
+            forkMode = BuildFileGenerator.FORK_MODE_NONE;
+        }
+
+        if (testForks < 1) {
+            testForks = 1;
+        }
+
+        if (jvmArgs == null) {
+            jvmArgs = "";
+        }
+
+        if (coverageEngine == null || coverageEngine.isEmpty()) {
+            coverageEngine = BuildFileGenerator.COVERAGE_ENGINE_OFFLINE;
+        }
+
+        return this;
     }
 
     /**
@@ -89,22 +381,446 @@ public final class CoberturaBuilder extends AntTaskBuilder {
     @Override
     public boolean perform(final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener)
         throws InterruptedException, IOException {
-        final VelocityEngine velocityEngine = getVelocityEngine();
         final String coberturaDir =
-            String.format("%s/plugins/NWDI-Cobertura-Plugin/WEB-INF/lib", Hudson.getInstance().root.getAbsolutePath().replace("\\", "/"));
+            String.format("%s/plugins/%s/WEB-INF/lib", Hudson.getInstance().root.getAbsolutePath().replace("\\", "/"),
+                PLUGIN_NAME);
         final BuildFileGenerator generator =
-            new BuildFileGenerator(getAntHelper(), velocityEngine, getEncoding(), coberturaDir, junitTimeOut);
+            new BuildFileGenerator(getAntHelper(), getEncoding(), coberturaDir, junitTimeOut);
+        generator.setIncrementalCompile(incrementalCompile);
+        generator.setIncrementalInstrumentation(incrementalInstrumentation);
+        generator.setSkipHtmlReport(skipHtmlReport);
+        generator.setTestSelection(testSelection);
+        generator.setForkMode(forkMode);
+        generator.setForks(testForks);
+        generator.setJvmArgs(jvmArgs);
+        generator.setCoverageEngine(coverageEngine);
+        // aggregated builds run the tests and reports of all development components in one ant process
+        generator.setSingleAntProcess(singleInvocation || aggregateBuild);
+        final PhaseMetricsAction phaseMetrics = new PhaseMetricsAction();
+        generator.setPhaseMetrics(phaseMetrics);
         final NWDIBuild nwdiBuild = (NWDIBuild)build;
+        final TestDurationIndex durations = loadTestDurations(build, listener);
         final Map<DevelopmentComponent, String> buildFiles =
-            generator.execute(nwdiBuild.getAffectedDevelopmentComponents(new DCWithJavaSourceAcceptingFilter()));
+            orderByDuration(
+                generateBuildFiles(generator, nwdiBuild.getAffectedDevelopmentComponents(new DCWithJavaSourceAcceptingFilter())),
+                durations);
+
+        if (testForks > 1) {
+            exportTestDurations(durations, buildFiles.keySet(), listener);
+        }
+
+        removePhaseMetrics(buildFiles.keySet());
+
+        final ResultCache cache =
+            resultCache ? new ResultCache(new File(build.getProject().getRootDir(), RESULT_CACHE_DIR), generator.getClassPathCache())
+                : null;
+        final String pluginVersion = getPluginVersion();
+
+        final CoverageThresholds thresholds;
+
+        try {
+            thresholds = new CoverageThresholds(lineThreshold, branchThreshold, thresholdOverrides);
+        }
+        catch (final IllegalArgumentException e) {
+            listener.error(e.getMessage());
+            return false;
+        }
+
+        // coverage reports read by the threshold check and the coverage trend
+        final CoverageReports reports = new CoverageReports();
+        final boolean result;
+        // development components whose tests ran successfully or whose results were restored, only their coverage data is current
+        final Set<DevelopmentComponent> completed = Collections.synchronizedSet(new HashSet<DevelopmentComponent>());
+
+        if (aggregateBuild) {
+            result =
+                runAggregated(cache, generator, pluginVersion, build, launcher, listener, buildFiles, thresholds, reports,
+                    completed);
+        }
+        else {
+            final ComponentExecutor executor = new ComponentExecutor(concurrency);
+            executor.setFailFast(failFast);
+            result = executor.execute(buildFiles, listener, new ComponentTask() {
+                @Override
+                public boolean execute(final DevelopmentComponent component, final String buildFile,
+                    final BuildListener componentListener) throws InterruptedException, IOException {
+                    final boolean success;
+
+                    if (cache == null) {
+                        success = runTestsAndReport(build, launcher, componentListener, component, buildFile);
+                    }
+                    else {
+                        success =
+                            runCachedTestsAndReport(cache, generator.getClassPathCache(), pluginVersion, build, launcher,
+                                componentListener, component, buildFile);
+                    }
+
+                    if (success) {
+                        completed.add(component);
+                    }
+
+                    return success && checkThresholds(thresholds, reports, component, componentListener);
+                }
+            });
+        }
+
+        logCacheStatistics(cache, listener);
+        recordPhaseMetrics(build, listener, phaseMetrics, buildFiles.keySet());
+        aggregateCoverage(build, listener, buildFiles.keySet(), completed);
+        recordTrend(build, listener, buildFiles.keySet(), completed, reports);
+        recordTestDurations(durations, listener, buildFiles.keySet());
+
+        return result;
+    }
+
+    /**
+     * Load the durations of test classes recorded by earlier builds. A failure to load the durations is logged, the durations then
+     * start empty.
+     * 
+     * @param build
+     *            the current build
+     * @param listener
+     *            listener to log to
+     * @return the durations of test classes recorded by earlier builds
+     */
+    private TestDurationIndex loadTestDurations(final AbstractBuild<?, ?> build, final BuildListener listener) {
+        final TestDurationIndex durations = new TestDurationIndex(new File(build.getProject().getRootDir(), TEST_DURATIONS_FILE));
+
+        try {
+            durations.load();
+        }
+        catch (final IOException e) {
+            e.printStackTrace(listener.error("Could not load test durations."));
+        }
+
+        return durations;
+    }
+
+    /**
+     * Order the given development components by the total duration of their tests in earlier builds, longest first, so that long
+     * running development components do not start last. Development components without recorded durations come first.
+     * 
+     * @param buildFiles
+     *            mapping of development components to their build files
+     * @param durations
+     *            durations of test classes recorded by earlier builds
+     * @return mapping of development components to their build files ordered by descending duration
+     */
+    private Map<DevelopmentComponent, String> orderByDuration(final Map<DevelopmentComponent, String> buildFiles,
+        final TestDurationIndex durations) {
+        final Map<DevelopmentComponent, Long> totals = new HashMap<DevelopmentComponent, Long>();
+
+        for (final DevelopmentComponent component : buildFiles.keySet()) {
+            final long total = durations.getTotalDuration(String.format("%s:%s", component.getVendor(), component.getName()));
+            totals.put(component, total < 0 ? Long.MAX_VALUE : total);
+        }
+
+        final List<DevelopmentComponent> components = new ArrayList<DevelopmentComponent>(buildFiles.keySet());
+        Collections.sort(components, new Comparator<DevelopmentComponent>() {
+            @Override
+            public int compare(final DevelopmentComponent first, final DevelopmentComponent second) {
+                return totals.get(second).compareTo(totals.get(first));
+            }
+        });
+
+        final Map<DevelopmentComponent, String> ordered = new LinkedHashMap<DevelopmentComponent, String>();
+
+        for (final DevelopmentComponent component : components) {
+            ordered.put(component, buildFiles.get(component));
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Pass the durations of the test classes of the given development components to their build files for splitting the tests across
+     * JVMs. A failure to write the durations is logged, the build file then uses the durations found in its JUnit reports.
+     * 
+     * @param durations
+     *            durations of test classes recorded by earlier builds
+     * @param components
+     *            development components whose tests are run
+     * @param listener
+     *            listener to log to
+     */
+    private void exportTestDurations(final TestDurationIndex durations, final Collection<DevelopmentComponent> components,
+        final BuildListener listener) {
+        final AntHelper antHelper = getAntHelper();
+
+        for (final DevelopmentComponent component : components) {
+            try {
+                durations.export(String.format("%s:%s", component.getVendor(), component.getName()), new File(
+                    antHelper.getBaseLocation(component), COMPONENT_TEST_DURATIONS_FILE));
+            }
+            catch (final IOException e) {
+                e.printStackTrace(listener.error(String.format("Could not write test durations of %s:%s.", component.getVendor(),
+                    component.getName())));
+            }
+        }
+    }
+
+    /**
+     * Record the durations of the test classes of the given development components from their JUnit reports. A failure to record the
+     * durations is logged but does not fail the build.
+     * 
+     * @param durations
+     *            durations of test classes recorded by earlier builds
+     * @param listener
+     *            listener to log to
+     * @param components
+     *            development components whose tests were run
+     */
+    private void recordTestDurations(final TestDurationIndex durations, final BuildListener listener,
+        final Collection<DevelopmentComponent> components) {
+        try {
+            for (final DevelopmentComponent component : components) {
+                durations.update(String.format("%s:%s", component.getVendor(), component.getName()), new File(getLogDir(component),
+                    JUNIT_REPORT_DIR));
+            }
+
+            durations.store();
+        }
+        catch (final IOException e) {
+            e.printStackTrace(listener.error("Could not record test durations."));
+        }
+    }
+
+    /**
+     * Remove the resources recorded by the phase timers of the build files of the given development components in earlier builds.
+     * 
+     * @param components
+     *            development components whose tests are run
+     */
+    private void removePhaseMetrics(final Collection<DevelopmentComponent> components) {
+        final AntHelper antHelper = getAntHelper();
+
+        for (final DevelopmentComponent component : components) {
+            new File(antHelper.getBaseLocation(component), COMPONENT_PHASE_METRICS_FILE).delete();
+        }
+    }
+
+    /**
+     * Collect the resources recorded by the phase timers of the build files of the given development components, log a summary and
+     * attach them to the given build. Development components whose results were restored from the result cache have no recorded
+     * phases. A failure to read the recorded phases is logged but does not fail the build.
+     * 
+     * @param build
+     *            the current build
+     * @param listener
+     *            listener to log to
+     * @param phaseMetrics
+     *            action containing the resources used to generate the build files
+     * @param components
+     *            development components whose tests were run
+     */
+    private void recordPhaseMetrics(final AbstractBuild<?, ?> build, final BuildListener listener,
+        final PhaseMetricsAction phaseMetrics, final Collection<DevelopmentComponent> components) {
+        final AntHelper antHelper = getAntHelper();
+
+        for (final DevelopmentComponent component : components) {
+            final File metricsFile = new File(antHelper.getBaseLocation(component), COMPONENT_PHASE_METRICS_FILE);
+
+            if (metricsFile.exists()) {
+                try {
+                    phaseMetrics.read(String.format("%s:%s", component.getVendor(), component.getName()),
+                        "-" + component.getNormalizedName("~"), metricsFile);
+                }
+                catch (final IOException e) {
+                    e.printStackTrace(listener.error(String.format("Could not read phase metrics of %s:%s.", component.getVendor(),
+                        component.getName())));
+                }
+            }
+        }
+
+        phaseMetrics.printSummary(listener.getLogger());
+        build.addAction(phaseMetrics);
+    }
+
+    /**
+     * Merge the coverage data of the given development components into one track level coverage report in the folder of the given
+     * build. Data files of development components whose tests failed are left out, they may be incomplete or left over from an
+     * earlier build. A failure to create the report is logged but does not fail the build.
+     * 
+     * @param build
+     *            the current build
+     * @param listener
+     *            listener to log to
+     * @param components
+     *            development components whose coverage data should be merged
+     * @param completed
+     *            development components whose tests ran successfully or whose results were restored from the cache in this build
+     */
+    private void aggregateCoverage(final AbstractBuild<?, ?> build, final BuildListener listener,
+        final Collection<DevelopmentComponent> components, final Collection<DevelopmentComponent> completed) {
+        final AntHelper antHelper = getAntHelper();
+        final CoverageAggregator aggregator = new CoverageAggregator(completed);
+
+        for (final DevelopmentComponent component : components) {
+            final Collection<String> sources = new ArrayList<String>(antHelper.createSourceFileSets(component));
+            sources.addAll(component.getTestSourceFolders());
 
+            if (!aggregator.add(component, new File(getLogDir(component), CoverageAggregator.DATA_FILE), sources)
+                && !completed.contains(component)) {
+                listener.getLogger().println(
+                    String.format("Coverage data of %s:%s left out of the track level report, its tests failed.",
+                        component.getVendor(), component.getName()));
+            }
+        }
+
+        if (aggregator.getDataFiles() == 0) {
+            return;
+        }
+
+        final File reportDir = new File(build.getRootDir(), AGGREGATED_REPORT_DIR);
+
+        try {
+            aggregator.write(reportDir, encoding, !skipHtmlReport);
+            listener.getLogger().println(
+                String.format("Merged coverage data of %d development components into %s.", aggregator.getDataFiles(),
+                    reportDir.getAbsolutePath()));
+        }
+        catch (final IOException e) {
+            e.printStackTrace(listener.error("Could not create track level coverage report."));
+        }
+    }
+
+    /**
+     * Append the line and branch totals per development component and package of the given build to the coverage trend of the
+     * project and print a summary of the trend. Only development components whose tests ran successfully or whose results were
+     * restored in this build are recorded, the reports of the others are left over from an earlier build. A failure to update the
+     * trend is logged but does not fail the build.
+     * 
+     * @param build
+     *            the current build
+     * @param listener
+     *            listener to log to
+     * @param components
+     *            development components whose coverage reports should be recorded
+     * @param completed
+     *            development components whose tests ran successfully or whose results were restored from the cache in this build
+     * @param reports
+     *            coverage reports already read in this build
+     */
+    private void recordTrend(final AbstractBuild<?, ?> build, final BuildListener listener,
+        final Collection<DevelopmentComponent> components, final Collection<DevelopmentComponent> completed,
+        final CoverageReports reports) {
+        final Collection<CoverageTrendStore.Entry> entries = new ArrayList<CoverageTrendStore.Entry>();
+
+        try {
+            for (final DevelopmentComponent component : components) {
+                if (!completed.contains(component)) {
+                    listener.getLogger().println(
+                        String.format("Coverage of %s:%s left out of the coverage trend, its tests did not run.",
+                            component.getVendor(), component.getName()));
+                    continue;
+                }
+
+                final CoverageModel model = reports.get(component, new File(getLogDir(component), COVERAGE_REPORT));
+
+                if (model != null) {
+                    entries.addAll(CoverageTrendStore.createEntries(
+                        String.format("%s:%s", component.getVendor(), component.getName()), model));
+                }
+            }
+
+            final CoverageTrendStore store = new CoverageTrendStore(new File(build.getProject().getRootDir(), TREND_FILE));
+            store.append(build.getNumber(), build.getTimeInMillis(), entries);
+            new CoverageTrendSummary(store).print(listener.getLogger());
+        }
+        catch (final IOException e) {
+            e.printStackTrace(listener.error("Could not record coverage trend."));
+        }
+    }
+
+    /**
+     * Run the build files of the given development components from one aggregated build file in a single ant process. Results of
+     * development components whose inputs did not change are restored from the result cache and their build files are not run.
+     * 
+     * @param cache
+     *            the result cache (<code>null</code> when results should not be cached)
+     * @param generator
+     *            the build file generator
+     * @param pluginVersion
+     *            version of this plugin
+     * @param build
+     *            the current build
+     * @param launcher
+     *            launcher for the ant process
+     * @param listener
+     *            listener to log to
+     * @param buildFiles
+     *            mapping of development components to their build files
+     * @param thresholds
+     *            coverage thresholds the development components have to reach
+     * @param reports
+     *            coverage reports read by the threshold check
+     * @param completed
+     *            collection the development components that ran successfully or were restored from the cache are added to
+     * @return <code>true</code> when tests and coverage reports of all development components were run successfully or restored from
+     *         the cache and reached their coverage thresholds, <code>false</code> otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when executing ant or accessing the cache failed
+     */
+    private boolean runAggregated(final ResultCache cache, final BuildFileGenerator generator, final String pluginVersion,
+        final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener,
+        final Map<DevelopmentComponent, String> buildFiles, final CoverageThresholds thresholds, final CoverageReports reports,
+        final Collection<DevelopmentComponent> completed) throws InterruptedException, IOException {
+        final AntHelper antHelper = getAntHelper();
         boolean result = true;
+        final Map<DevelopmentComponent, String> pending = new LinkedHashMap<DevelopmentComponent, String>();
+        final Map<DevelopmentComponent, String> keys = new HashMap<DevelopmentComponent, String>();
 
         for (final Map.Entry<DevelopmentComponent, String> entry : buildFiles.entrySet()) {
-            final boolean createSuccessful = execute(build, launcher, listener, "", entry.getValue(), getAntProperties());
+            final DevelopmentComponent component = entry.getKey();
+
+            if (cache != null) {
+                final String key = createCacheKey(cache, generator.getClassPathCache(), pluginVersion, component, entry.getValue());
+
+                if (cache.restore(component, key, getLogDir(component))) {
+                    logRestored(listener, component);
+                    completed.add(component);
+                    result &= checkThresholds(thresholds, reports, component, listener);
+                    continue;
+                }
+
+                keys.put(component, key);
+            }
+
+            final File doneFile = new File(antHelper.getBaseLocation(component), COVERAGE_DONE_FILE);
+
+            if (doneFile.exists() && !doneFile.delete()) {
+                throw new IOException(String.format("Could not delete %s.", doneFile.getAbsolutePath()));
+            }
+
+            pending.put(component, entry.getValue());
+        }
+
+        if (pending.isEmpty()) {
+            return result;
+        }
+
+        final String aggregateBuildFile =
+            generator.createAggregateBuildFile(pending, new File(build.getWorkspace().getRemote(), AGGREGATE_BUILD_FILE)
+                .getAbsolutePath(), concurrency);
+        result &= execute(build, launcher, listener, "", aggregateBuildFile, getAntProperties());
 
-            if (createSuccessful) {
-                result &= execute(build, launcher, listener, getTargetName(entry.getKey()), entry.getValue(), getAntProperties());
+        // the aggregated build continues after failing development components, check each of them
+        for (final DevelopmentComponent component : pending.keySet()) {
+            if (new File(antHelper.getBaseLocation(component), COVERAGE_DONE_FILE).exists()) {
+                completed.add(component);
+
+                if (cache != null) {
+                    cache.store(component, keys.get(component), getLogDir(component));
+                }
+
+                result &= checkThresholds(thresholds, reports, component, listener);
+            }
+            else {
+                listener.getLogger().println(
+                    String.format("Running tests of %s:%s failed.", component.getVendor(), component.getName()));
+                result = false;
             }
         }
 
@@ -112,14 +828,227 @@ public final class CoberturaBuilder extends AntTaskBuilder {
     }
 
     /**
-     * Generate name of cobertura report target to execute via ant.
+     * Check the coverage report of the given development component against the configured coverage thresholds.
+     * 
+     * @param thresholds
+     *            coverage thresholds the development component has to reach
+     * @param reports
+     *            coverage reports already read in this build
+     * @param component
+     *            development component whose coverage report should be checked
+     * @param listener
+     *            listener to log to
+     * @return <code>true</code> when the development component reached its thresholds, <code>false</code> otherwise.
+     * @throws IOException
+     *             when the coverage report could not be read
+     */
+    private boolean checkThresholds(final CoverageThresholds thresholds, final CoverageReports reports,
+        final DevelopmentComponent component, final BuildListener listener) throws IOException {
+        if (!thresholds.isEnabled()) {
+            return true;
+        }
+
+        return thresholds.check(component, reports.get(component, new File(getLogDir(component), COVERAGE_REPORT)),
+            listener.getLogger());
+    }
+
+    /**
+     * Log the number of hits and misses of the given result cache.
+     * 
+     * @param cache
+     *            the result cache (<code>null</code> when results were not cached)
+     * @param listener
+     *            listener to log to
+     */
+    private void logCacheStatistics(final ResultCache cache, final BuildListener listener) {
+        if (cache != null) {
+            listener.getLogger().println(String.format("Result cache: %d hits, %d misses.", cache.getHits(), cache.getMisses()));
+        }
+    }
+
+    /**
+     * Generate the build files for the given development components. Uses {@link #concurrency} threads when configured to test more
+     * than one development component in parallel.
+     * 
+     * @param generator
+     *            the build file generator
+     * @param components
+     *            development components to generate build files for
+     * @return mapping of development components to their build files ordered by vendor and name
+     * @throws InterruptedException
+     *             when the build was interrupted
+     */
+    private Map<DevelopmentComponent, String> generateBuildFiles(final BuildFileGenerator generator,
+        final Collection<DevelopmentComponent> components) throws InterruptedException {
+        if (concurrency < 2) {
+            return generator.execute(components);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+
+        try {
+            return generator.execute(components, executor);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Restore the results of the given development component from the result cache when its inputs did not change since its last
+     * successful run. Otherwise run the tests and create the coverage report and store the results in the cache on success.
+     * 
+     * @param cache
+     *            the result cache
+     * @param classPathCache
+     *            cache of the class paths of development components
+     * @param pluginVersion
+     *            version of this plugin
+     * @param build
+     *            the current build
+     * @param launcher
+     *            launcher for the ant process
+     * @param listener
+     *            listener to log to
+     * @param component
+     *            development component to test
+     * @param buildFile
+     *            build file generated for the development component
+     * @return <code>true</code> when the results were restored or running tests and creating the report succeeded, <code>false</code>
+     *         otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when executing ant or accessing the cache failed
+     */
+    private boolean runCachedTestsAndReport(final ResultCache cache, final ClassPathCache classPathCache,
+        final String pluginVersion, final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener,
+        final DevelopmentComponent component, final String buildFile) throws InterruptedException, IOException {
+        final String key = createCacheKey(cache, classPathCache, pluginVersion, component, buildFile);
+        final File logDir = getLogDir(component);
+
+        if (cache.restore(component, key, logDir)) {
+            logRestored(listener, component);
+            return true;
+        }
+
+        final boolean result = runTestsAndReport(build, launcher, listener, component, buildFile);
+
+        if (result) {
+            cache.store(component, key, logDir);
+        }
+
+        return result;
+    }
+
+    /**
+     * Create the key of the given development component in the result cache.
+     * 
+     * @param cache
+     *            the result cache
+     * @param classPathCache
+     *            cache of the class paths of development components
+     * @param pluginVersion
+     *            version of this plugin
+     * @param component
+     *            development component to create the key for
+     * @param buildFile
+     *            path of the build file generated for the development component
+     * @return the key of the development component
+     * @throws IOException
+     *             when reading the build file, sources or class path archives failed
+     */
+    private String createCacheKey(final ResultCache cache, final ClassPathCache classPathCache, final String pluginVersion,
+        final DevelopmentComponent component, final String buildFile) throws IOException {
+        final Collection<String> sources = new ArrayList<String>(getAntHelper().createSourceFileSets(component));
+        sources.addAll(component.getTestSourceFolders());
+
+        return cache.createKey(new File(buildFile), sources, classPathCache.getClassPath(component), encoding, component
+            .getCompartment().getDevelopmentConfiguration().getSourceVersion(), pluginVersion);
+    }
+
+    /**
+     * Returns the log folder of the given development component.
+     * 
+     * @param component
+     *            development component to get the log folder for
+     * @return the log folder of the development component
+     */
+    private File getLogDir(final DevelopmentComponent component) {
+        return new File(getAntHelper().getBaseLocation(component), "gen/default/logs");
+    }
+
+    /**
+     * Log that the results of the given development component were restored from the result cache.
+     * 
+     * @param listener
+     *            listener to log to
+     * @param component
+     *            development component whose results were restored
+     */
+    private void logRestored(final BuildListener listener, final DevelopmentComponent component) {
+        listener.getLogger().println(
+            String.format("Inputs of %s:%s did not change, restored results from cache.", component.getVendor(),
+                component.getName()));
+    }
+
+    /**
+     * Returns the version of this plugin.
+     * 
+     * @return the version of this plugin or <code>unknown</code> when it could not be determined.
+     */
+    private String getPluginVersion() {
+        final PluginWrapper plugin = Hudson.getInstance().getPluginManager().getPlugin(PLUGIN_NAME);
+
+        return plugin == null ? "unknown" : plugin.getVersion();
+    }
+
+    /**
+     * Run the tests of the given development component and create the coverage report when they could be executed.
+     * 
+     * @param build
+     *            the current build
+     * @param launcher
+     *            launcher for the ant process
+     * @param listener
+     *            listener to log to
+     * @param component
+     *            development component to test
+     * @param buildFile
+     *            build file generated for the development component
+     * @return <code>true</code> when running tests and creating the report succeeded, <code>false</code> otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when executing ant failed
+     */
+    private boolean runTestsAndReport(final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener,
+        final DevelopmentComponent component, final String buildFile) throws InterruptedException, IOException {
+        if (singleInvocation) {
+            return execute(build, launcher, listener, getTargetName("coverage", component), buildFile, getAntProperties());
+        }
+
+        boolean result = true;
+        final boolean createSuccessful = execute(build, launcher, listener, "", buildFile, getAntProperties());
+
+        if (createSuccessful) {
+            result &= execute(build, launcher, listener, getTargetName("cobertura-report", component), buildFile, getAntProperties());
+        }
+
+        return result;
+    }
+
+    /**
+     * Generate name of the ant target with the given prefix to execute for the given development component.
      * 
+     * @param prefix
+     *            prefix of the target name, e.g. <code>cobertura-report</code>.
      * @param component
      *            development component for which to execute cobertura.
      * @return the name of the ant target to execute.
      */
-    private String getTargetName(final DevelopmentComponent component) {
-        return String.format("cobertura-report-%s~%s", component.getVendor(), component.getName().replace('/', '~'));
+    private String getTargetName(final String prefix, final DevelopmentComponent component) {
+        return String.format("%s-%s~%s", prefix, component.getVendor(), component.getName().replace('/', '~'));
     }
 
     /**
@@ -164,6 +1093,150 @@ public final class CoberturaBuilder extends AntTaskBuilder {
         return encoding;
     }
 
+    /**
+     * Returns the number of development components to test in parallel.
+     * 
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Indicates whether tests and coverage report are run using one ant invocation per development component.
+     * 
+     * @return the singleInvocation
+     */
+    public boolean isSingleInvocation() {
+        return singleInvocation;
+    }
+
+    /**
+     * Indicates whether only stale sources and their dependents are recompiled.
+     * 
+     * @return the incrementalCompile
+     */
+    public boolean isIncrementalCompile() {
+        return incrementalCompile;
+    }
+
+    /**
+     * Indicates whether only class files changed since the last run are instrumented.
+     * 
+     * @return the incrementalInstrumentation
+     */
+    public boolean isIncrementalInstrumentation() {
+        return incrementalInstrumentation;
+    }
+
+    /**
+     * Indicates whether results of unchanged development components are restored from the result cache.
+     * 
+     * @return the resultCache
+     */
+    public boolean isResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Indicates whether the build files of all development components are run from one aggregated build file in a single ant process.
+     * 
+     * @return the aggregateBuild
+     */
+    public boolean isAggregateBuild() {
+        return aggregateBuild;
+    }
+
+    /**
+     * Indicates whether only the XML coverage report is written.
+     * 
+     * @return the skipHtmlReport
+     */
+    public boolean isSkipHtmlReport() {
+        return skipHtmlReport;
+    }
+
+    /**
+     * Returns the minimum line coverage of each development component in percent.
+     * 
+     * @return the lineThreshold
+     */
+    public int getLineThreshold() {
+        return lineThreshold;
+    }
+
+    /**
+     * Returns the minimum branch coverage of each development component in percent.
+     * 
+     * @return the branchThreshold
+     */
+    public int getBranchThreshold() {
+        return branchThreshold;
+    }
+
+    /**
+     * Returns the thresholds for individual development components.
+     * 
+     * @return the thresholdOverrides
+     */
+    public String getThresholdOverrides() {
+        return thresholdOverrides;
+    }
+
+    /**
+     * Indicates whether the remaining development components are skipped as soon as one of them failed.
+     * 
+     * @return the failFast
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Indicates whether only the tests affected by class files changed since the last test run are run.
+     * 
+     * @return the testSelection
+     */
+    public boolean isTestSelection() {
+        return testSelection;
+    }
+
+    /**
+     * Returns how JVMs for running tests are forked.
+     * 
+     * @return the forkMode
+     */
+    public String getForkMode() {
+        return forkMode;
+    }
+
+    /**
+     * Returns the number of JVMs the tests of a development component are split across.
+     * 
+     * @return the testForks
+     */
+    public int getTestForks() {
+        return testForks;
+    }
+
+    /**
+     * Returns the arguments for forked test JVMs.
+     * 
+     * @return the jvmArgs
+     */
+    public String getJvmArgs() {
+        return jvmArgs;
+    }
+
+    /**
+     * Returns how coverage data is recorded.
+     * 
+     * @return the coverageEngine
+     */
+    public String getCoverageEngine() {
+        return coverageEngine;
+    }
+
     /**
      * Descriptor for {@link CheckstyleBuilder}.
      */
@@ -209,12 +1282,52 @@ public final class CoberturaBuilder extends AntTaskBuilder {
             return items;
         }
 
+        /**
+         * Return a {@link ListBoxModel} containing the fork modes for running tests.
+         * 
+         * @return the fork modes for running tests.
+         */
+        public ListBoxModel doFillForkModeItems() {
+            final ListBoxModel items = new ListBoxModel();
+
+            for (final String forkMode : new String[] { BuildFileGenerator.FORK_MODE_NONE, BuildFileGenerator.FORK_MODE_WARM,
+                "once", "perBatch", "perTest" }) {
+                items.add(forkMode, forkMode);
+            }
+
+            return items;
+        }
+
+        /**
+         * Return a {@link ListBoxModel} containing the engines for recording coverage data.
+         * 
+         * @return the engines for recording coverage data.
+         */
+        public ListBoxModel doFillCoverageEngineItems() {
+            final ListBoxModel items = new ListBoxModel();
+
+            for (final String coverageEngine : new String[] { BuildFileGenerator.COVERAGE_ENGINE_OFFLINE,
+                BuildFileGenerator.COVERAGE_ENGINE_AGENT }) {
+                items.add(coverageEngine, coverageEngine);
+            }
+
+            return items;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public Builder newInstance(final StaplerRequest req, final JSONObject formData) throws FormException {
-            return new CoberturaBuilder(formData.getString("junitTimeOut"), formData.getString("encoding"));
+            return new CoberturaBuilder(formData.getString("junitTimeOut"), formData.getString("encoding"),
+                formData.getString("concurrency"), formData.getBoolean("singleInvocation"),
+                formData.getBoolean("incrementalCompile"), formData.getBoolean("incrementalInstrumentation"),
+                formData.getBoolean("resultCache"), formData.getBoolean("aggregateBuild"),
+                formData.getBoolean("skipHtmlReport"), formData.getString("lineThreshold"),
+                formData.getString("branchThreshold"), formData.getString("thresholdOverrides"),
+                formData.getBoolean("failFast"), formData.getBoolean("testSelection"),
+                formData.getString("forkMode"), formData.getString("testForks"), formData.getString("jvmArgs"),
+                formData.getString("coverageEngine"));
         }
     }
 }
@@ -0,0 +1,277 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import hudson.model.BuildListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+
+/**
+ * Executes a {@link ComponentTask} for each development component and its generated build file. Uses a bounded pool of worker threads
+ * when configured with a concurrency level greater than one.
+ * 
+ * When configured to fail fast, development components not yet started are skipped as soon as the task failed for one development
+ * component.
+ * 
+ * @author Dirk Weigenand
+ */
+final class ComponentExecutor {
+    /**
+     * number of development components to process in parallel.
+     */
+    private final int concurrency;
+
+    /**
+     * skip remaining development components as soon as the task failed for one of them.
+     */
+    private boolean failFast;
+
+    /**
+     * indicates that the task failed for a development component.
+     */
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    /**
+     * Create a new executor for development component build files.
+     * 
+     * @param concurrency
+     *            number of development components to process in parallel. Values less than two mean sequential execution.
+     */
+    ComponentExecutor(final int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Execute the given task for each of the given development components and their build files.
+     * 
+     * When running in parallel the console output of each development component is buffered and written to the build log as one block
+     * when the development component has been processed.
+     * 
+     * @param buildFiles
+     *            mapping of development components to the build files generated for them.
+     * @param listener
+     *            listener for the build log.
+     * @param task
+     *            the task to execute for every development component.
+     * @return <code>true</code> when the task succeeded for all development components, <code>false</code> otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when executing the task for a development component failed
+     */
+    boolean execute(final Map<DevelopmentComponent, String> buildFiles, final BuildListener listener, final ComponentTask task)
+        throws InterruptedException, IOException {
+        if (concurrency < 2 || buildFiles.size() < 2) {
+            return executeSequentially(buildFiles, listener, task);
+        }
+
+        return executeInParallel(buildFiles, listener, task);
+    }
+
+    /**
+     * Execute the given task for each development component one after another.
+     * 
+     * @param buildFiles
+     *            mapping of development components to the build files generated for them.
+     * @param listener
+     *            listener for the build log.
+     * @param task
+     *            the task to execute for every development component.
+     * @return <code>true</code> when the task succeeded for all development components, <code>false</code> otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when executing the task for a development component failed
+     */
+    private boolean executeSequentially(final Map<DevelopmentComponent, String> buildFiles, final BuildListener listener,
+        final ComponentTask task) throws InterruptedException, IOException {
+        for (final Map.Entry<DevelopmentComponent, String> entry : buildFiles.entrySet()) {
+            if (isSkipped(entry.getKey(), listener)) {
+                continue;
+            }
+
+            if (!task.execute(entry.getKey(), entry.getValue(), listener)) {
+                failed.set(true);
+            }
+        }
+
+        return !failed.get();
+    }
+
+    /**
+     * Execute the given task for the development components using a pool of {@link #concurrency} worker threads.
+     * 
+     * @param buildFiles
+     *            mapping of development components to the build files generated for them.
+     * @param listener
+     *            listener for the build log.
+     * @param task
+     *            the task to execute for every development component.
+     * @return <code>true</code> when the task succeeded for all development components, <code>false</code> otherwise.
+     * @throws InterruptedException
+     *             when the build was interrupted
+     * @throws IOException
+     *             when executing the task for a development component failed
+     */
+    private boolean executeInParallel(final Map<DevelopmentComponent, String> buildFiles, final BuildListener listener,
+        final ComponentTask task) throws InterruptedException, IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, buildFiles.size()));
+        final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(buildFiles.size());
+
+        try {
+            for (final Map.Entry<DevelopmentComponent, String> entry : buildFiles.entrySet()) {
+                results.add(executor.submit(new BufferedComponentTask(entry.getKey(), entry.getValue(), listener, task)));
+            }
+
+            // skipped development components are not failures of their own, the result is tracked by the failed flag
+            BufferedTask.awaitAll(results);
+
+            return !failed.get();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Set whether development components not yet started should be skipped as soon as the task failed for one development component.
+     * 
+     * @param failFast
+     *            <code>true</code> to skip remaining development components after the first failure, <code>false</code> to process all
+     *            development components.
+     */
+    void setFailFast(final boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Checks whether the given development component should be skipped because the task already failed for another one.
+     * 
+     * @param component
+     *            development component about to be processed.
+     * @param listener
+     *            listener to log to.
+     * @return <code>true</code> when the development component should be skipped, <code>false</code> otherwise.
+     */
+    private boolean isSkipped(final DevelopmentComponent component, final BuildListener listener) {
+        if (failFast && failed.get()) {
+            synchronized (listener) {
+                listener.getLogger().println(
+                    String.format("[%s:%s] SKIPPED (a previous development component failed)", component.getVendor(),
+                        component.getName()));
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Task to execute for a development component and its build file.
+     * 
+     * @author Dirk Weigenand
+     */
+    interface ComponentTask {
+        /**
+         * Execute the task for the given development component.
+         * 
+         * @param component
+         *            development component to process.
+         * @param buildFile
+         *            path to the build file generated for the development component.
+         * @param listener
+         *            listener to log to.
+         * @return <code>true</code> when the task succeeded, <code>false</code> otherwise.
+         * @throws InterruptedException
+         *             when the build was interrupted
+         * @throws IOException
+         *             when executing the task failed
+         */
+        boolean execute(DevelopmentComponent component, String buildFile, BuildListener listener) throws InterruptedException,
+            IOException;
+    }
+
+    /**
+     * Executes a {@link ComponentTask} in a worker thread and writes its buffered console output into the build log when it is done.
+     * 
+     * @author Dirk Weigenand
+     */
+    private final class BufferedComponentTask extends BufferedTask {
+        /**
+         * development component to process.
+         */
+        private final DevelopmentComponent component;
+
+        /**
+         * path to the build file generated for the development component.
+         */
+        private final String buildFile;
+
+        /**
+         * the task to execute.
+         */
+        private final ComponentTask task;
+
+        /**
+         * Create a task for the given development component writing its output into the given listener when done.
+         * 
+         * @param component
+         *            development component to process.
+         * @param buildFile
+         *            path to the build file generated for the development component.
+         * @param listener
+         *            listener for the build log.
+         * @param task
+         *            the task to execute.
+         */
+        BufferedComponentTask(final DevelopmentComponent component, final String buildFile, final BuildListener listener,
+            final ComponentTask task) {
+            super(listener, String.format("%s:%s", component.getVendor(), component.getName()));
+            this.component = component;
+            this.buildFile = buildFile;
+            this.task = task;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Boolean call() throws Exception {
+            if (isSkipped(component, getListener())) {
+                return Boolean.FALSE;
+            }
+
+            boolean result = false;
+
+            try {
+                result = super.call();
+            }
+            finally {
+                if (!result) {
+                    failed.set(true);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean run(final BuildListener bufferedListener) throws InterruptedException, IOException {
+            return task.execute(component, buildFile, bufferedListener);
+        }
+    }
+}
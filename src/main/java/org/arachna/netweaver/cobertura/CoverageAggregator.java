@@ -0,0 +1,147 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.reporting.ComplexityCalculator;
+import net.sourceforge.cobertura.reporting.html.HTMLReport;
+import net.sourceforge.cobertura.reporting.xml.XMLReport;
+import net.sourceforge.cobertura.util.FileFinder;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+
+/**
+ * Merges the Cobertura data files of development components into one track level coverage model and report.
+ * 
+ * Only data files of development components whose tests ran successfully or whose results were restored from the result cache in the
+ * current build are merged. The data file of a failed development component may be incomplete or left over from an earlier build.
+ * 
+ * Data files are read and merged one at a time, so only the merged model and the data of one development component are held in
+ * memory. Source folders are only registered with the reports, which read source files one by one while being written.
+ * 
+ * @author Dirk Weigenand
+ */
+final class CoverageAggregator {
+    /**
+     * name of the merged data file.
+     */
+    static final String DATA_FILE = "cobertura.ser";
+
+    /**
+     * the merged coverage data.
+     */
+    private final ProjectData projectData = new ProjectData();
+
+    /**
+     * development components whose coverage data is current.
+     */
+    private final Collection<DevelopmentComponent> completed;
+
+    /**
+     * index of the source folders of all merged development components.
+     */
+    private final FileFinder finder = new FileFinder();
+
+    /**
+     * number of data files merged.
+     */
+    private int dataFiles;
+
+    /**
+     * Create an aggregator merging the data files of the given development components.
+     * 
+     * @param completed
+     *            development components whose tests ran successfully or whose results were restored from the cache in this build.
+     */
+    CoverageAggregator(final Collection<DevelopmentComponent> completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * Merge the given data file into the track level coverage model.
+     * 
+     * @param component
+     *            development component the data file belongs to.
+     * @param dataFile
+     *            Cobertura data file of a development component.
+     * @param sourceFolders
+     *            source folders of the development component.
+     * @return <code>true</code> when the data file could be read and was merged, <code>false</code> when the development component
+     *         did not complete in this build or its data file could not be read.
+     */
+    boolean add(final DevelopmentComponent component, final File dataFile, final Collection<String> sourceFolders) {
+        if (!completed.contains(component) || !dataFile.exists()) {
+            return false;
+        }
+
+        final ProjectData data = CoverageDataFileHandler.loadCoverageData(dataFile);
+
+        if (data == null) {
+            return false;
+        }
+
+        projectData.merge(data);
+        dataFiles++;
+
+        for (final String folder : sourceFolders) {
+            finder.addSourceDirectory(folder);
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the merged data file and the XML (and HTML) coverage report into the given folder.
+     * 
+     * @param destDir
+     *            folder to write data file and reports into.
+     * @param encoding
+     *            encoding of source files.
+     * @param html
+     *            whether the HTML report should be written.
+     * @throws IOException
+     *             when writing data file or reports failed
+     */
+    void write(final File destDir, final String encoding, final boolean html) throws IOException {
+        if (!destDir.exists() && !destDir.mkdirs()) {
+            throw new IOException(String.format("Could not create %s.", destDir.getAbsolutePath()));
+        }
+
+        CoverageDataFileHandler.saveCoverageData(projectData, new File(destDir, DATA_FILE));
+        final ComplexityCalculator complexity = new ComplexityCalculator(finder);
+
+        try {
+            new XMLReport(projectData, destDir, finder, complexity);
+
+            if (html) {
+                new HTMLReport(projectData, destDir, finder, complexity, encoding);
+            }
+        }
+        catch (final IOException e) {
+            throw e;
+        }
+        catch (final Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return the number of data files merged.
+     */
+    int getDataFiles() {
+        return dataFiles;
+    }
+
+    /**
+     * @return the merged coverage data.
+     */
+    ProjectData getProjectData() {
+        return projectData;
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact in memory representation of a Cobertura coverage report.
+ * 
+ * Line numbers, hits and branch counts of each class are held in primitive arrays instead of one object per line. Package and class
+ * names are shared between all classes read by the same {@link CoverageXmlReader}.
+ * 
+ * @author Dirk Weigenand
+ */
+final class CoverageModel {
+    /**
+     * the classes contained in the coverage report.
+     */
+    private final List<ClassCoverage> classes = new ArrayList<ClassCoverage>();
+
+    /**
+     * Add the coverage of a class to this model.
+     * 
+     * @param clazz
+     *            coverage of a class.
+     */
+    void add(final ClassCoverage clazz) {
+        classes.add(clazz);
+    }
+
+    /**
+     * @return the classes contained in the coverage report.
+     */
+    List<ClassCoverage> getClasses() {
+        return Collections.unmodifiableList(classes);
+    }
+
+    /**
+     * @return the number of lines of all classes.
+     */
+    int getLinesValid() {
+        int lines = 0;
+
+        for (final ClassCoverage clazz : classes) {
+            lines += clazz.getLinesValid();
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return the number of lines executed at least once of all classes.
+     */
+    int getLinesCovered() {
+        int lines = 0;
+
+        for (final ClassCoverage clazz : classes) {
+            lines += clazz.getLinesCovered();
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return the number of branches of all classes.
+     */
+    int getBranchesValid() {
+        int branches = 0;
+
+        for (final ClassCoverage clazz : classes) {
+            branches += clazz.getBranchesValid();
+        }
+
+        return branches;
+    }
+
+    /**
+     * @return the number of branches taken of all classes.
+     */
+    int getBranchesCovered() {
+        int branches = 0;
+
+        for (final ClassCoverage clazz : classes) {
+            branches += clazz.getBranchesCovered();
+        }
+
+        return branches;
+    }
+
+    /**
+     * @return ratio of covered lines to all lines (<code>1</code> when there are no lines).
+     */
+    double getLineRate() {
+        return rate(getLinesCovered(), getLinesValid());
+    }
+
+    /**
+     * @return ratio of covered branches to all branches (<code>1</code> when there are no branches).
+     */
+    double getBranchRate() {
+        return rate(getBranchesCovered(), getBranchesValid());
+    }
+
+    /**
+     * Compute the ratio of covered to valid items.
+     * 
+     * @param covered
+     *            number of covered items.
+     * @param valid
+     *            number of all items.
+     * @return ratio of covered to valid items (<code>1</code> when there are no items).
+     */
+    static double rate(final int covered, final int valid) {
+        return valid == 0 ? 1d : (double)covered / valid;
+    }
+
+    /**
+     * Coverage of a single class.
+     * 
+     * @author Dirk Weigenand
+     */
+    static final class ClassCoverage {
+        /**
+         * name of the package containing the class.
+         */
+        private final String packageName;
+
+        /**
+         * fully qualified name of the class.
+         */
+        private final String name;
+
+        /**
+         * name of the source file of the class (relative to a source folder).
+         */
+        private final String fileName;
+
+        /**
+         * line numbers in ascending order.
+         */
+        private final int[] lines;
+
+        /**
+         * number of hits of the line with the same index in {@link #lines}.
+         */
+        private final int[] hits;
+
+        /**
+         * number of branches taken on the line with the same index in {@link #lines}.
+         */
+        private final int[] branchesCovered;
+
+        /**
+         * number of branches on the line with the same index in {@link #lines} (<code>0</code> for lines without a branch).
+         */
+        private final int[] branchesValid;
+
+        /**
+         * Create the coverage of a class.
+         * 
+         * @param packageName
+         *            name of the package containing the class.
+         * @param name
+         *            fully qualified name of the class.
+         * @param fileName
+         *            name of the source file of the class.
+         * @param lines
+         *            line numbers.
+         * @param hits
+         *            number of hits per line.
+         * @param branchesCovered
+         *            number of branches taken per line.
+         * @param branchesValid
+         *            number of branches per line.
+         */
+        ClassCoverage(final String packageName, final String name, final String fileName, final int[] lines, final int[] hits,
+            final int[] branchesCovered, final int[] branchesValid) {
+            this.packageName = packageName;
+            this.name = name;
+            this.fileName = fileName;
+            this.lines = lines;
+            this.hits = hits;
+            this.branchesCovered = branchesCovered;
+            this.branchesValid = branchesValid;
+        }
+
+        /**
+         * @return the name of the package containing the class.
+         */
+        String getPackageName() {
+            return packageName;
+        }
+
+        /**
+         * @return the fully qualified name of the class.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the name of the source file of the class.
+         */
+        String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * @return the number of lines of the class.
+         */
+        int getLinesValid() {
+            return lines.length;
+        }
+
+        /**
+         * @return the number of lines executed at least once.
+         */
+        int getLinesCovered() {
+            int covered = 0;
+
+            for (final int hit : hits) {
+                if (hit > 0) {
+                    covered++;
+                }
+            }
+
+            return covered;
+        }
+
+        /**
+         * @return the number of branches of the class.
+         */
+        int getBranchesValid() {
+            return sum(branchesValid);
+        }
+
+        /**
+         * @return the number of branches taken.
+         */
+        int getBranchesCovered() {
+            return sum(branchesCovered);
+        }
+
+        /**
+         * Returns the line number at the given index.
+         * 
+         * @param index
+         *            index of the line (<code>0 &lt;= index &lt; getLinesValid()</code>).
+         * @return the line number
+         */
+        int getLine(final int index) {
+            return lines[index];
+        }
+
+        /**
+         * Returns the number of hits of the line at the given index.
+         * 
+         * @param index
+         *            index of the line (<code>0 &lt;= index &lt; getLinesValid()</code>).
+         * @return the number of hits
+         */
+        int getHits(final int index) {
+            return hits[index];
+        }
+
+        /**
+         * Returns the number of branches taken on the line at the given index.
+         * 
+         * @param index
+         *            index of the line (<code>0 &lt;= index &lt; getLinesValid()</code>).
+         * @return the number of branches taken
+         */
+        int getBranchesCovered(final int index) {
+            return branchesCovered[index];
+        }
+
+        /**
+         * Returns the number of branches on the line at the given index.
+         * 
+         * @param index
+         *            index of the line (<code>0 &lt;= index &lt; getLinesValid()</code>).
+         * @return the number of branches (<code>0</code> for lines without a branch)
+         */
+        int getBranchesValid(final int index) {
+            return branchesValid[index];
+        }
+
+        /**
+         * Sum up the given values.
+         * 
+         * @param values
+         *            values to sum up.
+         * @return sum of the given values
+         */
+        private static int sum(final int[] values) {
+            int sum = 0;
+
+            for (final int value : values) {
+                sum += value;
+            }
+
+            return sum;
+        }
+    }
+}
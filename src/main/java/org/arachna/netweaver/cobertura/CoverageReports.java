@@ -0,0 +1,53 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+
+/**
+ * Build scoped cache of the coverage reports (<code>coverage.xml</code>) of development components.
+ * 
+ * The reports are written by the ant process running the tests, so they have to be read from disk. Each report is read only once per
+ * build, the threshold check and the coverage trend share the {@link CoverageModel} read.
+ * 
+ * @author Dirk Weigenand
+ */
+final class CoverageReports {
+    /**
+     * reader for coverage reports.
+     */
+    private final CoverageXmlReader reader = new CoverageXmlReader();
+
+    /**
+     * coverage reports already read.
+     */
+    private final Map<DevelopmentComponent, CoverageModel> models = new HashMap<DevelopmentComponent, CoverageModel>();
+
+    /**
+     * Returns the coverage of the given development component. Reads the given report only on first request.
+     * 
+     * @param component
+     *            development component to get the coverage for.
+     * @param report
+     *            XML coverage report of the development component.
+     * @return the coverage read from the report or <code>null</code> when the report does not exist.
+     * @throws IOException
+     *             when the coverage report could not be read
+     */
+    synchronized CoverageModel get(final DevelopmentComponent component, final File report) throws IOException {
+        CoverageModel model = models.get(component);
+
+        if (model == null && report.exists()) {
+            model = reader.read(report);
+            models.put(component, model);
+        }
+
+        return model;
+    }
+}
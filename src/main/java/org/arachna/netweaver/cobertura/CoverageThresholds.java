@@ -0,0 +1,151 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+
+/**
+ * Minimum line and branch coverage (in percent) development components have to reach.
+ * 
+ * Global thresholds can be overridden per development component. Overrides are given one per line in the form
+ * <code>vendor:name=line[,branch]</code>, e.g. <code>example.org:lib/util=80,60</code>. A threshold of <code>0</code> is not
+ * checked.
+ * 
+ * @author Dirk Weigenand
+ */
+final class CoverageThresholds {
+    /**
+     * global thresholds for line and branch coverage.
+     */
+    private final int[] global;
+
+    /**
+     * thresholds for line and branch coverage per development component (keyed by <code>vendor:name</code>).
+     */
+    private final Map<String, int[]> overrides = new HashMap<String, int[]>();
+
+    /**
+     * Create thresholds using the given global thresholds and overrides.
+     * 
+     * @param lineThreshold
+     *            minimum line coverage in percent.
+     * @param branchThreshold
+     *            minimum branch coverage in percent.
+     * @param overrides
+     *            overrides per development component, one per line.
+     * @throws IllegalArgumentException
+     *             when an override could not be parsed
+     */
+    CoverageThresholds(final int lineThreshold, final int branchThreshold, final String overrides) {
+        global = new int[] { lineThreshold, branchThreshold };
+
+        if (overrides != null) {
+            for (final String line : overrides.split("\\r?\\n")) {
+                final String override = line.trim();
+
+                if (override.length() > 0 && !override.startsWith("#")) {
+                    parseOverride(override);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates whether any threshold is to be checked.
+     * 
+     * @return <code>true</code> when a global threshold or an override is configured, <code>false</code> otherwise.
+     */
+    boolean isEnabled() {
+        return global[0] > 0 || global[1] > 0 || !overrides.isEmpty();
+    }
+
+    /**
+     * Check the coverage of the given development component against its thresholds.
+     * 
+     * @param component
+     *            development component to check.
+     * @param model
+     *            coverage of the development component (<code>null</code> when no coverage report was written).
+     * @param logger
+     *            logger to report violated thresholds to.
+     * @return <code>true</code> when the development component reached its thresholds, <code>false</code> otherwise.
+     */
+    boolean check(final DevelopmentComponent component, final CoverageModel model, final PrintStream logger) {
+        final String name = String.format("%s:%s", component.getVendor(), component.getName());
+        int[] thresholds = overrides.get(name);
+
+        if (thresholds == null) {
+            thresholds = global;
+        }
+
+        if (thresholds[0] <= 0 && thresholds[1] <= 0) {
+            return true;
+        }
+
+        if (model == null) {
+            logger.println(String.format("No coverage report found for %s, thresholds not reached.", name));
+            return false;
+        }
+
+        return check(name, "Line", model.getLineRate(), thresholds[0], logger)
+            & check(name, "Branch", model.getBranchRate(), thresholds[1], logger);
+    }
+
+    /**
+     * Check the given coverage rate against the given threshold.
+     * 
+     * @param name
+     *            name of development component.
+     * @param kind
+     *            kind of coverage (line or branch).
+     * @param rate
+     *            coverage rate (between <code>0</code> and <code>1</code>).
+     * @param threshold
+     *            minimum coverage in percent.
+     * @param logger
+     *            logger to report a violated threshold to.
+     * @return <code>true</code> when the threshold was reached, <code>false</code> otherwise.
+     */
+    private boolean check(final String name, final String kind, final double rate, final int threshold, final PrintStream logger) {
+        final double percent = rate * 100;
+
+        if (percent < threshold) {
+            logger.println(String.format("%s coverage of %s is %.1f%%, required are %d%%.", kind, name, percent, threshold));
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Parse an override of the form <code>vendor:name=line[,branch]</code>.
+     * 
+     * @param override
+     *            the override to parse.
+     * @throws IllegalArgumentException
+     *             when the override could not be parsed
+     */
+    private void parseOverride(final String override) {
+        final int equals = override.lastIndexOf('=');
+
+        if (equals < 1) {
+            throw new IllegalArgumentException(String.format("Invalid coverage threshold '%s'.", override));
+        }
+
+        final String[] values = override.substring(equals + 1).split(",");
+
+        try {
+            final int line = Integer.parseInt(values[0].trim());
+            final int branch = values.length > 1 ? Integer.parseInt(values[1].trim()) : global[1];
+            overrides.put(override.substring(0, equals).trim(), new int[] { line, branch });
+        }
+        catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid coverage threshold '%s'.", override), e);
+        }
+    }
+}
@@ -0,0 +1,716 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.arachna.netweaver.cobertura.CoverageModel.ClassCoverage;
+
+/**
+ * Append only binary store of the line and branch totals per development component and package of each build.
+ * 
+ * The store consists of two kinds of records. A name record assigns the next free id to a development component or package name. A
+ * build record holds the number and time of a build, the totals of the build and the totals of each development component and
+ * package referencing their names by id. The entries of a build record have a fixed size so that readers interested only in the
+ * totals of each build can skip them without parsing.
+ * 
+ * A record interrupted while being written (e.g. by a crash) is discarded when the next record is appended.
+ * 
+ * @author Dirk Weigenand
+ */
+final class CoverageTrendStore {
+    /**
+     * version of the store format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * marker of a name record.
+     */
+    private static final byte NAME_RECORD = 'N';
+
+    /**
+     * marker of a build record.
+     */
+    private static final byte BUILD_RECORD = 'B';
+
+    /**
+     * size of line and branch totals in bytes.
+     */
+    private static final int TOTALS_SIZE = 4 * 4;
+
+    /**
+     * size of an entry (ids of development component and package name and totals) of a build record in bytes.
+     */
+    private static final int ENTRY_SIZE = 2 * 4 + TOTALS_SIZE;
+
+    /**
+     * the file containing the store.
+     */
+    private final File file;
+
+    /**
+     * Create a store using the given file.
+     * 
+     * @param file
+     *            the file containing the store (created on first append).
+     */
+    CoverageTrendStore(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Create the entries for the packages of the given coverage model.
+     * 
+     * @param component
+     *            name of the development component the coverage model was read for.
+     * @param model
+     *            coverage model of the development component.
+     * @return the totals per package of the development component
+     */
+    static Collection<Entry> createEntries(final String component, final CoverageModel model) {
+        final Map<String, int[]> packages = new LinkedHashMap<String, int[]>();
+
+        for (final ClassCoverage clazz : model.getClasses()) {
+            int[] totals = packages.get(clazz.getPackageName());
+
+            if (totals == null) {
+                totals = new int[4];
+                packages.put(clazz.getPackageName(), totals);
+            }
+
+            totals[0] += clazz.getLinesValid();
+            totals[1] += clazz.getLinesCovered();
+            totals[2] += clazz.getBranchesValid();
+            totals[3] += clazz.getBranchesCovered();
+        }
+
+        final Collection<Entry> entries = new ArrayList<Entry>(packages.size());
+
+        for (final Map.Entry<String, int[]> entry : packages.entrySet()) {
+            final int[] totals = entry.getValue();
+            entries.add(new Entry(component, entry.getKey(), totals[0], totals[1], totals[2], totals[3]));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Append the totals of the given build to the store.
+     * 
+     * @param buildNumber
+     *            number of the build.
+     * @param timestamp
+     *            time the build started (in milliseconds since the epoch).
+     * @param entries
+     *            totals per development component and package.
+     * @throws IOException
+     *             when reading or writing the store failed
+     */
+    void append(final int buildNumber, final long timestamp, final Collection<Entry> entries) throws IOException {
+        final RandomAccessFile store = new RandomAccessFile(file, "rw");
+
+        try {
+            final FileLock lock = store.getChannel().lock();
+
+            try {
+                final Map<String, Integer> names = new HashMap<String, Integer>();
+                // the stream shares the file descriptor with the store and must not be closed
+                final long end = scan(new FileInputStream(store.getFD()), store.length(), names);
+                final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                final DataOutputStream out = new DataOutputStream(buffer);
+
+                if (end == 0) {
+                    out.writeInt(VERSION);
+                }
+
+                final int[] ids = new int[entries.size() * 2];
+                int i = 0;
+
+                for (final Entry entry : entries) {
+                    ids[i++] = getId(out, names, entry.getComponent());
+                    ids[i++] = getId(out, names, entry.getPackageName());
+                }
+
+                final Entry totals = sum(entries);
+                out.writeByte(BUILD_RECORD);
+                out.writeInt(buildNumber);
+                out.writeLong(timestamp);
+                writeTotals(out, totals);
+                out.writeInt(entries.size());
+                i = 0;
+
+                for (final Entry entry : entries) {
+                    out.writeInt(ids[i++]);
+                    out.writeInt(ids[i++]);
+                    writeTotals(out, entry);
+                }
+
+                out.flush();
+                store.setLength(end);
+                store.seek(end);
+                store.write(buffer.toByteArray());
+            }
+            finally {
+                lock.release();
+            }
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Read the totals of all builds in the store. Entries of development components and packages are skipped.
+     * 
+     * @return the totals of all builds in the order they were appended (development component and package name are
+     *         <code>null</code>).
+     * @throws IOException
+     *             when reading the store failed
+     */
+    List<Build> readTotals() throws IOException {
+        return read(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read the totals of all builds in the store including the totals of the development components and packages of the given number
+     * of most recent builds. The entries of all other builds are skipped without parsing, so memory and time needed do not depend on
+     * the number of entries of older builds.
+     * 
+     * @param withEntries
+     *            number of most recent builds whose entries should be read.
+     * @return the totals of all builds in the order they were appended, entries are empty except for the most recent builds
+     * @throws IOException
+     *             when reading the store failed
+     */
+    List<Build> readTotals(final int withEntries) throws IOException {
+        final int builds = readTotals().size();
+
+        return read(new ArrayList<String>(), builds - withEntries);
+    }
+
+    /**
+     * Read the totals of all builds in the store including the totals of all development components and packages.
+     * 
+     * @return the builds in the order they were appended
+     * @throws IOException
+     *             when reading the store failed
+     */
+    List<Build> readAll() throws IOException {
+        return read(new ArrayList<String>(), 0);
+    }
+
+    /**
+     * Read the builds in the store.
+     * 
+     * @param names
+     *            list to collect names into or <code>null</code> when the entries of builds should be skipped.
+     * @param firstWithEntries
+     *            index of the first build whose entries should be read, the entries of builds before are skipped.
+     * @return the builds in the order they were appended
+     * @throws IOException
+     *             when reading the store failed
+     */
+    private List<Build> read(final List<String> names, final int firstWithEntries) throws IOException {
+        final List<Build> builds = new ArrayList<Build>();
+
+        if (!file.exists()) {
+            return builds;
+        }
+
+        final BoundedInputStream stream = new BoundedInputStream(new FileInputStream(file), file.length());
+        final DataInputStream in = new DataInputStream(stream);
+
+        try {
+            checkVersion(in);
+
+            while (true) {
+                final int type = in.read();
+
+                if (type == NAME_RECORD) {
+                    final String name = in.readUTF();
+
+                    if (names != null) {
+                        names.add(name);
+                    }
+                }
+                else if (type == BUILD_RECORD) {
+                    final int number = in.readInt();
+                    final long timestamp = in.readLong();
+                    final Entry totals = readTotals(in, null, null);
+                    final int count = in.readInt();
+                    final boolean withEntries = names != null && builds.size() >= firstWithEntries;
+                    final List<Entry> entries = new ArrayList<Entry>(withEntries ? count : 0);
+
+                    if (!withEntries) {
+                        stream.skipFully((long)count * ENTRY_SIZE);
+                    }
+                    else {
+                        for (int i = 0; i < count; i++) {
+                            final String component = names.get(in.readInt());
+                            entries.add(readTotals(in, component, names.get(in.readInt())));
+                        }
+                    }
+
+                    builds.add(new Build(number, timestamp, totals, entries));
+                }
+                else {
+                    break;
+                }
+            }
+        }
+        catch (final EOFException e) {
+            // incomplete last record
+        }
+        finally {
+            in.close();
+        }
+
+        return builds;
+    }
+
+    /**
+     * Scan the store for names and determine the end of the last complete record.
+     * 
+     * @param stream
+     *            stream positioned at the beginning of the store (not closed by this method).
+     * @param length
+     *            length of the store.
+     * @param names
+     *            map to collect the ids of names into.
+     * @return offset of the end of the last complete record
+     * @throws IOException
+     *             when reading the store failed
+     */
+    private long scan(final InputStream stream, final long length, final Map<String, Integer> names) throws IOException {
+        final BoundedInputStream counter = new BoundedInputStream(stream, length);
+        final DataInputStream in = new DataInputStream(counter);
+        long end = 0;
+
+        try {
+            checkVersion(in);
+            end = counter.getCount();
+
+            while (true) {
+                final int type = in.read();
+
+                if (type == NAME_RECORD) {
+                    names.put(in.readUTF(), names.size());
+                }
+                else if (type == BUILD_RECORD) {
+                    // build number, timestamp and totals of the build
+                    counter.skipFully(4 + 8 + TOTALS_SIZE);
+                    counter.skipFully((long)in.readInt() * ENTRY_SIZE);
+                }
+                else {
+                    break;
+                }
+
+                end = counter.getCount();
+            }
+        }
+        catch (final EOFException e) {
+            // incomplete last record, will be overwritten
+        }
+
+        return end;
+    }
+
+    /**
+     * Check the version at the beginning of the store.
+     * 
+     * @param in
+     *            stream positioned at the beginning of the store.
+     * @throws IOException
+     *             when the store has an unknown version
+     */
+    private void checkVersion(final DataInputStream in) throws IOException {
+        final int version = in.readInt();
+
+        if (version != VERSION) {
+            throw new IOException(String.format("%s has unknown version %d.", file.getAbsolutePath(), version));
+        }
+    }
+
+    /**
+     * Returns the id of the given name. Writes a name record when the name is not yet known.
+     * 
+     * @param out
+     *            stream to write name records to.
+     * @param names
+     *            ids of known names.
+     * @param name
+     *            the name to get the id for.
+     * @return the id of the name
+     * @throws IOException
+     *             when writing the name record failed
+     */
+    private int getId(final DataOutputStream out, final Map<String, Integer> names, final String name) throws IOException {
+        Integer id = names.get(name);
+
+        if (id == null) {
+            id = names.size();
+            names.put(name, id);
+            out.writeByte(NAME_RECORD);
+            out.writeUTF(name);
+        }
+
+        return id;
+    }
+
+    /**
+     * Sum up the totals of the given entries.
+     * 
+     * @param entries
+     *            entries to sum up.
+     * @return the totals of all entries
+     */
+    private Entry sum(final Collection<Entry> entries) {
+        int linesValid = 0;
+        int linesCovered = 0;
+        int branchesValid = 0;
+        int branchesCovered = 0;
+
+        for (final Entry entry : entries) {
+            linesValid += entry.getLinesValid();
+            linesCovered += entry.getLinesCovered();
+            branchesValid += entry.getBranchesValid();
+            branchesCovered += entry.getBranchesCovered();
+        }
+
+        return new Entry(null, null, linesValid, linesCovered, branchesValid, branchesCovered);
+    }
+
+    /**
+     * Write the totals of the given entry.
+     * 
+     * @param out
+     *            stream to write to.
+     * @param entry
+     *            entry whose totals should be written.
+     * @throws IOException
+     *             when writing failed
+     */
+    private void writeTotals(final DataOutputStream out, final Entry entry) throws IOException {
+        out.writeInt(entry.getLinesValid());
+        out.writeInt(entry.getLinesCovered());
+        out.writeInt(entry.getBranchesValid());
+        out.writeInt(entry.getBranchesCovered());
+    }
+
+    /**
+     * Read totals into a new entry.
+     * 
+     * @param in
+     *            stream to read from.
+     * @param component
+     *            name of development component of the entry.
+     * @param packageName
+     *            name of package of the entry.
+     * @return the entry read
+     * @throws IOException
+     *             when reading failed
+     */
+    private Entry readTotals(final DataInputStream in, final String component, final String packageName) throws IOException {
+        return new Entry(component, packageName, in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+
+    /**
+     * Line and branch totals of a development component and package (or of a whole build).
+     * 
+     * @author Dirk Weigenand
+     */
+    static final class Entry {
+        /**
+         * name of development component.
+         */
+        private final String component;
+
+        /**
+         * name of package.
+         */
+        private final String packageName;
+
+        /**
+         * number of lines.
+         */
+        private final int linesValid;
+
+        /**
+         * number of lines executed at least once.
+         */
+        private final int linesCovered;
+
+        /**
+         * number of branches.
+         */
+        private final int branchesValid;
+
+        /**
+         * number of branches taken.
+         */
+        private final int branchesCovered;
+
+        /**
+         * Create an entry with the given totals.
+         * 
+         * @param component
+         *            name of development component.
+         * @param packageName
+         *            name of package.
+         * @param linesValid
+         *            number of lines.
+         * @param linesCovered
+         *            number of lines executed at least once.
+         * @param branchesValid
+         *            number of branches.
+         * @param branchesCovered
+         *            number of branches taken.
+         */
+        Entry(final String component, final String packageName, final int linesValid, final int linesCovered,
+            final int branchesValid, final int branchesCovered) {
+            this.component = component;
+            this.packageName = packageName;
+            this.linesValid = linesValid;
+            this.linesCovered = linesCovered;
+            this.branchesValid = branchesValid;
+            this.branchesCovered = branchesCovered;
+        }
+
+        /**
+         * @return the name of the development component
+         */
+        String getComponent() {
+            return component;
+        }
+
+        /**
+         * @return the name of the package
+         */
+        String getPackageName() {
+            return packageName;
+        }
+
+        /**
+         * @return the number of lines
+         */
+        int getLinesValid() {
+            return linesValid;
+        }
+
+        /**
+         * @return the number of lines executed at least once
+         */
+        int getLinesCovered() {
+            return linesCovered;
+        }
+
+        /**
+         * @return the number of branches
+         */
+        int getBranchesValid() {
+            return branchesValid;
+        }
+
+        /**
+         * @return the number of branches taken
+         */
+        int getBranchesCovered() {
+            return branchesCovered;
+        }
+    }
+
+    /**
+     * Totals of a build.
+     * 
+     * @author Dirk Weigenand
+     */
+    static final class Build {
+        /**
+         * number of the build.
+         */
+        private final int number;
+
+        /**
+         * time the build started.
+         */
+        private final long timestamp;
+
+        /**
+         * totals of the build.
+         */
+        private final Entry totals;
+
+        /**
+         * totals per development component and package.
+         */
+        private final List<Entry> entries;
+
+        /**
+         * Create the totals of a build.
+         * 
+         * @param number
+         *            number of the build.
+         * @param timestamp
+         *            time the build started.
+         * @param totals
+         *            totals of the build.
+         * @param entries
+         *            totals per development component and package (empty when not read).
+         */
+        Build(final int number, final long timestamp, final Entry totals, final List<Entry> entries) {
+            this.number = number;
+            this.timestamp = timestamp;
+            this.totals = totals;
+            this.entries = entries;
+        }
+
+        /**
+         * @return the number of the build
+         */
+        int getNumber() {
+            return number;
+        }
+
+        /**
+         * @return the time the build started
+         */
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the totals of the build
+         */
+        Entry getTotals() {
+            return totals;
+        }
+
+        /**
+         * @return the totals per development component and package
+         */
+        List<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    /**
+     * Buffered input stream counting the bytes read and skipping only up to the given length.
+     * 
+     * @author Dirk Weigenand
+     */
+    private static final class BoundedInputStream extends BufferedInputStream {
+        /**
+         * length of the underlying file.
+         */
+        private final long length;
+
+        /**
+         * number of bytes read or skipped.
+         */
+        private long count;
+
+        /**
+         * Create a counting stream reading from the given stream.
+         * 
+         * @param in
+         *            stream to read from.
+         * @param length
+         *            length of the underlying file.
+         */
+        BoundedInputStream(final InputStream in, final long length) {
+            super(in);
+            this.length = length;
+        }
+
+        /**
+         * Skip exactly the given number of bytes. {@link FileInputStream#skip(long)} may skip beyond the end of the file, so the number
+         * of remaining bytes is checked before.
+         * 
+         * @param n
+         *            number of bytes to skip.
+         * @throws IOException
+         *             when less than the given number of bytes remain
+         */
+        void skipFully(final long n) throws IOException {
+            if (count + n > length) {
+                throw new EOFException();
+            }
+
+            long remaining = n;
+
+            while (remaining > 0) {
+                final long skipped = skip(remaining);
+
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+
+                remaining -= skipped;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized int read() throws IOException {
+            final int b = super.read();
+
+            if (b != -1) {
+                count++;
+            }
+
+            return b;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+
+            if (read > 0) {
+                count += read;
+            }
+
+            return read;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+
+            return skipped;
+        }
+
+        /**
+         * @return the number of bytes read or skipped
+         */
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.arachna.netweaver.cobertura.CoverageTrendStore.Build;
+import org.arachna.netweaver.cobertura.CoverageTrendStore.Entry;
+
+/**
+ * Summary of the coverage trend of a project for the console log: the line and branch coverage of the last builds and the development
+ * components whose line coverage decreased since the previous build.
+ * 
+ * @author Dirk Weigenand
+ */
+final class CoverageTrendSummary {
+    /**
+     * number of builds whose totals are listed.
+     */
+    private static final int BUILDS = 5;
+
+    /**
+     * the store to read the trend from.
+     */
+    private final CoverageTrendStore store;
+
+    /**
+     * Create a summary of the trend in the given store.
+     * 
+     * @param store
+     *            the store to read the trend from.
+     */
+    CoverageTrendSummary(final CoverageTrendStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Print the summary to the given stream.
+     * 
+     * @param logger
+     *            stream to print to
+     * @throws IOException
+     *             when reading the store failed
+     */
+    void print(final PrintStream logger) throws IOException {
+        final List<Build> totals = store.readTotals(2);
+
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        logger.println(String.format("%-10s %10s %10s", "Build", "Lines", "Branches"));
+
+        for (final Build build : totals.subList(Math.max(0, totals.size() - BUILDS), totals.size())) {
+            logger.println(String.format("%-10s %10s %10s", "#" + build.getNumber(),
+                formatRate(build.getTotals().getLinesCovered(), build.getTotals().getLinesValid()),
+                formatRate(build.getTotals().getBranchesCovered(), build.getTotals().getBranchesValid())));
+        }
+
+        if (totals.size() < 2) {
+            return;
+        }
+
+        final Build previous = totals.get(totals.size() - 2);
+        final Map<String, int[]> before = sumByComponent(previous);
+        boolean headerPrinted = false;
+
+        for (final Map.Entry<String, int[]> component : sumByComponent(totals.get(totals.size() - 1)).entrySet()) {
+            final int[] old = before.get(component.getKey());
+            final int[] current = component.getValue();
+
+            if (old != null && old[0] > 0 && current[0] > 0 && (long)current[1] * old[0] < (long)old[1] * current[0]) {
+                if (!headerPrinted) {
+                    logger.println();
+                    logger.println(String.format("Development components with decreased line coverage since build #%d:",
+                        previous.getNumber()));
+                    headerPrinted = true;
+                }
+
+                logger.println(String.format("%-60s %10s -> %s", component.getKey(), formatRate(old[1], old[0]),
+                    formatRate(current[1], current[0])));
+            }
+        }
+    }
+
+    /**
+     * Sum up the line totals of the packages of each development component of the given build.
+     * 
+     * @param build
+     *            build to sum up the entries of
+     * @return the number of valid and covered lines by development component
+     */
+    private Map<String, int[]> sumByComponent(final Build build) {
+        final Map<String, int[]> components = new TreeMap<String, int[]>();
+
+        for (final Entry entry : build.getEntries()) {
+            int[] lines = components.get(entry.getComponent());
+
+            if (lines == null) {
+                lines = new int[2];
+                components.put(entry.getComponent(), lines);
+            }
+
+            lines[0] += entry.getLinesValid();
+            lines[1] += entry.getLinesCovered();
+        }
+
+        return components;
+    }
+
+    /**
+     * Format the given rate as percentage.
+     * 
+     * @param covered
+     *            number of covered lines or branches
+     * @param valid
+     *            number of lines or branches
+     * @return the rate in percent or <code>-</code> when there are no lines or branches
+     */
+    private String formatRate(final int covered, final int valid) {
+        return valid == 0 ? "-" : String.format("%.1f%%", covered * 100.0 / valid);
+    }
+}
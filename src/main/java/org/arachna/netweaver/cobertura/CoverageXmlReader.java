@@ -0,0 +1,257 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.arachna.netweaver.cobertura.CoverageModel.ClassCoverage;
+
+/**
+ * Reader for coverage reports written by Cobertura (<code>coverage.xml</code>) into a {@link CoverageModel}.
+ * 
+ * The report is read using StAX so no DOM of the (possibly huge) report is built. Only the <code>lines</code> element of each class is
+ * evaluated, lines repeated in the <code>methods</code> element are skipped. The DTD referenced by the report is not loaded.
+ * 
+ * Instances are not thread safe. Package and class names are shared between all reports read using the same instance.
+ * 
+ * @author Dirk Weigenand
+ */
+final class CoverageXmlReader {
+    /**
+     * initial capacity of the line arrays of a class.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * factory for StAX readers.
+     */
+    private final XMLInputFactory factory;
+
+    /**
+     * names already read.
+     */
+    private final Map<String, String> names = new HashMap<String, String>();
+
+    /**
+     * line numbers of the class currently read.
+     */
+    private int[] lines = new int[INITIAL_CAPACITY];
+
+    /**
+     * hits of the class currently read.
+     */
+    private int[] hits = new int[INITIAL_CAPACITY];
+
+    /**
+     * branches taken of the class currently read.
+     */
+    private int[] branchesCovered = new int[INITIAL_CAPACITY];
+
+    /**
+     * branches of the class currently read.
+     */
+    private int[] branchesValid = new int[INITIAL_CAPACITY];
+
+    /**
+     * number of lines of the class currently read.
+     */
+    private int lineCount;
+
+    /**
+     * Create a reader for Cobertura coverage reports.
+     */
+    CoverageXmlReader() {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * Read the given coverage report.
+     * 
+     * @param report
+     *            coverage report written by Cobertura.
+     * @return the coverage model read from the report
+     * @throws IOException
+     *             when the report could not be read or parsed
+     */
+    CoverageModel read(final File report) throws IOException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(report));
+
+        try {
+            return read(in);
+        }
+        catch (final XMLStreamException e) {
+            throw new IOException(String.format("Could not parse %s.", report.getAbsolutePath()), e);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a coverage report from the given stream.
+     * 
+     * @param in
+     *            stream to read the coverage report from.
+     * @return the coverage model read from the stream
+     * @throws XMLStreamException
+     *             when the report could not be parsed
+     */
+    CoverageModel read(final InputStream in) throws XMLStreamException {
+        final CoverageModel model = new CoverageModel();
+        final XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+        try {
+            String packageName = "";
+
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    final String element = reader.getLocalName();
+
+                    if ("package".equals(element)) {
+                        packageName = getName(reader.getAttributeValue(null, "name"));
+                    }
+                    else if ("class".equals(element)) {
+                        model.add(readClass(reader, packageName));
+                    }
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return model;
+    }
+
+    /**
+     * Read the <code>class</code> element the given reader is positioned at.
+     * 
+     * @param reader
+     *            reader positioned at the start of a <code>class</code> element.
+     * @param packageName
+     *            name of the package containing the class.
+     * @return the coverage of the class
+     * @throws XMLStreamException
+     *             when the report could not be parsed
+     */
+    private ClassCoverage readClass(final XMLStreamReader reader, final String packageName) throws XMLStreamException {
+        final String name = getName(reader.getAttributeValue(null, "name"));
+        final String fileName = getName(reader.getAttributeValue(null, "filename"));
+        lineCount = 0;
+        int depth = 1;
+        boolean inMethods = false;
+
+        while (depth > 0) {
+            final int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                final String element = reader.getLocalName();
+
+                if ("methods".equals(element)) {
+                    inMethods = true;
+                }
+                else if (!inMethods && "line".equals(element)) {
+                    addLine(reader);
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+
+                if ("methods".equals(reader.getLocalName())) {
+                    inMethods = false;
+                }
+            }
+        }
+
+        return new ClassCoverage(packageName, name, fileName, Arrays.copyOf(lines, lineCount), Arrays.copyOf(hits, lineCount),
+            Arrays.copyOf(branchesCovered, lineCount), Arrays.copyOf(branchesValid, lineCount));
+    }
+
+    /**
+     * Add the <code>line</code> element the given reader is positioned at to the lines of the current class.
+     * 
+     * @param reader
+     *            reader positioned at the start of a <code>line</code> element.
+     */
+    private void addLine(final XMLStreamReader reader) {
+        if (lineCount == lines.length) {
+            final int capacity = lines.length * 2;
+            lines = Arrays.copyOf(lines, capacity);
+            hits = Arrays.copyOf(hits, capacity);
+            branchesCovered = Arrays.copyOf(branchesCovered, capacity);
+            branchesValid = Arrays.copyOf(branchesValid, capacity);
+        }
+
+        lines[lineCount] = Integer.parseInt(reader.getAttributeValue(null, "number"));
+        final long lineHits = Long.parseLong(reader.getAttributeValue(null, "hits"));
+        hits[lineCount] = (int)Math.min(lineHits, Integer.MAX_VALUE);
+        branchesCovered[lineCount] = 0;
+        branchesValid[lineCount] = 0;
+
+        if ("true".equals(reader.getAttributeValue(null, "branch"))) {
+            parseConditionCoverage(reader.getAttributeValue(null, "condition-coverage"));
+        }
+
+        lineCount++;
+    }
+
+    /**
+     * Parse the condition coverage of a line (e.g. <code>50% (1/2)</code>) into the branch counts of the current line.
+     * 
+     * @param conditionCoverage
+     *            value of the <code>condition-coverage</code> attribute (may be <code>null</code>).
+     */
+    private void parseConditionCoverage(final String conditionCoverage) {
+        if (conditionCoverage == null) {
+            return;
+        }
+
+        final int open = conditionCoverage.indexOf('(');
+        final int slash = conditionCoverage.indexOf('/', open);
+        final int close = conditionCoverage.indexOf(')', slash);
+
+        if (open > -1 && slash > -1 && close > -1) {
+            branchesCovered[lineCount] = Integer.parseInt(conditionCoverage.substring(open + 1, slash).trim());
+            branchesValid[lineCount] = Integer.parseInt(conditionCoverage.substring(slash + 1, close).trim());
+        }
+    }
+
+    /**
+     * Returns the shared instance of the given name.
+     * 
+     * @param name
+     *            a package, class or file name (may be <code>null</code>).
+     * @return the shared instance of the given name (an empty string for <code>null</code>).
+     */
+    private String getName(final String name) {
+        if (name == null) {
+            return "";
+        }
+
+        final String sharedName = names.get(name);
+
+        if (sharedName != null) {
+            return sharedName;
+        }
+
+        names.put(name, name);
+
+        return name;
+    }
+}
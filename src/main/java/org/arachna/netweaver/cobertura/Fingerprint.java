@@ -0,0 +1,132 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Accumulates values into a message digest to compute a fingerprint over them.
+ * 
+ * @author Dirk Weigenand
+ */
+final class Fingerprint {
+    /**
+     * algorithm used for computing fingerprints.
+     */
+    private static final String ALGORITHM = "MD5";
+
+    /**
+     * hexadecimal digits for formatting the fingerprint.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * size of buffer used for reading files.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * the digest values are accumulated in.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * Create a new empty fingerprint.
+     */
+    Fingerprint() {
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Add the given value to the fingerprint.
+     * 
+     * @param value
+     *            value to add (<code>null</code> is treated like an empty string).
+     * @return this fingerprint
+     */
+    Fingerprint add(final String value) {
+        try {
+            digest.update((value == null ? "" : value).getBytes("UTF-8"));
+            // separate values so that ("ab", "c") and ("a", "bc") differ
+            digest.update((byte)0);
+        }
+        catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return this;
+    }
+
+    /**
+     * Add the given values to the fingerprint.
+     * 
+     * @param values
+     *            values to add.
+     * @return this fingerprint
+     */
+    Fingerprint add(final Iterable<String> values) {
+        for (final String value : values) {
+            add(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Add the content of the given file to the fingerprint.
+     * 
+     * @param file
+     *            file whose content should be added.
+     * @return this fingerprint
+     * @throws IOException
+     *             when reading the file failed
+     */
+    Fingerprint add(final File file) throws IOException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        digest.update((byte)0);
+
+        return this;
+    }
+
+    /**
+     * Returns the fingerprint of the values added so far as hexadecimal string. Resets the fingerprint.
+     * 
+     * @return the fingerprint as hexadecimal string
+     */
+    String getValue() {
+        final byte[] bytes = digest.digest();
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+
+        for (final byte b : bytes) {
+            hex.append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+        }
+
+        return hex.toString();
+    }
+}
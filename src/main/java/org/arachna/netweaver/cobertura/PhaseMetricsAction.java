@@ -0,0 +1,401 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import hudson.model.Action;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Action recording the wall time, CPU time and I/O of each phase (generation of the build file and each target of the generated build
+ * file) of each development component of a build.
+ * 
+ * The measurements are exported via the remote API of the build (e.g. <code>.../api/json?tree=actions[phases[*]]</code>) and
+ * summarized in the console log.
+ * 
+ * @author Dirk Weigenand
+ */
+@ExportedBean
+public final class PhaseMetricsAction implements Action {
+    /**
+     * name of the phase generating the build file of a development component.
+     */
+    static final String GENERATE_PHASE = "generate-build-file";
+
+    /**
+     * number of development components listed in the summary.
+     */
+    private static final int SLOWEST_COMPONENTS = 10;
+
+    /**
+     * measured phases.
+     */
+    private final List<Phase> phases = new ArrayList<Phase>();
+
+    /**
+     * Add the measurements of a phase.
+     * 
+     * @param component
+     *            name of development component (<code>vendor:name</code>)
+     * @param name
+     *            name of phase
+     * @param wallTime
+     *            wall time in milli seconds
+     * @param cpuTime
+     *            CPU time in milli seconds (<code>-1</code> when unknown)
+     * @param bytesRead
+     *            bytes read (<code>-1</code> when unknown)
+     * @param bytesWritten
+     *            bytes written (<code>-1</code> when unknown)
+     * @param failed
+     *            whether the phase failed
+     */
+    synchronized void add(final String component, final String name, final long wallTime, final long cpuTime,
+        final long bytesRead, final long bytesWritten, final boolean failed) {
+        phases.add(new Phase(component, name, wallTime, cpuTime, bytesRead, bytesWritten, failed));
+    }
+
+    /**
+     * Add the phases recorded by the phase timer of a generated build file in the given file.
+     * 
+     * @param component
+     *            name of development component (<code>vendor:name</code>)
+     * @param targetSuffix
+     *            suffix of the target names of the development component to strip from the phase names
+     * @param metricsFile
+     *            file written by the phase timer
+     * @throws IOException
+     *             when the file could not be read
+     */
+    void read(final String component, final String targetSuffix, final File metricsFile) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(metricsFile), "UTF-8"));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split("\t");
+
+                if (fields.length != 6) {
+                    continue;
+                }
+
+                String name = fields[0];
+
+                if (name.endsWith(targetSuffix) && name.length() > targetSuffix.length()) {
+                    name = name.substring(0, name.length() - targetSuffix.length());
+                }
+
+                try {
+                    add(component, name, Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                        Long.parseLong(fields[4]), "failed".equals(fields[5]));
+                }
+                catch (final NumberFormatException e) {
+                    continue;
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Print the measurements summed up per phase and the development components taking the most wall time to the given stream.
+     * 
+     * @param logger
+     *            stream to print to
+     */
+    void printSummary(final PrintStream logger) {
+        final Map<String, Phase> totalsPerPhase = new LinkedHashMap<String, Phase>();
+        final Map<String, Phase> totalsPerComponent = new LinkedHashMap<String, Phase>();
+
+        for (final Phase phase : getPhases()) {
+            add(totalsPerPhase, phase.getName(), phase);
+            add(totalsPerComponent, phase.getComponent(), phase);
+        }
+
+        if (totalsPerPhase.isEmpty()) {
+            return;
+        }
+
+        logger.println(String.format("%-40s %8s %12s %12s %12s %12s", "Phase", "Count", "Wall (ms)", "CPU (ms)", "Read (KB)",
+            "Written (KB)"));
+
+        for (final Phase total : sortByWallTime(totalsPerPhase)) {
+            logger.println(String.format("%-40s %8d %12d %12d %12d %12d", total.getName(), total.count, total.getWallTime(),
+                total.getCpuTime(), kiloBytes(total.getBytesRead()), kiloBytes(total.getBytesWritten())));
+        }
+
+        logger.println();
+        logger.println(String.format("%-60s %12s %12s", "Development component", "Wall (ms)", "CPU (ms)"));
+
+        final List<Phase> components = sortByWallTime(totalsPerComponent);
+
+        for (final Phase total : components.subList(0, Math.min(SLOWEST_COMPONENTS, components.size()))) {
+            logger.println(String.format("%-60s %12d %12d", total.getComponent(), total.getWallTime(), total.getCpuTime()));
+        }
+    }
+
+    /**
+     * Add the measurements of the given phase to the totals registered under the given key.
+     * 
+     * @param totals
+     *            totals by key
+     * @param key
+     *            key of totals to add to
+     * @param phase
+     *            measured phase
+     */
+    private void add(final Map<String, Phase> totals, final String key, final Phase phase) {
+        final Phase total = totals.get(key);
+
+        if (total == null) {
+            totals.put(key, new Phase(phase.getComponent(), phase.getName(), phase.getWallTime(), phase.getCpuTime(), phase
+                .getBytesRead(), phase.getBytesWritten(), phase.isFailed()));
+        }
+        else {
+            total.add(phase);
+        }
+    }
+
+    /**
+     * Sort the given totals by descending wall time.
+     * 
+     * @param totals
+     *            totals by key
+     * @return the totals sorted by descending wall time
+     */
+    private List<Phase> sortByWallTime(final Map<String, Phase> totals) {
+        final List<Phase> sorted = new ArrayList<Phase>(totals.values());
+        Collections.sort(sorted, new Comparator<Phase>() {
+            @Override
+            public int compare(final Phase first, final Phase second) {
+                return Long.valueOf(second.getWallTime()).compareTo(first.getWallTime());
+            }
+        });
+
+        return sorted;
+    }
+
+    /**
+     * Convert the given number of bytes into kilo bytes.
+     * 
+     * @param bytes
+     *            number of bytes (<code>-1</code> when unknown)
+     * @return number of kilo bytes (<code>-1</code> when unknown)
+     */
+    private static long kiloBytes(final long bytes) {
+        return bytes < 0 ? bytes : bytes / 1024;
+    }
+
+    /**
+     * Returns the measured phases.
+     * 
+     * @return the measured phases
+     */
+    @Exported(inline = true)
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<Phase>(phases);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getDisplayName() {
+        return "Phase metrics";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getUrlName() {
+        return "phaseMetrics";
+    }
+
+    /**
+     * Measurements of a phase of a development component.
+     * 
+     * @author Dirk Weigenand
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Phase {
+        /**
+         * name of development component.
+         */
+        private final String component;
+
+        /**
+         * name of phase.
+         */
+        private final String name;
+
+        /**
+         * wall time in milli seconds.
+         */
+        private long wallTime;
+
+        /**
+         * CPU time in milli seconds.
+         */
+        private long cpuTime;
+
+        /**
+         * bytes read.
+         */
+        private long bytesRead;
+
+        /**
+         * bytes written.
+         */
+        private long bytesWritten;
+
+        /**
+         * whether the phase failed.
+         */
+        private boolean failed;
+
+        /**
+         * number of phases summed up (used for totals only).
+         */
+        private transient int count = 1;
+
+        /**
+         * Create the measurements of a phase.
+         * 
+         * @param component
+         *            name of development component
+         * @param name
+         *            name of phase
+         * @param wallTime
+         *            wall time in milli seconds
+         * @param cpuTime
+         *            CPU time in milli seconds
+         * @param bytesRead
+         *            bytes read
+         * @param bytesWritten
+         *            bytes written
+         * @param failed
+         *            whether the phase failed
+         */
+        Phase(final String component, final String name, final long wallTime, final long cpuTime, final long bytesRead,
+            final long bytesWritten, final boolean failed) {
+            this.component = component;
+            this.name = name;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.failed = failed;
+        }
+
+        /**
+         * Add the measurements of the given phase to this one. Unknown measurements stay unknown.
+         * 
+         * @param other
+         *            measurements to add
+         */
+        private void add(final Phase other) {
+            wallTime += other.wallTime;
+            cpuTime = sum(cpuTime, other.cpuTime);
+            bytesRead = sum(bytesRead, other.bytesRead);
+            bytesWritten = sum(bytesWritten, other.bytesWritten);
+            failed |= other.failed;
+            count++;
+        }
+
+        /**
+         * Returns the sum of the given measurements.
+         * 
+         * @param first
+         *            first measurement
+         * @param second
+         *            second measurement
+         * @return the sum of the given measurements or <code>-1</code> when one of them is unknown
+         */
+        private static long sum(final long first, final long second) {
+            return first < 0 || second < 0 ? -1 : first + second;
+        }
+
+        /**
+         * @return the name of the development component
+         */
+        @Exported
+        public String getComponent() {
+            return component;
+        }
+
+        /**
+         * @return the name of the phase
+         */
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the wall time in milli seconds
+         */
+        @Exported
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return the CPU time in milli seconds (<code>-1</code> when unknown)
+         */
+        @Exported
+        public long getCpuTime() {
+            return cpuTime;
+        }
+
+        /**
+         * @return the bytes read (<code>-1</code> when unknown)
+         */
+        @Exported
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return the bytes written (<code>-1</code> when unknown)
+         */
+        @Exported
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * @return whether the phase failed
+         */
+        @Exported
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+}
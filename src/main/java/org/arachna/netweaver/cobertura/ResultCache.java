@@ -0,0 +1,302 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import hudson.FilePath;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+
+/**
+ * Persistent cache of the JUnit and coverage results of development components.
+ * 
+ * Results are keyed on a hash of the generated build file, the sources, the class path archives, the encoding, the target version and
+ * the plugin version. The build file reflects the settings of the test run and the reports (e.g. fork mode, JVM arguments, time out,
+ * coverage engine, test selection or skipping the HTML reports). When none of them changed since the last successful run of a
+ * development component, the results of that run can be restored instead of running the tests again.
+ * 
+ * @author Dirk Weigenand
+ */
+final class ResultCache {
+    /**
+     * name of the file holding the key of a cache entry.
+     */
+    private static final String KEY_FILE = "key";
+
+    /**
+     * folders of the log directory of a development component that are cached.
+     */
+    private static final String[] CACHED_FOLDERS = { "junit", "coveragereport" };
+
+    /**
+     * coverage data file in the log directory of a development component that is cached.
+     */
+    private static final String CACHED_DATA_FILE = "cobertura.ser";
+
+    /**
+     * folder containing the cache entries.
+     */
+    private final File cacheDir;
+
+    /**
+     * build scoped cache providing the fingerprints of class path archives.
+     */
+    private final ClassPathCache classPathCache;
+
+    /**
+     * number of development components whose results were restored from the cache.
+     */
+    private final AtomicInteger hits = new AtomicInteger();
+
+    /**
+     * number of development components whose results were not in the cache.
+     */
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Create a result cache storing its entries in the given folder.
+     * 
+     * @param cacheDir
+     *            folder containing the cache entries.
+     * @param classPathCache
+     *            build scoped cache providing the fingerprints of class path archives (shared with the build file generator).
+     */
+    ResultCache(final File cacheDir, final ClassPathCache classPathCache) {
+        this.cacheDir = cacheDir;
+        this.classPathCache = classPathCache;
+    }
+
+    /**
+     * Create the key for the given development component.
+     * 
+     * @param buildFile
+     *            build file generated for the development component.
+     * @param sources
+     *            source folders of the development component (including test sources).
+     * @param classPath
+     *            class path folders of the development component.
+     * @param encoding
+     *            encoding of the source files.
+     * @param targetVersion
+     *            target version of the compiled classes.
+     * @param pluginVersion
+     *            version of this plugin.
+     * @return the key for the development component
+     * @throws IOException
+     *             when reading the build file, sources or class path archives failed
+     */
+    String createKey(final File buildFile, final Collection<String> sources, final Collection<String> classPath,
+        final String encoding, final String targetVersion, final String pluginVersion) throws IOException {
+        final Fingerprint fingerprint = new Fingerprint();
+        fingerprint.add(buildFile).add(encoding).add(targetVersion).add(pluginVersion);
+
+        for (final String source : new TreeSet<String>(sources)) {
+            addFolder(fingerprint, new File(source), "");
+        }
+
+        classPathCache.addClassPath(fingerprint, classPath);
+
+        return fingerprint.getValue();
+    }
+
+    /**
+     * Restore the results of the given development component from the cache into its log folder.
+     * 
+     * @param component
+     *            development component to restore results for.
+     * @param key
+     *            key computed for the development component.
+     * @param logDir
+     *            log folder of the development component.
+     * @return <code>true</code> when the results could be restored, <code>false</code> when there is no cache entry for the given key.
+     * @throws IOException
+     *             when copying the cached results failed
+     * @throws InterruptedException
+     *             when the build was interrupted
+     */
+    boolean restore(final DevelopmentComponent component, final String key, final File logDir) throws IOException,
+        InterruptedException {
+        final File entry = getEntry(component);
+
+        if (!key.equals(readKey(entry))) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        for (final String folder : CACHED_FOLDERS) {
+            final FilePath target = new FilePath(new File(logDir, folder));
+            target.deleteRecursive();
+            target.mkdirs();
+            new FilePath(new File(entry, folder)).copyRecursiveTo(target);
+        }
+
+        final File dataFile = new File(entry, CACHED_DATA_FILE);
+
+        if (dataFile.exists()) {
+            new FilePath(dataFile).copyTo(new FilePath(new File(logDir, CACHED_DATA_FILE)));
+        }
+
+        hits.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Store the results of the given development component under the given key.
+     * 
+     * @param component
+     *            development component to store results for.
+     * @param key
+     *            key computed for the development component.
+     * @param logDir
+     *            log folder of the development component.
+     * @throws IOException
+     *             when copying the results failed
+     * @throws InterruptedException
+     *             when the build was interrupted
+     */
+    void store(final DevelopmentComponent component, final String key, final File logDir) throws IOException, InterruptedException {
+        final File entry = getEntry(component);
+        final FilePath entryPath = new FilePath(entry);
+        entryPath.deleteRecursive();
+
+        for (final String folder : CACHED_FOLDERS) {
+            final FilePath target = entryPath.child(folder);
+            target.mkdirs();
+            new FilePath(new File(logDir, folder)).copyRecursiveTo(target);
+        }
+
+        final File dataFile = new File(logDir, CACHED_DATA_FILE);
+
+        if (dataFile.exists()) {
+            new FilePath(dataFile).copyTo(entryPath.child(CACHED_DATA_FILE));
+        }
+
+        // write the key last so that incomplete entries are never considered valid
+        writeKey(entry, key);
+    }
+
+    /**
+     * @return the number of development components whose results were restored from the cache.
+     */
+    int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of development components whose results were not found in the cache.
+     */
+    int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the folder of the cache entry for the given development component.
+     * 
+     * @param component
+     *            development component to get the cache entry for.
+     * @return folder of the cache entry
+     */
+    private File getEntry(final DevelopmentComponent component) {
+        return new File(cacheDir, component.getNormalizedName("~"));
+    }
+
+    /**
+     * Add the names and contents of all files in the given folder and its sub folders to the fingerprint.
+     * 
+     * @param fingerprint
+     *            fingerprint to update.
+     * @param folder
+     *            folder to add.
+     * @param prefix
+     *            path of the folder relative to the source folder.
+     * @throws IOException
+     *             when reading a file failed
+     */
+    private void addFolder(final Fingerprint fingerprint, final File folder, final String prefix) throws IOException {
+        final File[] files = folder.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files);
+
+        for (final File file : files) {
+            final String name = prefix + file.getName();
+
+            if (file.isDirectory()) {
+                addFolder(fingerprint, file, name + '/');
+            }
+            else {
+                fingerprint.add(name).add(file);
+            }
+        }
+    }
+
+    /**
+     * Read the key of the given cache entry.
+     * 
+     * @param entry
+     *            folder of the cache entry.
+     * @return the key of the cache entry or <code>null</code> when there is none.
+     * @throws IOException
+     *             when reading the key failed
+     */
+    private String readKey(final File entry) throws IOException {
+        final File keyFile = new File(entry, KEY_FILE);
+
+        if (!keyFile.exists()) {
+            return null;
+        }
+
+        final InputStream in = new FileInputStream(keyFile);
+
+        try {
+            final byte[] key = new byte[(int)keyFile.length()];
+            int offset = 0;
+            int count;
+
+            while (offset < key.length && (count = in.read(key, offset, key.length - offset)) != -1) {
+                offset += count;
+            }
+
+            return new String(key, 0, offset, "UTF-8");
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the key of the given cache entry.
+     * 
+     * @param entry
+     *            folder of the cache entry.
+     * @param key
+     *            the key to write.
+     * @throws IOException
+     *             when writing the key failed
+     */
+    private void writeKey(final File entry, final String key) throws IOException {
+        final OutputStream out = new FileOutputStream(new File(entry, KEY_FILE));
+
+        try {
+            out.write(key.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.tools.ant.DirectoryScanner;
+
+/**
+ * Manifest of the files in the source folders of a development component: Java sources, test classes (sources named
+ * <code>*Test.java</code>) and resources (all other files).
+ * 
+ * Each source folder is scanned only once when the build file is generated. The generated build file feeds every phase (compilation,
+ * copying resources, selecting, splitting and running tests) from the manifest instead of scanning the source folders again. Paths are
+ * relative to their source folder and use <code>/</code> as separator, so they can be used as ant include patterns. Files excluded by
+ * default from ant file sets (e.g. version control meta data) are not listed.
+ * 
+ * @author Dirk Weigenand
+ */
+final class SourceManifest {
+    /**
+     * suffix of Java source files.
+     */
+    private static final String SOURCE_FILE_SUFFIX = ".java";
+
+    /**
+     * suffix of Java sources of test classes.
+     */
+    private static final String TEST_FILE_SUFFIX = "Test" + SOURCE_FILE_SUFFIX;
+
+    /**
+     * Java sources (including the sources of test classes).
+     */
+    private final SortedSet<String> javaSources = new TreeSet<String>();
+
+    /**
+     * Java sources of test classes.
+     */
+    private final SortedSet<String> tests = new TreeSet<String>();
+
+    /**
+     * resources, i.e. all files not being Java sources.
+     */
+    private final SortedSet<String> resources = new TreeSet<String>();
+
+    /**
+     * Scan the given source folders. Folders that do not exist are skipped.
+     * 
+     * @param sources
+     *            source folders to scan
+     * @return the manifest of the files in the given source folders
+     */
+    static SourceManifest scan(final Collection<String> sources) {
+        final SourceManifest manifest = new SourceManifest();
+
+        for (final String source : sources) {
+            final File folder = new File(source);
+
+            if (folder.isDirectory()) {
+                final DirectoryScanner scanner = new DirectoryScanner();
+                scanner.setBasedir(folder);
+                scanner.addDefaultExcludes();
+                scanner.scan();
+
+                for (final String file : scanner.getIncludedFiles()) {
+                    manifest.add(file.replace(File.separatorChar, '/'));
+                }
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Add the given file to the manifest.
+     * 
+     * @param path
+     *            path of file relative to its source folder
+     */
+    private void add(final String path) {
+        if (path.endsWith(SOURCE_FILE_SUFFIX)) {
+            javaSources.add(path);
+
+            if (path.endsWith(TEST_FILE_SUFFIX)) {
+                tests.add(path);
+            }
+        }
+        else {
+            resources.add(path);
+        }
+    }
+
+    /**
+     * @return the Java sources (including the sources of test classes)
+     */
+    SortedSet<String> getJavaSources() {
+        return Collections.unmodifiableSortedSet(javaSources);
+    }
+
+    /**
+     * @return the Java sources of test classes
+     */
+    SortedSet<String> getTests() {
+        return Collections.unmodifiableSortedSet(tests);
+    }
+
+    /**
+     * @return the resources, i.e. all files not being Java sources
+     */
+    SortedSet<String> getResources() {
+        return Collections.unmodifiableSortedSet(resources);
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Index of the durations of the test classes of each development component of a job as measured by the last run of each test class.
+ * 
+ * Durations are read from the JUnit reports (<code>TEST-&lt;class&gt;.xml</code>) written by the XML formatter. The index is stored in
+ * a compact binary file: package names are written once and referenced by id, durations are stored in milliseconds.
+ * 
+ * Instances are not thread safe.
+ * 
+ * @author Dirk Weigenand
+ */
+final class TestDurationIndex {
+    /**
+     * version of the index format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * prefix of JUnit reports.
+     */
+    private static final String REPORT_PREFIX = "TEST-";
+
+    /**
+     * suffix of JUnit reports.
+     */
+    private static final String REPORT_SUFFIX = ".xml";
+
+    /**
+     * the file containing the index.
+     */
+    private final File file;
+
+    /**
+     * durations in milliseconds of test classes per development component.
+     */
+    private final Map<String, Map<String, Integer>> durations = new TreeMap<String, Map<String, Integer>>();
+
+    /**
+     * Create an index using the given file.
+     * 
+     * @param file
+     *            the file containing the index (created on first store).
+     */
+    TestDurationIndex(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the index from its file. An index without a file is empty.
+     * 
+     * @throws IOException
+     *             when the file could not be read or was written using an unknown format
+     */
+    void load() throws IOException {
+        durations.clear();
+
+        if (!file.exists()) {
+            return;
+        }
+
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (in.readInt() != VERSION) {
+                throw new IOException(String.format("Unknown format of %s.", file.getAbsolutePath()));
+            }
+
+            final String[] packages = new String[in.readInt()];
+
+            for (int i = 0; i < packages.length; i++) {
+                packages[i] = in.readUTF();
+            }
+
+            final int componentCount = in.readInt();
+
+            for (int i = 0; i < componentCount; i++) {
+                final String component = in.readUTF();
+                final int testCount = in.readInt();
+                final Map<String, Integer> tests = new HashMap<String, Integer>(testCount * 2);
+
+                for (int j = 0; j < testCount; j++) {
+                    final String packageName = packages[in.readInt()];
+                    final String simpleName = in.readUTF();
+                    tests.put(packageName.length() == 0 ? simpleName : packageName + '.' + simpleName, in.readInt());
+                }
+
+                durations.put(component, tests);
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Store the index into its file. The index is written to a temporary file first which then replaces the file of the index.
+     * 
+     * @throws IOException
+     *             when the index could not be written
+     */
+    void store() throws IOException {
+        final Map<String, Integer> packageIds = new HashMap<String, Integer>();
+        final List<String> packages = new ArrayList<String>();
+
+        for (final Map<String, Integer> tests : durations.values()) {
+            for (final String testClass : tests.keySet()) {
+                final String packageName = getPackageName(testClass);
+
+                if (!packageIds.containsKey(packageName)) {
+                    packageIds.put(packageName, packages.size());
+                    packages.add(packageName);
+                }
+            }
+        }
+
+        final File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+        try {
+            out.writeInt(VERSION);
+            out.writeInt(packages.size());
+
+            for (final String packageName : packages) {
+                out.writeUTF(packageName);
+            }
+
+            out.writeInt(durations.size());
+
+            for (final Map.Entry<String, Map<String, Integer>> component : durations.entrySet()) {
+                out.writeUTF(component.getKey());
+                out.writeInt(component.getValue().size());
+
+                for (final Map.Entry<String, Integer> test : component.getValue().entrySet()) {
+                    final String packageName = getPackageName(test.getKey());
+                    out.writeInt(packageIds.get(packageName));
+                    out.writeUTF(packageName.length() == 0 ? test.getKey() : test.getKey().substring(packageName.length() + 1));
+                    out.writeInt(test.getValue());
+                }
+            }
+        }
+        finally {
+            out.close();
+        }
+
+        if ((file.exists() && !file.delete()) || !temp.renameTo(file)) {
+            throw new IOException(String.format("Could not replace %s.", file.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Returns the package name of the given class name.
+     * 
+     * @param className
+     *            fully qualified class name
+     * @return the package name of the given class (an empty string for the default package).
+     */
+    private static String getPackageName(final String className) {
+        final int dot = className.lastIndexOf('.');
+
+        return dot < 0 ? "" : className.substring(0, dot);
+    }
+
+    /**
+     * Replace the durations of the test classes of the given development component with the durations read from the JUnit reports in
+     * the given folder. The durations are not changed when the folder contains no JUnit report.
+     * 
+     * @param component
+     *            name of development component
+     * @param reportDir
+     *            folder containing the JUnit reports of the development component
+     * @throws IOException
+     *             when reading a report failed
+     */
+    void update(final String component, final File reportDir) throws IOException {
+        final String[] reports = reportDir.list();
+
+        if (reports == null) {
+            return;
+        }
+
+        final Map<String, Integer> tests = new HashMap<String, Integer>();
+
+        for (final String report : reports) {
+            if (report.startsWith(REPORT_PREFIX) && report.endsWith(REPORT_SUFFIX)) {
+                final Integer duration = readDuration(new File(reportDir, report));
+
+                if (duration != null) {
+                    tests.put(report.substring(REPORT_PREFIX.length(), report.length() - REPORT_SUFFIX.length()), duration);
+                }
+            }
+        }
+
+        if (!tests.isEmpty()) {
+            durations.put(component, tests);
+        }
+    }
+
+    /**
+     * Read the duration of the test suite of the given JUnit report.
+     * 
+     * @param report
+     *            JUnit report
+     * @return duration in milliseconds or <code>null</code> when the report contains no duration.
+     * @throws IOException
+     *             when the report could not be read
+     */
+    static Integer readDuration(final File report) throws IOException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(report));
+
+        try {
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            final XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        final String time = reader.getAttributeValue(null, "time");
+
+                        return time == null ? null : (int)Math.round(Double.parseDouble(time.replace(",", "")) * 1000);
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (final XMLStreamException e) {
+            throw new IOException(String.format("Could not parse %s.", report.getAbsolutePath()), e);
+        }
+        catch (final NumberFormatException e) {
+            throw new IOException(String.format("Could not parse %s.", report.getAbsolutePath()), e);
+        }
+        finally {
+            in.close();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the durations of the test classes of the given development component.
+     * 
+     * @param component
+     *            name of development component
+     * @return durations in milliseconds of the test classes of the given development component (empty when unknown).
+     */
+    Map<String, Integer> getDurations(final String component) {
+        final Map<String, Integer> tests = durations.get(component);
+
+        return tests == null ? Collections.<String, Integer> emptyMap() : Collections.unmodifiableMap(tests);
+    }
+
+    /**
+     * Returns the total duration of the test classes of the given development component.
+     * 
+     * @param component
+     *            name of development component
+     * @return total duration in milliseconds or <code>-1</code> when the durations of the given development component are unknown.
+     */
+    long getTotalDuration(final String component) {
+        final Map<String, Integer> tests = durations.get(component);
+
+        if (tests == null) {
+            return -1;
+        }
+
+        long total = 0;
+
+        for (final Integer duration : tests.values()) {
+            total += duration;
+        }
+
+        return total;
+    }
+
+    /**
+     * Write the durations of the test classes of the given development component to the given file as properties mapping the names
+     * of test classes to their durations in milliseconds.
+     * 
+     * @param component
+     *            name of development component
+     * @param durationsFile
+     *            file to write the durations to
+     * @throws IOException
+     *             when writing the file failed
+     */
+    void export(final String component, final File durationsFile) throws IOException {
+        final Properties properties = new Properties();
+
+        for (final Map.Entry<String, Integer> test : getDurations(component).entrySet()) {
+            properties.setProperty(test.getKey(), test.getValue().toString());
+        }
+
+        durationsFile.getParentFile().mkdirs();
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(durationsFile));
+
+        try {
+            properties.store(out, "durations (in milliseconds) of test classes in their last run");
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Helper methods for class files: fingerprints of their content and the classes they reference.
+ * 
+ * @author Dirk Weigenand
+ */
+final class ClassFiles {
+    /**
+     * magic number of class files.
+     */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * size of buffer used for hashing class files.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * constant pool tag of UTF-8 strings.
+     */
+    private static final int CONSTANT_UTF8 = 1;
+
+    /**
+     * constant pool tag of class references.
+     */
+    private static final int CONSTANT_CLASS = 7;
+
+    /**
+     * Utility class.
+     */
+    private ClassFiles() {
+    }
+
+    /**
+     * Compute the fingerprint (size and MD5 hash) of the given file.
+     * 
+     * @param file
+     *            file to compute the fingerprint for.
+     * @return fingerprint of the given file.
+     * @throws IOException
+     *             when the file could not be read
+     */
+    static String fingerprint(final File file) throws IOException {
+        final MessageDigest digest = createDigest();
+        final InputStream in = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        return format(file.length(), digest);
+    }
+
+    /**
+     * Compute a fingerprint (count and MD5 hash) over the given fingerprints of files.
+     * 
+     * @param fingerprints
+     *            fingerprints of files keyed by their relative paths.
+     * @return fingerprint of the given files.
+     */
+    static String fingerprint(final Map<String, String> fingerprints) {
+        final MessageDigest digest = createDigest();
+
+        try {
+            for (final Map.Entry<String, String> entry : new TreeMap<String, String>(fingerprints).entrySet()) {
+                digest.update(String.format("%s=%s%n", entry.getKey(), entry.getValue()).getBytes("UTF-8"));
+            }
+        }
+        catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return format(fingerprints.size(), digest);
+    }
+
+    /**
+     * Create the message digest used for fingerprints.
+     * 
+     * @return a new MD5 message digest
+     */
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Format a fingerprint from the given size and the hash of the given digest.
+     * 
+     * @param size
+     *            size of the fingerprinted content
+     * @param digest
+     *            digest the content was added to
+     * @return the fingerprint as <code>size:hash</code>
+     */
+    private static String format(final long size, final MessageDigest digest) {
+        final StringBuilder fingerprint = new StringBuilder().append(size).append(':');
+
+        for (final byte b : digest.digest()) {
+            fingerprint.append(String.format("%02x", b));
+        }
+
+        return fingerprint.toString();
+    }
+
+    /**
+     * Read the classes referenced by the given class file from its constant pool.
+     * 
+     * Besides class references the type descriptors and signatures of fields, methods and generics are evaluated, so the result also
+     * contains classes only used as parameter, return or field types. Compile time constants inlined by the compiler can not be
+     * detected.
+     * 
+     * @param classFile
+     *            the class file to analyze.
+     * @return internal names (e.g. <code>org/example/Foo</code>) of the classes referenced by the given class file.
+     * @throws IOException
+     *             when the class file could not be read or is not a valid class file
+     */
+    static Set<String> readDependencies(final File classFile) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)));
+
+        try {
+            return readDependencies(in);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read the classes referenced by the class file read from the given stream.
+     * 
+     * @param in
+     *            stream to read the class file from.
+     * @return internal names of the classes referenced by the class file.
+     * @throws IOException
+     *             when the class file could not be read or is not a valid class file
+     */
+    static Set<String> readDependencies(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file.");
+        }
+
+        // minor and major version
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        final int count = in.readUnsignedShort();
+        final String[] strings = new String[count];
+        final List<Integer> classNames = new ArrayList<Integer>();
+
+        for (int i = 1; i < count; i++) {
+            final int tag = in.readUnsignedByte();
+
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    strings[i] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classNames.add(in.readUnsignedShort());
+                    break;
+                // long and double occupy two entries
+                case 5:
+                case 6:
+                    in.readLong();
+                    i++;
+                    break;
+                // string, method type, module and package
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    in.readUnsignedShort();
+                    break;
+                // method handle
+                case 15:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                // integer, float, field/method/interface method references, name and type, (invoke) dynamic
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.readInt();
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown constant pool tag %d.", tag));
+            }
+        }
+
+        final Set<String> dependencies = new HashSet<String>();
+
+        for (final Integer index : classNames) {
+            final String name = strings[index];
+
+            if (name != null) {
+                if (name.startsWith("[")) {
+                    addDescriptorTypes(name, dependencies);
+                }
+                else {
+                    dependencies.add(name);
+                }
+            }
+        }
+
+        for (final String value : strings) {
+            if (value != null) {
+                addDescriptorTypes(value, dependencies);
+            }
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * Add the class names contained in the given descriptor or signature (e.g. <code>(Lorg/example/Foo;I)V</code>) to the given set.
+     * Constant pool entries that are no descriptors may yield names of classes that do not exist, those are filtered by callers.
+     * 
+     * @param descriptor
+     *            a type descriptor or signature.
+     * @param names
+     *            set to add the class names to.
+     */
+    private static void addDescriptorTypes(final String descriptor, final Set<String> names) {
+        int start = descriptor.indexOf('L');
+
+        while (start > -1) {
+            final int end = findEndOfClassName(descriptor, start + 1);
+
+            if (end < 0) {
+                start = descriptor.indexOf('L', start + 1);
+            }
+            else {
+                if (end > start + 1) {
+                    names.add(descriptor.substring(start + 1, end));
+                }
+
+                start = descriptor.indexOf('L', end);
+            }
+        }
+    }
+
+    /**
+     * Find the end of the class name starting at the given position of a descriptor.
+     * 
+     * @param descriptor
+     *            a type descriptor or signature.
+     * @param start
+     *            position of the first character of the class name.
+     * @return position of the <code>;</code> or <code>&lt;</code> terminating the class name or <code>-1</code> when the class name
+     *         is not terminated.
+     */
+    private static int findEndOfClassName(final String descriptor, final int start) {
+        for (int i = start; i < descriptor.length(); i++) {
+            final char c = descriptor.charAt(i);
+
+            if (c == ';' || c == '<') {
+                return i;
+            }
+
+            if (c != '/' && c != '$' && !Character.isJavaIdentifierPart(c)) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+}
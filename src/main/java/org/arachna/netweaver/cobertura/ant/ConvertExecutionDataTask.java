@@ -0,0 +1,203 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * Ant task converting the execution data recorded by the JaCoCo agent into a Cobertura data file.
+ * 
+ * The class files of the development component are analyzed against the execution data of all test JVMs. Every class file is
+ * converted, so classes not loaded by any test are reported as not covered just like with offline instrumentation. The resulting
+ * data file is used for the coverage reports, the track level report and the result cache like the one written by the Cobertura
+ * runtime.
+ * 
+ * JaCoCo records whether an instruction was executed, not how often, so covered lines and branches get one hit. Branches of a line
+ * are converted into jumps with two branches each, an odd number of branches into a switch.
+ * 
+ * @author Dirk Weigenand
+ */
+public final class ConvertExecutionDataTask extends Task {
+    /**
+     * folder containing the class files to analyze.
+     */
+    private File classesDir;
+
+    /**
+     * Cobertura data file to write.
+     */
+    private File dataFile;
+
+    /**
+     * file sets of execution data files written by the agent.
+     */
+    private final List<FileSet> executionData = new ArrayList<FileSet>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        if (classesDir == null || dataFile == null) {
+            throw new BuildException("classesdir and datafile are required!");
+        }
+
+        final ExecFileLoader loader = new ExecFileLoader();
+        int files = 0;
+
+        try {
+            for (final FileSet fileSet : executionData) {
+                final File dir = fileSet.getDir(getProject());
+
+                for (final String file : fileSet.getDirectoryScanner(getProject()).getIncludedFiles()) {
+                    loader.load(new File(dir, file));
+                    files++;
+                }
+            }
+
+            final CoverageBuilder coverage = new CoverageBuilder();
+
+            if (classesDir.isDirectory()) {
+                new Analyzer(loader.getExecutionDataStore(), coverage).analyzeAll(classesDir);
+            }
+
+            final ProjectData data = new ProjectData();
+
+            for (final IClassCoverage clazz : coverage.getClasses()) {
+                data.addClassData(convert(clazz));
+            }
+
+            dataFile.getParentFile().mkdirs();
+            CoverageDataFileHandler.saveCoverageData(data, dataFile);
+            log(String.format("Converted %d classes using %d execution data files.", coverage.getClasses().size(), files),
+                Project.MSG_INFO);
+        }
+        catch (final IOException e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * Convert the coverage of the given class into Cobertura coverage data.
+     * 
+     * @param clazz
+     *            coverage of class as analyzed by JaCoCo
+     * @return Cobertura coverage data of the class
+     */
+    private ClassData convert(final IClassCoverage clazz) {
+        final ClassData classData = new ClassData(clazz.getName().replace('/', '.'));
+
+        if (clazz.getSourceFileName() != null) {
+            classData.setSourceFileName(clazz.getSourceFileName());
+        }
+
+        // lines shared by several methods (e.g. field initializers in constructors) are converted only once
+        final Set<Integer> converted = new HashSet<Integer>();
+
+        for (final IMethodCoverage method : clazz.getMethods()) {
+            if (method.getFirstLine() == ISourceNode.UNKNOWN_LINE) {
+                continue;
+            }
+
+            for (int line = method.getFirstLine(); line <= method.getLastLine(); line++) {
+                if (method.getLine(line).getInstructionCounter().getTotalCount() > 0 && converted.add(line)) {
+                    classData.addLine(line, method.getName(), method.getDesc());
+                    convert(classData, line, clazz.getLine(line));
+                }
+            }
+        }
+
+        return classData;
+    }
+
+    /**
+     * Convert the coverage of the given line into Cobertura coverage data.
+     * 
+     * @param classData
+     *            Cobertura coverage data of class containing the line
+     * @param lineNumber
+     *            number of line
+     * @param line
+     *            coverage of line as analyzed by JaCoCo
+     */
+    private void convert(final ClassData classData, final int lineNumber, final ILine line) {
+        if (line.getInstructionCounter().getCoveredCount() > 0) {
+            classData.touch(lineNumber, 1);
+        }
+
+        final ICounter branches = line.getBranchCounter();
+        final int total = branches.getTotalCount();
+        final int covered = branches.getCoveredCount();
+
+        if (total == 0) {
+            return;
+        }
+
+        if (total % 2 == 0) {
+            for (int jump = 0; jump < total / 2; jump++) {
+                classData.addLineJump(lineNumber, jump);
+            }
+
+            for (int branch = 0; branch < covered; branch++) {
+                classData.touchJump(lineNumber, branch / 2, branch % 2 == 0, 1);
+            }
+        }
+        else {
+            // a switch has a branch per key and the default branch
+            classData.addLineSwitch(lineNumber, 0, new int[total - 1]);
+
+            for (int branch = 0; branch < covered; branch++) {
+                classData.touchSwitch(lineNumber, 0, branch < total - 1 ? branch : -1, 1);
+            }
+        }
+    }
+
+    /**
+     * @param classesDir
+     *            the folder containing the class files to analyze
+     */
+    public void setClassesDir(final File classesDir) {
+        this.classesDir = classesDir;
+    }
+
+    /**
+     * @param dataFile
+     *            the Cobertura data file to write
+     */
+    public void setDataFile(final File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * Add a file set of execution data files written by the agent.
+     * 
+     * @param fileSet
+     *            file set of execution data files
+     */
+    public void addExecutionData(final FileSet fileSet) {
+        executionData.add(fileSet);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.reporting.ComplexityCalculator;
+import net.sourceforge.cobertura.reporting.html.HTMLReport;
+import net.sourceforge.cobertura.reporting.xml.XMLReport;
+import net.sourceforge.cobertura.util.FileFinder;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Ant task writing the XML and HTML coverage reports from a Cobertura data file in one pass.
+ * 
+ * The <code>cobertura-report</code> task has to be called once per report format. Each call starts a new JVM, deserializes the data
+ * file again and parses every source file again to compute its complexity. This task loads the data file once and shares the index of
+ * source files and the computed complexities between both reports.
+ * 
+ * @author Dirk Weigenand
+ */
+public final class CoverageReportTask extends Task {
+    /**
+     * Cobertura data file to create the reports from.
+     */
+    private File dataFile;
+
+    /**
+     * folder to write the reports into.
+     */
+    private File destDir;
+
+    /**
+     * encoding of source files.
+     */
+    private String encoding;
+
+    /**
+     * indicates whether the HTML report should be written.
+     */
+    private boolean html = true;
+
+    /**
+     * file sets whose base folders contain the source files.
+     */
+    private final List<FileSet> sources = new ArrayList<FileSet>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        if (dataFile == null || destDir == null) {
+            throw new BuildException("datafile and destdir are required!");
+        }
+
+        if (!dataFile.exists()) {
+            throw new BuildException(String.format("%s does not exist!", dataFile.getAbsolutePath()));
+        }
+
+        final ProjectData data = CoverageDataFileHandler.loadCoverageData(dataFile);
+
+        if (data == null) {
+            throw new BuildException(String.format("Could not read coverage data from %s.", dataFile.getAbsolutePath()));
+        }
+
+        final FileFinder finder = new FileFinder();
+
+        for (final FileSet source : sources) {
+            finder.addSourceDirectory(source.getDir(getProject()).getAbsolutePath());
+        }
+
+        final ComplexityCalculator complexity = new ComplexityCalculator(finder);
+        destDir.mkdirs();
+
+        try {
+            long start = System.currentTimeMillis();
+            new XMLReport(data, destDir, finder, complexity);
+            log(String.format("XML report written after %d ms.", System.currentTimeMillis() - start), Project.MSG_VERBOSE);
+
+            if (html) {
+                start = System.currentTimeMillis();
+                new HTMLReport(data, destDir, finder, complexity, encoding);
+                log(String.format("HTML report written after %d ms.", System.currentTimeMillis() - start), Project.MSG_VERBOSE);
+            }
+        }
+        catch (final Exception e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * @param dataFile
+     *            the Cobertura data file to create the reports from
+     */
+    public void setDataFile(final File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * @param destDir
+     *            the folder to write the reports into
+     */
+    public void setDestDir(final File destDir) {
+        this.destDir = destDir;
+    }
+
+    /**
+     * @param encoding
+     *            the encoding of source files
+     */
+    public void setEncoding(final String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * @param html
+     *            whether the HTML report should be written (defaults to <code>true</code>)
+     */
+    public void setHtml(final boolean html) {
+        this.html = html;
+    }
+
+    /**
+     * Add a file set whose base folder contains source files.
+     * 
+     * @param source
+     *            file set of source files
+     */
+    public void addFileSet(final FileSet source) {
+        sources.add(source);
+    }
+}
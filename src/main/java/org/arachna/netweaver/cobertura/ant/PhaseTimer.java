@@ -0,0 +1,130 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Target;
+
+/**
+ * Build listener logging the wall time, CPU time and I/O of each executed target (phase) of a generated cobertura build file.
+ * 
+ * When the project executing a target defines the property {@link PhaseTimerTask#METRICS_FILE_PROPERTY} the measurements are
+ * appended to the file named by it, one line per target containing the tab separated name of the target, wall time and CPU time in
+ * milli seconds, bytes read and written (see {@link ResourceUsage}) and <code>finished</code> or <code>failed</code>.
+ * 
+ * @author Dirk Weigenand
+ */
+final class PhaseTimer implements BuildListener {
+    /**
+     * resources used when the currently running targets were started.
+     */
+    private final Map<Target, ResourceUsage> startUsages = new HashMap<Target, ResourceUsage>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void targetStarted(final BuildEvent event) {
+        startUsages.put(event.getTarget(), ResourceUsage.current());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void targetFinished(final BuildEvent event) {
+        final ResourceUsage startUsage = startUsages.remove(event.getTarget());
+
+        if (startUsage != null) {
+            final ResourceUsage usage = ResourceUsage.current();
+            final String name = event.getTarget().getName();
+            final String status = event.getException() == null ? "finished" : "failed";
+            final long wallTime = usage.getWallTime(startUsage);
+            final long cpuTime = usage.getCpuTime(startUsage);
+            final long bytesRead = usage.getBytesRead(startUsage);
+            final long bytesWritten = usage.getBytesWritten(startUsage);
+            final Project project = event.getProject();
+            project.log(String.format("Phase %s %s after %d ms (CPU %d ms, read %d bytes, written %d bytes).", name, status, wallTime,
+                cpuTime, bytesRead, bytesWritten), Project.MSG_INFO);
+
+            final String metricsFile = project.getProperty(PhaseTimerTask.METRICS_FILE_PROPERTY);
+
+            if (metricsFile != null) {
+                append(project, new File(metricsFile),
+                    String.format("%s\t%d\t%d\t%d\t%d\t%s\n", name, wallTime, cpuTime, bytesRead, bytesWritten, status));
+            }
+        }
+    }
+
+    /**
+     * Append the given line to the given metrics file. A failure to write the file is logged.
+     * 
+     * @param project
+     *            project to log to
+     * @param metricsFile
+     *            file to append to
+     * @param line
+     *            line to append
+     */
+    private void append(final Project project, final File metricsFile, final String line) {
+        try {
+            metricsFile.getParentFile().mkdirs();
+            final OutputStream out = new FileOutputStream(metricsFile, true);
+
+            try {
+                out.write(line.getBytes("UTF-8"));
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (final IOException e) {
+            project.log(String.format("Could not write %s: %s", metricsFile, e.getMessage()), Project.MSG_WARN);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void buildStarted(final BuildEvent event) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void buildFinished(final BuildEvent event) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskStarted(final BuildEvent event) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskFinished(final BuildEvent event) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void messageLogged(final BuildEvent event) {
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.File;
+
+import org.apache.tools.ant.Task;
+
+/**
+ * Ant task registering a {@link PhaseTimer} with the current project so that the wall time, CPU time and I/O of each target gets
+ * logged and, when a metrics file is given, recorded in that file.
+ * 
+ * Projects run via <code>ant</code> or <code>subant</code> inherit the build listeners of the calling project. No further timer is
+ * registered when the project already has one (which may have been loaded by the class loader of the calling project). The metrics
+ * file is therefore passed to the timer via the property {@link #METRICS_FILE_PROPERTY} of the project executing a target.
+ * 
+ * @author Dirk Weigenand
+ */
+public final class PhaseTimerTask extends Task {
+    /**
+     * name of property containing the path of the metrics file of a project.
+     */
+    static final String METRICS_FILE_PROPERTY = "phase.metrics.file";
+
+    /**
+     * file to record the measurements of each target in.
+     */
+    private File metricsFile;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        if (metricsFile != null) {
+            getProject().setProperty(METRICS_FILE_PROPERTY, metricsFile.getAbsolutePath());
+        }
+
+        for (final Object listener : getProject().getBuildListeners()) {
+            if (PhaseTimer.class.getName().equals(listener.getClass().getName())) {
+                return;
+            }
+        }
+
+        getProject().addBuildListener(new PhaseTimer());
+    }
+
+    /**
+     * @param metricsFile
+     *            the file to record the measurements of each target in
+     */
+    public void setMetricsFile(final File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Ant task determining the class files that need to be (re-)instrumented by Cobertura.
+ * 
+ * A manifest holding size and hash of each class file instrumented by the last run is compared with the current content of the classes
+ * folder. The task registers a file set containing only new or changed class files under the given reference id. Instrumented copies of
+ * class files that no longer exist are deleted and the coverage data of changed or removed classes is dropped from the Cobertura data
+ * file so that re-instrumentation starts from a clean state.
+ * 
+ * The updated manifest is written to <code>&lt;manifest&gt;.new</code> and should replace the old manifest once instrumentation
+ * succeeded.
+ * 
+ * @author Dirk Weigenand
+ */
+public final class PrepareInstrumentationTask extends Task {
+    /**
+     * suffix of class files.
+     */
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    /**
+     * folder containing the compiled classes.
+     */
+    private File classesDir;
+
+    /**
+     * folder containing the instrumented classes.
+     */
+    private File instrumentedDir;
+
+    /**
+     * Cobertura data file holding the instrumentation data.
+     */
+    private File dataFile;
+
+    /**
+     * manifest of class file fingerprints of the last instrumentation.
+     */
+    private File manifest;
+
+    /**
+     * reference id to register the file set of class files to instrument with.
+     */
+    private String refId;
+
+    /**
+     * name of property to set when no class file needs to be instrumented.
+     */
+    private String upToDateProperty;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        checkParameters();
+
+        final Properties previous = loadManifest();
+
+        // without instrumentation data from the last run every class file has to be instrumented again
+        if (!dataFile.exists()) {
+            previous.clear();
+        }
+
+        final Properties current = new Properties();
+        final List<String> changed = new ArrayList<String>();
+
+        final DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(classesDir);
+        scanner.setIncludes(new String[] { "**/*" + CLASS_FILE_SUFFIX });
+        scanner.scan();
+
+        for (final String classFile : scanner.getIncludedFiles()) {
+            final String name = classFile.replace(File.separatorChar, '/');
+            final String fingerprint = createFingerprint(new File(classesDir, classFile));
+            current.setProperty(name, fingerprint);
+
+            // an instrumented copy deleted since the last run has to be recreated even if the class file is unchanged
+            if (!fingerprint.equals(previous.getProperty(name)) || !new File(instrumentedDir, name).isFile()) {
+                changed.add(name);
+            }
+        }
+
+        final Set<String> removed = new HashSet<String>(previous.stringPropertyNames());
+        removed.removeAll(current.stringPropertyNames());
+
+        for (final String name : removed) {
+            final File instrumentedClass = new File(instrumentedDir, name);
+
+            if (instrumentedClass.exists() && !instrumentedClass.delete()) {
+                throw new BuildException(String.format("Could not delete %s.", instrumentedClass.getAbsolutePath()));
+            }
+        }
+
+        final Set<String> outdated = new HashSet<String>(changed);
+        outdated.addAll(removed);
+        pruneDataFile(outdated);
+
+        log(String.format("%d class files changed, %d unchanged, %d removed.", changed.size(), current.size() - changed.size(),
+            removed.size()), Project.MSG_INFO);
+
+        final FileSet classes = new FileSet();
+        classes.setProject(getProject());
+        classes.setDir(classesDir);
+
+        for (final String name : changed) {
+            classes.createInclude().setName(name);
+        }
+
+        // a file set without includes would contain every file
+        if (changed.isEmpty()) {
+            classes.createExclude().setName("**/*");
+        }
+
+        getProject().addReference(refId, classes);
+
+        if (changed.isEmpty() && upToDateProperty != null) {
+            getProject().setNewProperty(upToDateProperty, "true");
+        }
+
+        storeManifest(current);
+    }
+
+    /**
+     * Check that all required attributes have been set.
+     */
+    private void checkParameters() {
+        if (classesDir == null || !classesDir.isDirectory()) {
+            throw new BuildException("classesdir must be set to an existing directory!");
+        }
+
+        if (instrumentedDir == null || dataFile == null || manifest == null || refId == null) {
+            throw new BuildException("instrumenteddir, datafile, manifest and refid are required!");
+        }
+    }
+
+    /**
+     * Remove the coverage data of the given class files from the Cobertura data file.
+     * 
+     * @param outdated
+     *            class files (relative to the classes folder) whose coverage data should be dropped.
+     */
+    private void pruneDataFile(final Set<String> outdated) {
+        if (outdated.isEmpty() || !dataFile.exists()) {
+            return;
+        }
+
+        final ProjectData previousData = CoverageDataFileHandler.loadCoverageData(dataFile);
+
+        if (previousData == null) {
+            return;
+        }
+
+        final ProjectData data = new ProjectData();
+
+        for (final Object classData : previousData.getClasses()) {
+            final ClassData clazz = (ClassData)classData;
+
+            if (!outdated.contains(clazz.getName().replace('.', '/') + CLASS_FILE_SUFFIX)) {
+                data.addClassData(clazz);
+            }
+        }
+
+        CoverageDataFileHandler.saveCoverageData(data, dataFile);
+    }
+
+    /**
+     * Compute the fingerprint (size and MD5 hash) of the given file.
+     * 
+     * @param file
+     *            file to compute the fingerprint for.
+     * @return fingerprint of the given file.
+     */
+    private String createFingerprint(final File file) {
+        try {
+            return ClassFiles.fingerprint(file);
+        }
+        catch (final IOException e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * Load the manifest of the last instrumentation.
+     * 
+     * @return the fingerprints of the class files instrumented by the last run (empty when there was none).
+     */
+    private Properties loadManifest() {
+        final Properties properties = new Properties();
+
+        if (manifest.exists()) {
+            InputStream in = null;
+
+            try {
+                in = new BufferedInputStream(new FileInputStream(manifest));
+                properties.load(in);
+            }
+            catch (final IOException e) {
+                log(String.format("Could not read %s, instrumenting all classes.", manifest), Project.MSG_WARN);
+                properties.clear();
+            }
+            finally {
+                close(in);
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Write the given fingerprints to <code>&lt;manifest&gt;.new</code>.
+     * 
+     * @param fingerprints
+     *            fingerprints of the current class files.
+     */
+    private void storeManifest(final Properties fingerprints) {
+        final File newManifest = new File(manifest.getParentFile(), manifest.getName() + ".new");
+        OutputStream out = null;
+
+        try {
+            newManifest.getParentFile().mkdirs();
+            out = new BufferedOutputStream(new FileOutputStream(newManifest));
+            fingerprints.store(out, "fingerprints (size:md5) of instrumented class files");
+        }
+        catch (final IOException e) {
+            throw new BuildException(e);
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Close the given stream ignoring exceptions.
+     * 
+     * @param stream
+     *            stream to close (may be <code>null</code>).
+     */
+    private void close(final Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            }
+            catch (final IOException e) {
+                log(e.getMessage(), Project.MSG_VERBOSE);
+            }
+        }
+    }
+
+    /**
+     * @param classesDir
+     *            the folder containing the compiled classes
+     */
+    public void setClassesDir(final File classesDir) {
+        this.classesDir = classesDir;
+    }
+
+    /**
+     * @param instrumentedDir
+     *            the folder containing the instrumented classes
+     */
+    public void setInstrumentedDir(final File instrumentedDir) {
+        this.instrumentedDir = instrumentedDir;
+    }
+
+    /**
+     * @param dataFile
+     *            the Cobertura data file holding the instrumentation data
+     */
+    public void setDataFile(final File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * @param manifest
+     *            the manifest of class file fingerprints
+     */
+    public void setManifest(final File manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * @param refId
+     *            the reference id to register the file set of class files to instrument with
+     */
+    public void setRefId(final String refId) {
+        this.refId = refId;
+    }
+
+    /**
+     * @param upToDateProperty
+     *            name of property to set when no class file needs to be instrumented
+     */
+    public void setUpToDateProperty(final String upToDateProperty) {
+        this.upToDateProperty = upToDateProperty;
+    }
+}
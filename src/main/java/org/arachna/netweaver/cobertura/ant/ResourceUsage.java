@@ -0,0 +1,185 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Snapshot of the resources used so far: wall clock time, CPU time of the current thread and bytes read and written by the current
+ * process.
+ * 
+ * CPU time is measured per thread so that phases running concurrently in other threads are not accounted for. I/O is read from
+ * <code>/proc/self/io</code> (<code>rchar</code> and <code>wchar</code>, i.e. bytes passed to read and write system calls
+ * including those served from the page cache) and thus covers the whole process. It is unknown on platforms without a proc file
+ * system. Neither includes forked processes (e.g. JVMs forked to run tests).
+ * 
+ * @author Dirk Weigenand
+ */
+public final class ResourceUsage {
+    /**
+     * value of a measurement not supported by the platform.
+     */
+    public static final long UNKNOWN = -1;
+
+    /**
+     * I/O statistics of the current process.
+     */
+    private static final File PROC_SELF_IO = new File("/proc/self/io");
+
+    /**
+     * bean for measuring the CPU time of threads.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * wall clock time in nano seconds.
+     */
+    private final long wallTime;
+
+    /**
+     * CPU time of current thread in nano seconds.
+     */
+    private final long cpuTime;
+
+    /**
+     * bytes read by the current process.
+     */
+    private final long bytesRead;
+
+    /**
+     * bytes written by the current process.
+     */
+    private final long bytesWritten;
+
+    /**
+     * Create a snapshot using the given values.
+     * 
+     * @param wallTime
+     *            wall clock time in nano seconds
+     * @param cpuTime
+     *            CPU time of current thread in nano seconds
+     * @param bytesRead
+     *            bytes read by the current process
+     * @param bytesWritten
+     *            bytes written by the current process
+     */
+    private ResourceUsage(final long wallTime, final long cpuTime, final long bytesRead, final long bytesWritten) {
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * Take a snapshot of the resources used so far by the current thread and process.
+     * 
+     * @return snapshot of the resources used so far
+     */
+    public static ResourceUsage current() {
+        long cpuTime = UNKNOWN;
+
+        if (THREADS.isCurrentThreadCpuTimeSupported()) {
+            cpuTime = THREADS.getCurrentThreadCpuTime();
+        }
+
+        long bytesRead = UNKNOWN;
+        long bytesWritten = UNKNOWN;
+
+        if (PROC_SELF_IO.canRead()) {
+            try {
+                final BufferedReader reader = new BufferedReader(new FileReader(PROC_SELF_IO));
+
+                try {
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("rchar:")) {
+                            bytesRead = Long.parseLong(line.substring("rchar:".length()).trim());
+                        }
+                        else if (line.startsWith("wchar:")) {
+                            bytesWritten = Long.parseLong(line.substring("wchar:".length()).trim());
+                        }
+                    }
+                }
+                finally {
+                    reader.close();
+                }
+            }
+            catch (final IOException e) {
+                bytesRead = UNKNOWN;
+                bytesWritten = UNKNOWN;
+            }
+            catch (final NumberFormatException e) {
+                bytesRead = UNKNOWN;
+                bytesWritten = UNKNOWN;
+            }
+        }
+
+        return new ResourceUsage(System.nanoTime(), cpuTime, bytesRead, bytesWritten);
+    }
+
+    /**
+     * Returns the wall clock time elapsed since the given snapshot.
+     * 
+     * @param start
+     *            snapshot taken earlier
+     * @return wall clock time in milli seconds
+     */
+    public long getWallTime(final ResourceUsage start) {
+        return (wallTime - start.wallTime) / 1000000;
+    }
+
+    /**
+     * Returns the CPU time used by the current thread since the given snapshot (taken in the same thread).
+     * 
+     * @param start
+     *            snapshot taken earlier
+     * @return CPU time in milli seconds or {@link #UNKNOWN}
+     */
+    public long getCpuTime(final ResourceUsage start) {
+        final long difference = difference(start.cpuTime, cpuTime);
+
+        return difference == UNKNOWN ? UNKNOWN : difference / 1000000;
+    }
+
+    /**
+     * Returns the number of bytes read by the current process since the given snapshot.
+     * 
+     * @param start
+     *            snapshot taken earlier
+     * @return bytes read or {@link #UNKNOWN}
+     */
+    public long getBytesRead(final ResourceUsage start) {
+        return difference(start.bytesRead, bytesRead);
+    }
+
+    /**
+     * Returns the number of bytes written by the current process since the given snapshot.
+     * 
+     * @param start
+     *            snapshot taken earlier
+     * @return bytes written or {@link #UNKNOWN}
+     */
+    public long getBytesWritten(final ResourceUsage start) {
+        return difference(start.bytesWritten, bytesWritten);
+    }
+
+    /**
+     * Returns the difference of the given measurements.
+     * 
+     * @param start
+     *            earlier measurement
+     * @param end
+     *            later measurement
+     * @return the difference of the given measurements or {@link #UNKNOWN} when one of them is unknown
+     */
+    private static long difference(final long start, final long end) {
+        return start == UNKNOWN || end == UNKNOWN ? UNKNOWN : end - start;
+    }
+}
@@ -0,0 +1,593 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Ant task selecting the test classes affected by the class files changed since the last test run.
+ * 
+ * Cobertura does not record which test covered a line, so the classes a test may execute are determined from the constant pools of
+ * the compiled classes: a test is affected when it references a changed, added or removed class directly or through other classes of
+ * the development component. Tests without a JUnit report from an earlier run are always selected.
+ * 
+ * The whole suite is selected when the mapping is stale: there is no manifest of the last test run, it was written for a different
+ * class path, target version or encoding (the <code>signature</code>, which includes the contents of the class path archives), a
+ * resource in the classes folder changed or the coverage data of the last run is missing. Which test reads a resource cannot be
+ * determined from the class files.
+ * 
+ * JUnit reports of removed tests are deleted. Reports of the other tests are kept and overwritten when a test is run again, so durations
+ * of earlier runs remain available for splitting selected tests across JVMs. The coverage data file is reset to the instrumentation
+ * data, the coverage data of unchanged classes is taken over from the last run. Thus changed classes are covered by exactly the
+ * selected tests while unchanged classes keep the coverage of the tests not run again.
+ * 
+ * The selected test classes are registered as a file set under the given reference id for use in a <code>batchtest</code>. The manifest
+ * of the current class files is written to <code>&lt;manifest&gt;.new</code> and should replace the old manifest once the tests were
+ * run.
+ * 
+ * @author Dirk Weigenand
+ */
+public final class SelectTestsTask extends Task {
+    /**
+     * suffix of class files.
+     */
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    /**
+     * suffix of Java source files.
+     */
+    private static final String SOURCE_FILE_SUFFIX = ".java";
+
+    /**
+     * key of the signature in the manifest.
+     */
+    private static final String SIGNATURE_KEY = "signature";
+
+    /**
+     * key of the fingerprint of all resources in the manifest.
+     */
+    private static final String RESOURCES_KEY = "resources";
+
+    /**
+     * folder containing the compiled classes (including the test classes).
+     */
+    private File classesDir;
+
+    /**
+     * manifest of class file fingerprints of the last test run.
+     */
+    private File manifest;
+
+    /**
+     * signature of class path, target version and encoding.
+     */
+    private String signature = "";
+
+    /**
+     * folder containing the JUnit reports.
+     */
+    private File reportDir;
+
+    /**
+     * Cobertura data file the tests write their coverage data to.
+     */
+    private File dataFile;
+
+    /**
+     * Cobertura data file holding the instrumentation data.
+     */
+    private File instrumentationDataFile;
+
+    /**
+     * reference id to register the file set of selected test classes with.
+     */
+    private String refId;
+
+    /**
+     * file sets containing the sources of all test classes.
+     */
+    private final List<FileSet> tests = new ArrayList<FileSet>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        checkParameters();
+
+        final Properties current = new Properties();
+        final DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(classesDir);
+        scanner.setIncludes(new String[] { "**/*" + CLASS_FILE_SUFFIX });
+        scanner.scan();
+
+        for (final String classFile : scanner.getIncludedFiles()) {
+            current.setProperty(classFile.replace(File.separatorChar, '/'), createFingerprint(new File(classesDir, classFile)));
+        }
+
+        final String resources = createResourcesFingerprint();
+        final Map<String, String> testClasses = getTestClasses(current);
+        final Properties previous = loadManifest();
+        final String reason = getFullSuiteReason(previous, resources);
+        final Set<String> selected = new HashSet<String>();
+        final Set<String> changed = new HashSet<String>();
+
+        if (reason == null) {
+            for (final String classFile : current.stringPropertyNames()) {
+                if (!current.getProperty(classFile).equals(previous.getProperty(classFile))) {
+                    changed.add(classFile);
+                }
+            }
+
+            final Set<String> removed = new HashSet<String>(previous.stringPropertyNames());
+            removed.removeAll(current.stringPropertyNames());
+            removed.remove(SIGNATURE_KEY);
+            removed.remove(RESOURCES_KEY);
+
+            final Set<String> affected = getAffectedClasses(current, previous, changed, removed);
+
+            for (final Map.Entry<String, String> test : testClasses.entrySet()) {
+                if (affected.contains(test.getValue()) || !getReport(test.getKey()).exists()) {
+                    selected.add(test.getKey());
+                }
+            }
+
+            log(String.format("%d of %d tests affected by %d changed and %d removed class files.", selected.size(),
+                testClasses.size(), changed.size(), removed.size()), Project.MSG_INFO);
+        }
+        else {
+            selected.addAll(testClasses.keySet());
+            changed.addAll(current.stringPropertyNames());
+            log(String.format("Running all %d tests, %s.", testClasses.size(), reason), Project.MSG_INFO);
+        }
+
+        deleteReports(testClasses.keySet());
+        prepareDataFile(changed);
+        registerSelectedTests(testClasses, selected);
+
+        current.setProperty(SIGNATURE_KEY, signature);
+        current.setProperty(RESOURCES_KEY, resources);
+        storeManifest(current);
+    }
+
+    /**
+     * Check that all required attributes have been set.
+     */
+    private void checkParameters() {
+        if (classesDir == null || !classesDir.isDirectory()) {
+            throw new BuildException("classesdir must be set to an existing directory!");
+        }
+
+        if (manifest == null || reportDir == null || dataFile == null || instrumentationDataFile == null || refId == null) {
+            throw new BuildException("manifest, reportdir, datafile, instrumentationdatafile and refid are required!");
+        }
+    }
+
+    /**
+     * Determine the test classes from the nested file sets.
+     * 
+     * @param classFiles
+     *            fingerprints of the current class files
+     * @return mapping of names of test classes to their class files (relative to the classes folder).
+     */
+    private Map<String, String> getTestClasses(final Properties classFiles) {
+        final Map<String, String> testClasses = new TreeMap<String, String>();
+
+        for (final FileSet fileSet : tests) {
+            for (final String source : fileSet.getDirectoryScanner(getProject()).getIncludedFiles()) {
+                if (source.endsWith(SOURCE_FILE_SUFFIX)) {
+                    final String baseName =
+                        source.substring(0, source.length() - SOURCE_FILE_SUFFIX.length()).replace(File.separatorChar, '/');
+                    final String classFile = baseName + CLASS_FILE_SUFFIX;
+
+                    if (classFiles.containsKey(classFile)) {
+                        testClasses.put(baseName.replace('/', '.'), classFile);
+                    }
+                }
+            }
+        }
+
+        return testClasses;
+    }
+
+    /**
+     * Determine why the whole suite has to be run.
+     * 
+     * @param previous
+     *            manifest of the last test run
+     * @param resources
+     *            fingerprint of the current resources
+     * @return the reason for running the whole suite or <code>null</code> when tests can be selected.
+     */
+    private String getFullSuiteReason(final Properties previous, final String resources) {
+        if (previous.isEmpty()) {
+            return "no previous test run found";
+        }
+
+        if (!signature.equals(previous.getProperty(SIGNATURE_KEY))) {
+            return "class path, target version or encoding changed";
+        }
+
+        if (!resources.equals(previous.getProperty(RESOURCES_KEY))) {
+            return "resources changed";
+        }
+
+        if (!dataFile.exists() || !instrumentationDataFile.exists()) {
+            return "no coverage data of previous test run found";
+        }
+
+        return null;
+    }
+
+    /**
+     * Determine the class files depending directly or indirectly on the given changed or removed class files.
+     * 
+     * @param current
+     *            fingerprints of the current class files
+     * @param previous
+     *            fingerprints of the class files of the last test run
+     * @param changed
+     *            class files changed or added since the last test run
+     * @param removed
+     *            class files removed since the last test run
+     * @return the changed class files and the class files depending on them
+     */
+    private Set<String> getAffectedClasses(final Properties current, final Properties previous, final Set<String> changed,
+        final Set<String> removed) {
+        final Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+
+        for (final String classFile : current.stringPropertyNames()) {
+            for (final String dependency : readDependencies(classFile)) {
+                final String dependencyFile = dependency + CLASS_FILE_SUFFIX;
+
+                if (!dependencyFile.equals(classFile)
+                    && (current.containsKey(dependencyFile) || previous.containsKey(dependencyFile))) {
+                    Set<String> classes = dependents.get(dependencyFile);
+
+                    if (classes == null) {
+                        classes = new HashSet<String>();
+                        dependents.put(dependencyFile, classes);
+                    }
+
+                    classes.add(classFile);
+                }
+            }
+        }
+
+        final Set<String> affected = new HashSet<String>(changed);
+        affected.addAll(removed);
+        final LinkedList<String> queue = new LinkedList<String>(affected);
+
+        while (!queue.isEmpty()) {
+            final Set<String> classes = dependents.get(queue.removeFirst());
+
+            if (classes != null) {
+                for (final String classFile : classes) {
+                    if (affected.add(classFile)) {
+                        queue.add(classFile);
+                    }
+                }
+            }
+        }
+
+        return affected;
+    }
+
+    /**
+     * Read the classes referenced by the given class file.
+     * 
+     * @param classFile
+     *            class file (relative to the classes folder)
+     * @return internal names of the referenced classes
+     */
+    private Set<String> readDependencies(final String classFile) {
+        try {
+            return ClassFiles.readDependencies(new File(classesDir, classFile));
+        }
+        catch (final IOException e) {
+            throw new BuildException(String.format("Could not read %s.", classFile), e);
+        }
+    }
+
+    /**
+     * Returns the JUnit report of the given test class.
+     * 
+     * @param testClass
+     *            name of test class
+     * @return the JUnit report of the given test class.
+     */
+    private File getReport(final String testClass) {
+        return new File(reportDir, "TEST-" + testClass + ".xml");
+    }
+
+    /**
+     * Delete the JUnit reports of test classes that no longer exist.
+     * 
+     * @param testClasses
+     *            names of all current test classes
+     */
+    private void deleteReports(final Set<String> testClasses) {
+        final String[] reports = reportDir.list();
+
+        if (reports == null) {
+            return;
+        }
+
+        for (final String report : reports) {
+            if (report.startsWith("TEST-") && report.endsWith(".xml")) {
+                final String testClass = report.substring("TEST-".length(), report.length() - ".xml".length());
+
+                if (!testClasses.contains(testClass)) {
+                    final File file = new File(reportDir, report);
+
+                    if (!file.delete()) {
+                        throw new BuildException(String.format("Could not delete %s.", file.getAbsolutePath()));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reset the coverage data file to the instrumentation data and take over the coverage data of unchanged classes from the last test
+     * run.
+     * 
+     * @param changed
+     *            class files changed since the last test run
+     */
+    private void prepareDataFile(final Set<String> changed) {
+        final ProjectData previousData = dataFile.exists() ? CoverageDataFileHandler.loadCoverageData(dataFile) : null;
+
+        if (dataFile.exists() && !dataFile.delete()) {
+            throw new BuildException(String.format("Could not delete %s.", dataFile.getAbsolutePath()));
+        }
+
+        if (!instrumentationDataFile.exists()) {
+            return;
+        }
+
+        final ProjectData data = CoverageDataFileHandler.loadCoverageData(instrumentationDataFile);
+
+        if (data == null) {
+            return;
+        }
+
+        if (previousData != null) {
+            for (final Object classData : previousData.getClasses()) {
+                final ClassData previousClass = (ClassData)classData;
+
+                if (!changed.contains(previousClass.getName().replace('.', '/') + CLASS_FILE_SUFFIX)) {
+                    final ClassData clazz = data.getClassData(previousClass.getName());
+
+                    if (clazz != null) {
+                        clazz.merge(previousClass);
+                    }
+                }
+            }
+        }
+
+        CoverageDataFileHandler.saveCoverageData(data, dataFile);
+    }
+
+    /**
+     * Register a file set containing the class files of the selected test classes under the configured reference id.
+     * 
+     * @param testClasses
+     *            mapping of names of test classes to their class files
+     * @param selected
+     *            names of the selected test classes
+     */
+    private void registerSelectedTests(final Map<String, String> testClasses, final Set<String> selected) {
+        final FileSet selectedTests = new FileSet();
+        selectedTests.setProject(getProject());
+        selectedTests.setDir(classesDir);
+
+        for (final String testClass : selected) {
+            selectedTests.createInclude().setName(testClasses.get(testClass));
+        }
+
+        // a file set without includes would contain every file
+        if (selected.isEmpty()) {
+            selectedTests.createExclude().setName("**/*");
+        }
+
+        getProject().addReference(refId, selectedTests);
+    }
+
+    /**
+     * Compute the fingerprint of the given file.
+     * 
+     * @param file
+     *            file to compute the fingerprint for.
+     * @return fingerprint of the given file.
+     */
+    private String createFingerprint(final File file) {
+        try {
+            return ClassFiles.fingerprint(file);
+        }
+        catch (final IOException e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * Compute a fingerprint over the names and contents of all resources (files other than class files) in the classes folder.
+     * 
+     * @return fingerprint of the resources in the classes folder.
+     */
+    private String createResourcesFingerprint() {
+        final DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(classesDir);
+        scanner.setExcludes(new String[] { "**/*" + CLASS_FILE_SUFFIX });
+        scanner.scan();
+
+        final Map<String, String> resources = new HashMap<String, String>();
+
+        for (final String resource : scanner.getIncludedFiles()) {
+            resources.put(resource.replace(File.separatorChar, '/'), createFingerprint(new File(classesDir, resource)));
+        }
+
+        return ClassFiles.fingerprint(resources);
+    }
+
+    /**
+     * Load the manifest of the last test run.
+     * 
+     * @return the fingerprints of the class files of the last test run (empty when there was none).
+     */
+    private Properties loadManifest() {
+        final Properties properties = new Properties();
+
+        if (manifest.exists()) {
+            InputStream in = null;
+
+            try {
+                in = new BufferedInputStream(new FileInputStream(manifest));
+                properties.load(in);
+            }
+            catch (final IOException e) {
+                log(String.format("Could not read %s.", manifest), Project.MSG_WARN);
+                properties.clear();
+            }
+            finally {
+                close(in);
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Write the given fingerprints to <code>&lt;manifest&gt;.new</code>.
+     * 
+     * @param fingerprints
+     *            fingerprints of the current class files.
+     */
+    private void storeManifest(final Properties fingerprints) {
+        final File newManifest = new File(manifest.getParentFile(), manifest.getName() + ".new");
+        OutputStream out = null;
+
+        try {
+            newManifest.getParentFile().mkdirs();
+            out = new BufferedOutputStream(new FileOutputStream(newManifest));
+            fingerprints.store(out, "fingerprints (size:md5) of class files of the last test run");
+        }
+        catch (final IOException e) {
+            throw new BuildException(e);
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Close the given stream ignoring exceptions.
+     * 
+     * @param stream
+     *            stream to close (may be <code>null</code>).
+     */
+    private void close(final Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            }
+            catch (final IOException e) {
+                log(e.getMessage(), Project.MSG_VERBOSE);
+            }
+        }
+    }
+
+    /**
+     * @param classesDir
+     *            the folder containing the compiled classes
+     */
+    public void setClassesDir(final File classesDir) {
+        this.classesDir = classesDir;
+    }
+
+    /**
+     * @param manifest
+     *            the manifest of class file fingerprints of the last test run
+     */
+    public void setManifest(final File manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * @param signature
+     *            the signature of class path, target version and encoding
+     */
+    public void setSignature(final String signature) {
+        this.signature = signature == null ? "" : signature;
+    }
+
+    /**
+     * @param reportDir
+     *            the folder containing the JUnit reports
+     */
+    public void setReportDir(final File reportDir) {
+        this.reportDir = reportDir;
+    }
+
+    /**
+     * @param dataFile
+     *            the Cobertura data file the tests write their coverage data to
+     */
+    public void setDataFile(final File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * @param instrumentationDataFile
+     *            the Cobertura data file holding the instrumentation data
+     */
+    public void setInstrumentationDataFile(final File instrumentationDataFile) {
+        this.instrumentationDataFile = instrumentationDataFile;
+    }
+
+    /**
+     * @param refId
+     *            the reference id to register the file set of selected test classes with
+     */
+    public void setRefId(final String refId) {
+        this.refId = refId;
+    }
+
+    /**
+     * Add a file set containing the sources of test classes.
+     * 
+     * @param fileSet
+     *            file set containing the sources of test classes
+     */
+    public void addFileSet(final FileSet fileSet) {
+        tests.add(fileSet);
+    }
+}
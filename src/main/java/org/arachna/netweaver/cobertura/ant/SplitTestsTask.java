@@ -0,0 +1,417 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Ant task splitting test classes into partitions of about equal duration to run them in parallel JVMs.
+ * 
+ * The duration of a test class is taken from the given durations file (properties mapping names of test classes to durations in
+ * milliseconds) or else read from its JUnit report of an earlier run (<code>TEST-&lt;class&gt;.xml</code>). Test classes without a known
+ * duration are assumed to take the average duration. Test classes are assigned longest first to the partition with the
+ * shortest total duration so far.
+ * 
+ * Test classes are taken from the nested file sets, which may contain test sources (<code>*.java</code>) or compiled test classes
+ * (<code>*.class</code>). Each partition is registered as a file set of class files in the classes folder under the reference id
+ * <code>&lt;refidprefix&gt;&lt;n&gt;</code> (<code>n</code> starting with <code>1</code>).
+ * 
+ * @author Dirk Weigenand
+ */
+public final class SplitTestsTask extends Task {
+    /**
+     * duration of a test class when no test class has a report.
+     */
+    private static final double DEFAULT_DURATION = 1d;
+
+    /**
+     * folder containing the compiled classes (including the test classes).
+     */
+    private File classesDir;
+
+    /**
+     * folder containing the JUnit reports of an earlier run.
+     */
+    private File reportDir;
+
+    /**
+     * file containing the durations of test classes in milliseconds.
+     */
+    private File durationsFile;
+
+    /**
+     * number of partitions.
+     */
+    private int count = 1;
+
+    /**
+     * prefix of reference ids to register the partitions with.
+     */
+    private String refIdPrefix;
+
+    /**
+     * file sets containing the test classes.
+     */
+    private final List<FileSet> tests = new ArrayList<FileSet>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        if (classesDir == null || refIdPrefix == null) {
+            throw new BuildException("classesdir and refidprefix are required!");
+        }
+
+        if (count < 1) {
+            throw new BuildException("count must be greater than zero!");
+        }
+
+        final Map<String, Double> durations = getDurations(TestClasses.find(getProject(), tests, classesDir));
+        final List<String> testClasses = new ArrayList<String>(durations.keySet());
+
+        Collections.sort(testClasses, new Comparator<String>() {
+            @Override
+            public int compare(final String first, final String second) {
+                final int result = durations.get(second).compareTo(durations.get(first));
+
+                return result == 0 ? first.compareTo(second) : result;
+            }
+        });
+
+        final List<Partition> partitions = split(testClasses, durations);
+        final StringBuilder totals = new StringBuilder();
+
+        for (final Partition partition : partitions) {
+            final FileSet fileSet = new FileSet();
+            fileSet.setProject(getProject());
+            fileSet.setDir(classesDir);
+
+            for (final String testClass : partition.testClasses) {
+                fileSet.createInclude().setName(testClass.replace('.', '/') + TestClasses.CLASS_FILE_SUFFIX);
+            }
+
+            // a file set without includes would contain every file
+            if (partition.testClasses.isEmpty()) {
+                fileSet.createExclude().setName("**/*");
+            }
+
+            getProject().addReference(refIdPrefix + (partition.index + 1), fileSet);
+            totals.append(String.format(" %d:%d/%.1fs", partition.index + 1, partition.testClasses.size(), partition.duration));
+        }
+
+        log(String.format("Split %d test classes into %d partitions (partition:test classes/expected duration):%s",
+            testClasses.size(), count, totals), Project.MSG_INFO);
+    }
+
+    /**
+     * Assign the given test classes (sorted by descending duration) to partitions.
+     * 
+     * @param testClasses
+     *            test classes sorted by descending duration
+     * @param durations
+     *            durations of test classes
+     * @return the partitions ordered by index
+     */
+    private List<Partition> split(final List<String> testClasses, final Map<String, Double> durations) {
+        final List<Partition> partitions = new ArrayList<Partition>(count);
+        final PriorityQueue<Partition> queue = new PriorityQueue<Partition>(count);
+
+        for (int i = 0; i < count; i++) {
+            final Partition partition = new Partition(i);
+            partitions.add(partition);
+            queue.add(partition);
+        }
+
+        for (final String testClass : testClasses) {
+            final Partition partition = queue.poll();
+            partition.testClasses.add(testClass);
+            partition.duration += durations.get(testClass);
+            queue.add(partition);
+        }
+
+        return partitions;
+    }
+
+    /**
+     * Determine the durations of the given test classes from their JUnit reports.
+     * 
+     * @param testClasses
+     *            names of test classes
+     * @return durations (in seconds) of the given test classes
+     */
+    private Map<String, Double> getDurations(final TreeSet<String> testClasses) {
+        final Map<String, Double> durations = new HashMap<String, Double>();
+        final List<String> unknown = new ArrayList<String>();
+        final Properties knownDurations = loadDurations();
+        double total = 0;
+
+        for (final String testClass : testClasses) {
+            final Double duration = getDuration(knownDurations, testClass);
+
+            if (duration == null) {
+                unknown.add(testClass);
+            }
+            else {
+                durations.put(testClass, duration);
+                total += duration;
+            }
+        }
+
+        final Double average = durations.isEmpty() ? DEFAULT_DURATION : total / durations.size();
+
+        for (final String testClass : unknown) {
+            durations.put(testClass, average);
+        }
+
+        return durations;
+    }
+
+    /**
+     * Load the durations file.
+     * 
+     * @return durations of test classes in milliseconds (empty when there is no durations file).
+     */
+    private Properties loadDurations() {
+        final Properties properties = new Properties();
+
+        if (durationsFile != null && durationsFile.exists()) {
+            InputStream in = null;
+
+            try {
+                in = new BufferedInputStream(new FileInputStream(durationsFile));
+                properties.load(in);
+            }
+            catch (final IOException e) {
+                log(String.format("Could not read %s: %s", durationsFile, e.getMessage()), Project.MSG_WARN);
+            }
+            finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    }
+                    catch (final IOException e) {
+                        log(e.getMessage(), Project.MSG_VERBOSE);
+                    }
+                }
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Determine the duration of the given test class from the durations file or else from its JUnit report.
+     * 
+     * @param knownDurations
+     *            durations of test classes in milliseconds
+     * @param testClass
+     *            name of test class
+     * @return duration in seconds or <code>null</code> when the duration of the given test class is unknown.
+     */
+    private Double getDuration(final Properties knownDurations, final String testClass) {
+        final String duration = knownDurations.getProperty(testClass);
+
+        if (duration != null) {
+            try {
+                return Long.parseLong(duration) / 1000d;
+            }
+            catch (final NumberFormatException e) {
+                log(String.format("Invalid duration of %s: %s", testClass, duration), Project.MSG_VERBOSE);
+            }
+        }
+
+        return readDuration(testClass);
+    }
+
+    /**
+     * Read the duration of the given test class from its JUnit report.
+     * 
+     * @param testClass
+     *            name of test class
+     * @return duration in seconds or <code>null</code> when there is no readable report of the given test class.
+     */
+    private Double readDuration(final String testClass) {
+        if (reportDir == null) {
+            return null;
+        }
+
+        final File report = new File(reportDir, "TEST-" + testClass + ".xml");
+
+        if (!report.exists()) {
+            return null;
+        }
+
+        try {
+            return readTestSuiteTime(report);
+        }
+        catch (final IOException e) {
+            log(String.format("Could not read %s: %s", report, e.getMessage()), Project.MSG_VERBOSE);
+        }
+        catch (final XMLStreamException e) {
+            log(String.format("Could not read %s: %s", report, e.getMessage()), Project.MSG_VERBOSE);
+        }
+        catch (final NumberFormatException e) {
+            log(String.format("Could not read %s: %s", report, e.getMessage()), Project.MSG_VERBOSE);
+        }
+
+        return null;
+    }
+
+    /**
+     * Read the <code>time</code> attribute of the <code>testsuite</code> element of the given JUnit report.
+     * 
+     * @param report
+     *            JUnit report
+     * @return duration in seconds or <code>null</code> when the report contains no duration
+     * @throws IOException
+     *             when the report could not be read
+     * @throws XMLStreamException
+     *             when the report could not be parsed
+     */
+    static Double readTestSuiteTime(final File report) throws IOException, XMLStreamException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(report));
+
+        try {
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            final XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        final String time = reader.getAttributeValue(null, "time");
+
+                        return time == null ? null : Double.valueOf(time.replace(",", ""));
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        return null;
+    }
+
+    /**
+     * @param classesDir
+     *            the folder containing the compiled classes
+     */
+    public void setClassesDir(final File classesDir) {
+        this.classesDir = classesDir;
+    }
+
+    /**
+     * @param reportDir
+     *            the folder containing the JUnit reports of an earlier run
+     */
+    public void setReportDir(final File reportDir) {
+        this.reportDir = reportDir;
+    }
+
+    /**
+     * @param durationsFile
+     *            the file containing the durations of test classes in milliseconds
+     */
+    public void setDurationsFile(final File durationsFile) {
+        this.durationsFile = durationsFile;
+    }
+
+    /**
+     * @param count
+     *            the number of partitions
+     */
+    public void setCount(final int count) {
+        this.count = count;
+    }
+
+    /**
+     * @param refIdPrefix
+     *            the prefix of reference ids to register the partitions with
+     */
+    public void setRefIdPrefix(final String refIdPrefix) {
+        this.refIdPrefix = refIdPrefix;
+    }
+
+    /**
+     * Add a file set containing test sources or compiled test classes.
+     * 
+     * @param fileSet
+     *            file set containing test sources or compiled test classes
+     */
+    public void addFileSet(final FileSet fileSet) {
+        tests.add(fileSet);
+    }
+
+    /**
+     * A partition of test classes.
+     * 
+     * @author Dirk Weigenand
+     */
+    private static final class Partition implements Comparable<Partition> {
+        /**
+         * index of partition.
+         */
+        private final int index;
+
+        /**
+         * test classes of partition.
+         */
+        private final List<String> testClasses = new ArrayList<String>();
+
+        /**
+         * expected duration of partition.
+         */
+        private double duration;
+
+        /**
+         * Create a partition with the given index.
+         * 
+         * @param index
+         *            index of partition
+         */
+        Partition(final int index) {
+            this.index = index;
+        }
+
+        /**
+         * Order partitions by expected duration, then by index.
+         * 
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(final Partition other) {
+            final int result = Double.compare(duration, other.duration);
+
+            return result == 0 ? index - other.index : result;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.util.FileUtils;
+
+/**
+ * Ant task synchronizing the resources of a development component with its classes folder.
+ * 
+ * A resource is copied only when its copy in the target folder is missing or differs in size or modification time (copies keep the
+ * modification time of their resource). Resources copied by the last run that no longer exist are removed from the target folder. The
+ * resources copied by the last run are recorded in the given manifest, since the target folder also contains the compiled classes.
+ * When a resource exists in several source folders, the one from the first file set is used.
+ * 
+ * @author Dirk Weigenand
+ */
+public final class SyncResourcesTask extends Task {
+    /**
+     * encoding of the manifest.
+     */
+    private static final String MANIFEST_ENCODING = "UTF-8";
+
+    /**
+     * folder to copy the resources to.
+     */
+    private File toDir;
+
+    /**
+     * manifest of the resources copied by the last run.
+     */
+    private File manifest;
+
+    /**
+     * file sets containing the resources.
+     */
+    private final List<FileSet> resources = new ArrayList<FileSet>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        if (toDir == null || manifest == null) {
+            throw new BuildException("todir and manifest are required!");
+        }
+
+        final Map<String, File> current = getResources();
+        final Set<String> previous = readManifest();
+        final FileUtils fileUtils = FileUtils.getFileUtils();
+        int copied = 0;
+        int skipped = 0;
+        int removed = 0;
+
+        try {
+            for (final Map.Entry<String, File> resource : current.entrySet()) {
+                final File source = resource.getValue();
+                final File target = new File(toDir, resource.getKey());
+
+                if (target.length() == source.length() && target.lastModified() == source.lastModified()) {
+                    skipped++;
+                }
+                else {
+                    fileUtils.copyFile(source, target, null, true, true);
+                    copied++;
+                }
+            }
+
+            for (final String resource : previous) {
+                if (!current.containsKey(resource) && new File(toDir, resource).delete()) {
+                    removed++;
+                }
+            }
+
+            writeManifest(current.keySet());
+        }
+        catch (final IOException e) {
+            throw new BuildException(e);
+        }
+
+        log(String.format("Copied %d, skipped %d and removed %d resources.", copied, skipped, removed), Project.MSG_INFO);
+    }
+
+    /**
+     * Determine the resources contained in the nested file sets.
+     * 
+     * @return the resources mapped to their paths relative to their source folder
+     */
+    private Map<String, File> getResources() {
+        final Map<String, File> current = new TreeMap<String, File>();
+
+        for (final FileSet fileSet : resources) {
+            final File dir = fileSet.getDir(getProject());
+
+            for (final String file : fileSet.getDirectoryScanner(getProject()).getIncludedFiles()) {
+                final String path = file.replace(File.separatorChar, '/');
+
+                if (current.containsKey(path)) {
+                    log(String.format("%s exists in several source folders, using %s.", path, current.get(path)), Project.MSG_VERBOSE);
+                }
+                else {
+                    current.put(path, new File(dir, file));
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Read the manifest of the resources copied by the last run.
+     * 
+     * @return paths of the resources copied by the last run (empty when there is no manifest)
+     */
+    private Set<String> readManifest() {
+        final Set<String> previous = new LinkedHashSet<String>();
+
+        if (manifest.exists()) {
+            try {
+                final BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(new FileInputStream(manifest), MANIFEST_ENCODING));
+
+                try {
+                    String line = reader.readLine();
+
+                    while (line != null) {
+                        if (line.length() > 0) {
+                            previous.add(line);
+                        }
+
+                        line = reader.readLine();
+                    }
+                }
+                finally {
+                    close(reader);
+                }
+            }
+            catch (final IOException e) {
+                log(String.format("Could not read %s: %s", manifest, e.getMessage()), Project.MSG_WARN);
+            }
+        }
+
+        return previous;
+    }
+
+    /**
+     * Write the manifest of the copied resources.
+     * 
+     * @param paths
+     *            paths of the copied resources
+     * @throws IOException
+     *             when the manifest could not be written
+     */
+    private void writeManifest(final Set<String> paths) throws IOException {
+        manifest.getParentFile().mkdirs();
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(manifest), MANIFEST_ENCODING);
+
+        try {
+            for (final String path : paths) {
+                writer.write(path);
+                writer.write('\n');
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Close the given stream ignoring errors.
+     * 
+     * @param stream
+     *            stream to close
+     */
+    private void close(final Closeable stream) {
+        try {
+            stream.close();
+        }
+        catch (final IOException e) {
+            log(e.getMessage(), Project.MSG_VERBOSE);
+        }
+    }
+
+    /**
+     * @param toDir
+     *            the folder to copy the resources to
+     */
+    public void setToDir(final File toDir) {
+        this.toDir = toDir;
+    }
+
+    /**
+     * @param manifest
+     *            the manifest of the resources copied by the last run
+     */
+    public void setManifest(final File manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Add a file set containing resources.
+     * 
+     * @param fileSet
+     *            file set containing resources
+     */
+    public void addFileSet(final FileSet fileSet) {
+        resources.add(fileSet);
+    }
+}
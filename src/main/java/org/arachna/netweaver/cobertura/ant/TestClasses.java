@@ -0,0 +1,70 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Helper methods for determining the test classes contained in file sets of test sources or compiled test classes.
+ * 
+ * @author Dirk Weigenand
+ */
+final class TestClasses {
+    /**
+     * suffix of class files.
+     */
+    static final String CLASS_FILE_SUFFIX = ".class";
+
+    /**
+     * suffix of Java source files.
+     */
+    static final String SOURCE_FILE_SUFFIX = ".java";
+
+    /**
+     * Utility class.
+     */
+    private TestClasses() {
+    }
+
+    /**
+     * Determine the names of the test classes contained in the given file sets. Inner classes are ignored.
+     * 
+     * @param project
+     *            project to scan the file sets in.
+     * @param fileSets
+     *            file sets containing test sources or compiled test classes.
+     * @param classesDir
+     *            folder containing the compiled test classes, only test classes compiled into it are returned (<code>null</code>
+     *            when test classes should not be checked for a class file).
+     * @return names of the test classes sorted by name
+     */
+    static TreeSet<String> find(final Project project, final Collection<FileSet> fileSets, final File classesDir) {
+        final TreeSet<String> testClasses = new TreeSet<String>();
+
+        for (final FileSet fileSet : fileSets) {
+            for (final String file : fileSet.getDirectoryScanner(project).getIncludedFiles()) {
+                String baseName = null;
+
+                if (file.endsWith(SOURCE_FILE_SUFFIX)) {
+                    baseName = file.substring(0, file.length() - SOURCE_FILE_SUFFIX.length());
+                }
+                else if (file.endsWith(CLASS_FILE_SUFFIX)) {
+                    baseName = file.substring(0, file.length() - CLASS_FILE_SUFFIX.length());
+                }
+
+                if (baseName != null && baseName.indexOf('$') < 0
+                    && (classesDir == null || new File(classesDir, baseName + CLASS_FILE_SUFFIX).exists())) {
+                    testClasses.add(baseName.replace(File.separatorChar, '.').replace('/', '.'));
+                }
+            }
+        }
+
+        return testClasses;
+    }
+}
@@ -0,0 +1,776 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.UnknownHostException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.Path;
+import org.apache.tools.ant.types.Reference;
+
+/**
+ * Ant task running the JUnit tests of a development component in the ant JVM using a warm Cobertura runtime.
+ * 
+ * The Cobertura runtime (the archives of the runtime class path) is loaded once per JVM and class path into a class loader shared by
+ * all development components tested in this JVM, so it is not loaded and compiled again for every development component. The test
+ * classes, the instrumented and original classes and the class path of the development component are loaded into a class loader of
+ * their own which is discarded after the tests ran. Neither class loader delegates to the class loader of ant, so the tests see the
+ * same classes as in a forked JVM.
+ * 
+ * The Cobertura runtime records coverage data globally. Tests are therefore run one development component at a time. Afterwards the
+ * recorded coverage data is merged into the given data file and reset, so that each development component gets exactly the coverage
+ * data of its own tests. JUnit reports are written in the format of the XML formatter of the ant junit task
+ * (<code>TEST-&lt;class&gt;.xml</code>).
+ * 
+ * Build files of development components run via <code>subant</code> load the tasks of this plugin with class loaders of their own, since
+ * loader references passed by the calling build are only available after the build file was parsed. The runtimes are therefore taken from
+ * this task class as loaded by the class loader referenced by <code>loaderref</code> (if given), so all development components tested by
+ * an aggregated build passing its loader reference share them.
+ * 
+ * Each test class runs on a thread of its own. When a timeout is given and a test class does not finish in time, an error is reported
+ * for it and the next test class is run. The thread of the test class is interrupted but can not be stopped safely, so it may keep on
+ * running in the ant JVM.
+ * 
+ * @author Dirk Weigenand
+ */
+public final class TestRunnerTask extends Task {
+    /**
+     * system property naming the data file the Cobertura runtime saves coverage data to.
+     */
+    private static final String DATAFILE_PROPERTY = "net.sourceforge.cobertura.datafile";
+
+    /**
+     * class holding the coverage data recorded by the Cobertura runtime.
+     */
+    private static final String PROJECT_DATA_CLASS = "net.sourceforge.cobertura.coveragedata.ProjectData";
+
+    /**
+     * class determining the data file the Cobertura runtime saves coverage data to.
+     */
+    private static final String DATA_FILE_HANDLER_CLASS = "net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler";
+
+    /**
+     * Cobertura runtimes loaded in this JVM mapped to their class paths.
+     */
+    private static final Map<String, ClassLoader> RUNTIMES = new HashMap<String, ClassLoader>();
+
+    /**
+     * lock serializing test runs, the Cobertura runtime records coverage data globally.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * id of the reference to the class loader whose copy of this task class holds the runtimes.
+     */
+    private String loaderRef;
+
+    /**
+     * class path of the Cobertura runtime.
+     */
+    private Path runtimeClassPath;
+
+    /**
+     * class paths of the development component (instrumented classes, classes and dependencies).
+     */
+    private final List<Path> classPaths = new ArrayList<Path>();
+
+    /**
+     * Cobertura data file to merge the coverage data into.
+     */
+    private File dataFile;
+
+    /**
+     * folder to write the JUnit reports to.
+     */
+    private File reportDir;
+
+    /**
+     * property to set when a test failed.
+     */
+    private String failureProperty;
+
+    /**
+     * file sets containing the test classes.
+     */
+    private final List<FileSet> tests = new ArrayList<FileSet>();
+
+    /**
+     * time in milliseconds the tests of a test class may run (<code>0</code> when not limited).
+     */
+    private long timeout;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute() {
+        if (runtimeClassPath == null || dataFile == null || reportDir == null) {
+            throw new BuildException("runtimeclasspathref, datafile and reportdir are required!");
+        }
+
+        if (!reportDir.exists() && !reportDir.mkdirs()) {
+            throw new BuildException(String.format("Could not create %s!", reportDir.getAbsolutePath()));
+        }
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        final Class<?> owner = getOwner();
+
+        synchronized (getStaticField(owner, "LOCK")) {
+            final ClassLoader runtime = getRuntime(runtimeClassPath, (Map<String, ClassLoader>)getStaticField(owner, "RUNTIMES"));
+            final ClassLoader loader = new URLClassLoader(toUrls(classPaths), runtime);
+            boolean failed = false;
+
+            try {
+                thread.setContextClassLoader(loader);
+
+                for (final String testClass : TestClasses.find(getProject(), tests, null)) {
+                    failed |= !run(loader, testClass);
+                }
+            }
+            finally {
+                thread.setContextClassLoader(contextClassLoader);
+                saveCoverageData(runtime);
+            }
+
+            if (failed && failureProperty != null) {
+                getProject().setNewProperty(failureProperty, "true");
+            }
+        }
+    }
+
+    /**
+     * Returns this task class as loaded by the class loader referenced by {@link #loaderRef}.
+     * 
+     * @return the class holding the runtimes and lock to use
+     */
+    private Class<?> getOwner() {
+        final Object loader = loaderRef == null ? null : getProject().getReference(loaderRef);
+
+        if (loader instanceof ClassLoader) {
+            try {
+                return Class.forName(getClass().getName(), true, (ClassLoader)loader);
+            }
+            catch (final ClassNotFoundException e) {
+                log(String.format("%s is not loaded by %s.", getClass().getName(), loaderRef), Project.MSG_VERBOSE);
+            }
+        }
+
+        return getClass();
+    }
+
+    /**
+     * Returns the value of the given static field of the given class.
+     * 
+     * @param owner
+     *            class declaring the field
+     * @param name
+     *            name of field
+     * @return value of field
+     */
+    private Object getStaticField(final Class<?> owner, final String name) {
+        try {
+            final Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+
+            return field.get(null);
+        }
+        catch (final NoSuchFieldException e) {
+            throw new BuildException(e);
+        }
+        catch (final IllegalAccessException e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * Returns the Cobertura runtime for the given class path, loading it when it is used for the first time in this JVM.
+     * 
+     * @param classPath
+     *            class path of the Cobertura runtime
+     * @param runtimes
+     *            Cobertura runtimes already loaded mapped to their class paths
+     * @return class loader of the Cobertura runtime
+     */
+    private ClassLoader getRuntime(final Path classPath, final Map<String, ClassLoader> runtimes) {
+        final String key = classPath.toString();
+        ClassLoader runtime = runtimes.get(key);
+
+        if (runtime == null) {
+            final List<Path> paths = new ArrayList<Path>();
+            paths.add(classPath);
+            runtime = new URLClassLoader(toUrls(paths), ClassLoader.getSystemClassLoader().getParent());
+
+            // initialize the runtime now so its shutdown hook does not keep the class loader of a development component alive
+            final Thread thread = Thread.currentThread();
+            final ClassLoader contextClassLoader = thread.getContextClassLoader();
+
+            try {
+                thread.setContextClassLoader(runtime);
+                runtime.loadClass(PROJECT_DATA_CLASS).getMethod("getGlobalProjectData").invoke(null);
+            }
+            catch (final Exception e) {
+                throw new BuildException(String.format("Could not load the Cobertura runtime from %s!", key), e);
+            }
+            finally {
+                thread.setContextClassLoader(contextClassLoader);
+            }
+
+            runtimes.put(key, runtime);
+            log(String.format("Loaded Cobertura runtime from %s.", key), Project.MSG_VERBOSE);
+        }
+
+        return runtime;
+    }
+
+    /**
+     * Merge the coverage data recorded by the given Cobertura runtime into the data file and reset it.
+     * 
+     * @param runtime
+     *            class loader of the Cobertura runtime
+     */
+    private void saveCoverageData(final ClassLoader runtime) {
+        final String previous = System.getProperty(DATAFILE_PROPERTY);
+        System.setProperty(DATAFILE_PROPERTY, dataFile.getAbsolutePath());
+
+        try {
+            resetDefaultDataFile(runtime);
+            runtime.loadClass(PROJECT_DATA_CLASS).getMethod("saveGlobalProjectData").invoke(null);
+        }
+        catch (final Exception e) {
+            throw new BuildException(String.format("Could not save coverage data to %s!", dataFile.getAbsolutePath()), e);
+        }
+        finally {
+            if (previous == null) {
+                System.clearProperty(DATAFILE_PROPERTY);
+            }
+            else {
+                System.setProperty(DATAFILE_PROPERTY, previous);
+            }
+        }
+    }
+
+    /**
+     * Reset the data file cached by the given Cobertura runtime (if it caches one), so it saves coverage data to the data file of the
+     * current development component.
+     * 
+     * @param runtime
+     *            class loader of the Cobertura runtime
+     * @throws ClassNotFoundException
+     *             when the runtime does not contain the data file handler
+     * @throws IllegalAccessException
+     *             when the cached data file could not be reset
+     */
+    private void resetDefaultDataFile(final ClassLoader runtime) throws ClassNotFoundException, IllegalAccessException {
+        try {
+            final Field defaultFile = runtime.loadClass(DATA_FILE_HANDLER_CLASS).getDeclaredField("defaultFile");
+            defaultFile.setAccessible(true);
+            defaultFile.set(null, null);
+        }
+        catch (final NoSuchFieldException e) {
+            log("Cobertura runtime does not cache its data file.", Project.MSG_DEBUG);
+        }
+    }
+
+    /**
+     * Run the tests of the given test class on a thread of its own and write its JUnit report. When the tests do not finish within
+     * {@link #timeout} an error is reported for the test class.
+     * 
+     * @param loader
+     *            class loader of the development component
+     * @param testClass
+     *            name of the test class
+     * @return <code>true</code> when all tests of the given class passed, <code>false</code> otherwise.
+     */
+    private boolean run(final ClassLoader loader, final String testClass) {
+        log("Running " + testClass, Project.MSG_INFO);
+        final TestSuite suite = new TestSuite(testClass);
+        final RuntimeException[] problem = new RuntimeException[1];
+        final Thread runner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runTests(loader, suite);
+                }
+                catch (final RuntimeException e) {
+                    problem[0] = e;
+                }
+                catch (final Error e) {
+                    problem[0] = new BuildException(String.format("Could not run %s!", testClass), e);
+                }
+            }
+        }, "test-runner " + testClass);
+        runner.setContextClassLoader(loader);
+        runner.setDaemon(true);
+        runner.start();
+
+        try {
+            runner.join(timeout);
+        }
+        catch (final InterruptedException e) {
+            runner.interrupt();
+            Thread.currentThread().interrupt();
+            throw new BuildException(String.format("Interrupted while running %s!", testClass), e);
+        }
+
+        final TestSuite result;
+
+        if (runner.isAlive()) {
+            runner.interrupt();
+            // the test thread may still change its suite, report a suite of its own
+            result = new TestSuite(testClass);
+            result.time = timeout;
+            final String message = String.format("Timeout occurred after %d ms.", timeout);
+            result.addFailure("timeout", new TimeoutException(message), message);
+        }
+        else if (problem[0] != null) {
+            throw problem[0];
+        }
+        else {
+            result = suite;
+        }
+
+        log(String.format(Locale.ENGLISH, "Tests run: %d, Failures: %d, Errors: %d, Skipped: %d, Time elapsed: %.3f sec",
+            result.testCases.size(), result.failures, result.errors, result.skipped, result.time / 1000d), Project.MSG_INFO);
+        writeReport(result);
+
+        return result.failures == 0 && result.errors == 0;
+    }
+
+    /**
+     * Run the tests of the test class of the given suite and record their results in it.
+     * 
+     * @param loader
+     *            class loader of the development component
+     * @param suite
+     *            test suite to record the results of the tests in
+     */
+    private void runTests(final ClassLoader loader, final TestSuite suite) {
+        final String testClass = suite.name;
+
+        try {
+            final Class<?> requestClass = loader.loadClass("org.junit.runner.Request");
+            final Object request = requestClass.getMethod("aClass", Class.class).invoke(null, loader.loadClass(testClass));
+            final Object runner = requestClass.getMethod("getRunner").invoke(request);
+            final Class<?> descriptionClass = loader.loadClass("org.junit.runner.Description");
+            addTestCases(suite, descriptionClass, invoke(loader, "org.junit.runner.Runner", runner, "getDescription"));
+
+            final Object core = loader.loadClass("org.junit.runner.JUnitCore").newInstance();
+            final Object result = core.getClass().getMethod("run", requestClass).invoke(core, request);
+            final String resultClass = "org.junit.runner.Result";
+            suite.time = (Long)invoke(loader, resultClass, result, "getRunTime");
+            suite.skipped = (Integer)invoke(loader, resultClass, result, "getIgnoreCount");
+
+            for (final Object failure : (List<?>)invoke(loader, resultClass, result, "getFailures")) {
+                final String failureClass = "org.junit.runner.notification.Failure";
+                final Object description = invoke(loader, failureClass, failure, "getDescription");
+                final String displayName = (String)invoke(loader, descriptionClass.getName(), description, "getDisplayName");
+                suite.addFailure(getMethodName(displayName), (Throwable)invoke(loader, failureClass, failure, "getException"),
+                    (String)invoke(loader, failureClass, failure, "getTrace"));
+            }
+        }
+        catch (final ClassNotFoundException e) {
+            suite.addFailure("initializationError", e, e.toString());
+        }
+        catch (final LinkageError e) {
+            suite.addFailure("initializationError", e, e.toString());
+        }
+        catch (final InvocationTargetException e) {
+            throw new BuildException(String.format("Could not run %s!", testClass), e.getCause());
+        }
+        catch (final Exception e) {
+            throw new BuildException(String.format("Could not run %s!", testClass), e);
+        }
+    }
+
+    /**
+     * Add a test case for each test of the given description to the given test suite.
+     * 
+     * @param suite
+     *            test suite to add test cases to
+     * @param descriptionClass
+     *            JUnit description class
+     * @param description
+     *            description of tests
+     * @throws Exception
+     *             when the description could not be read
+     */
+    private void addTestCases(final TestSuite suite, final Class<?> descriptionClass, final Object description) throws Exception {
+        if ((Boolean)descriptionClass.getMethod("isTest").invoke(description)) {
+            suite.addTestCase(getMethodName((String)descriptionClass.getMethod("getDisplayName").invoke(description)));
+        }
+        else {
+            for (final Object child : (List<?>)descriptionClass.getMethod("getChildren").invoke(description)) {
+                addTestCases(suite, descriptionClass, child);
+            }
+        }
+    }
+
+    /**
+     * Invoke the given method without parameters of the given JUnit class on the given object.
+     * 
+     * @param loader
+     *            class loader of the development component
+     * @param className
+     *            name of JUnit class declaring the method
+     * @param target
+     *            object to invoke the method on
+     * @param methodName
+     *            name of method
+     * @return result of the method
+     * @throws Exception
+     *             when the method could not be invoked
+     */
+    private Object invoke(final ClassLoader loader, final String className, final Object target, final String methodName)
+        throws Exception {
+        return loader.loadClass(className).getMethod(methodName).invoke(target);
+    }
+
+    /**
+     * Extract the name of the test method from the given JUnit display name (<code>method(class)</code>).
+     * 
+     * @param displayName
+     *            display name of a test
+     * @return name of the test method
+     */
+    private String getMethodName(final String displayName) {
+        final int index = displayName.indexOf('(');
+
+        return index > 0 ? displayName.substring(0, index) : displayName;
+    }
+
+    /**
+     * Write the JUnit report of the given test suite.
+     * 
+     * @param suite
+     *            the test suite to report
+     */
+    private void writeReport(final TestSuite suite) {
+        final File report = new File(reportDir, "TEST-" + suite.name + ".xml");
+
+        try {
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(report));
+
+            try {
+                final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeStartElement("testsuite");
+                writer.writeAttribute("errors", Integer.toString(suite.errors));
+                writer.writeAttribute("failures", Integer.toString(suite.failures));
+                writer.writeAttribute("hostname", getHostName());
+                writer.writeAttribute("name", suite.name);
+                writer.writeAttribute("skipped", Integer.toString(suite.skipped));
+                writer.writeAttribute("tests", Integer.toString(suite.testCases.size()));
+                writer.writeAttribute("time", String.format(Locale.ENGLISH, "%.3f", suite.time / 1000d));
+                writer.writeAttribute("timestamp", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(suite.timestamp));
+                writer.writeEmptyElement("properties");
+
+                for (final TestCase testCase : suite.testCases) {
+                    writer.writeStartElement("testcase");
+                    writer.writeAttribute("classname", suite.name);
+                    writer.writeAttribute("name", testCase.name);
+                    writer.writeAttribute("time", "0.000");
+
+                    if (testCase.failure != null) {
+                        writer.writeStartElement(testCase.failure instanceof AssertionError ? "failure" : "error");
+
+                        if (testCase.failure.getMessage() != null) {
+                            writer.writeAttribute("message", testCase.failure.getMessage());
+                        }
+
+                        writer.writeAttribute("type", testCase.failure.getClass().getName());
+                        writer.writeCharacters(testCase.trace);
+                        writer.writeEndElement();
+                    }
+
+                    writer.writeEndElement();
+                }
+
+                writer.writeEmptyElement("system-out");
+                writer.writeEmptyElement("system-err");
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.close();
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (final IOException e) {
+            throw new BuildException(String.format("Could not write %s!", report.getAbsolutePath()), e);
+        }
+        catch (final XMLStreamException e) {
+            throw new BuildException(String.format("Could not write %s!", report.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Returns the name of the local host for JUnit reports.
+     * 
+     * @return the name of the local host
+     */
+    private String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        }
+        catch (final UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * Convert the given class paths into URLs.
+     * 
+     * @param paths
+     *            class paths to convert
+     * @return URLs of the elements of the given class paths
+     */
+    private URL[] toUrls(final List<Path> paths) {
+        final List<URL> urls = new ArrayList<URL>();
+
+        for (final Path path : paths) {
+            for (final String element : path.list()) {
+                try {
+                    urls.add(new File(element).toURI().toURL());
+                }
+                catch (final MalformedURLException e) {
+                    throw new BuildException(e);
+                }
+            }
+        }
+
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    /**
+     * @param loaderRef
+     *            the id of the reference to the class loader whose copy of this task class holds the runtimes
+     */
+    public void setLoaderRef(final String loaderRef) {
+        this.loaderRef = loaderRef;
+    }
+
+    /**
+     * @param runtimeClassPath
+     *            reference to the class path of the Cobertura runtime
+     */
+    public void setRuntimeClassPathRef(final Reference runtimeClassPath) {
+        this.runtimeClassPath = new Path(getProject());
+        this.runtimeClassPath.setRefid(runtimeClassPath);
+    }
+
+    /**
+     * Add a class path of the development component (instrumented classes, classes and dependencies).
+     * 
+     * @return the class path to configure
+     */
+    public Path createClassPath() {
+        final Path classPath = new Path(getProject());
+        classPaths.add(classPath);
+
+        return classPath;
+    }
+
+    /**
+     * @param dataFile
+     *            the Cobertura data file to merge the coverage data into
+     */
+    public void setDataFile(final File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * @param reportDir
+     *            the folder to write the JUnit reports to
+     */
+    public void setReportDir(final File reportDir) {
+        this.reportDir = reportDir;
+    }
+
+    /**
+     * @param failureProperty
+     *            the property to set when a test failed
+     */
+    public void setFailureProperty(final String failureProperty) {
+        this.failureProperty = failureProperty;
+    }
+
+    /**
+     * @param timeout
+     *            the time in milliseconds the tests of a test class may run (<code>0</code> when not limited)
+     */
+    public void setTimeout(final long timeout) {
+        this.timeout = Math.max(0, timeout);
+    }
+
+    /**
+     * Add a file set containing test sources or compiled test classes.
+     * 
+     * @param fileSet
+     *            file set containing test sources or compiled test classes
+     */
+    public void addFileSet(final FileSet fileSet) {
+        tests.add(fileSet);
+    }
+
+    /**
+     * Results of the tests of a test class.
+     * 
+     * @author Dirk Weigenand
+     */
+    private static final class TestSuite {
+        /**
+         * name of test class.
+         */
+        private final String name;
+
+        /**
+         * time the tests were started.
+         */
+        private final Date timestamp = new Date();
+
+        /**
+         * the tests of the test class.
+         */
+        private final List<TestCase> testCases = new ArrayList<TestCase>();
+
+        /**
+         * number of failed tests.
+         */
+        private int failures;
+
+        /**
+         * number of tests failed with an unexpected exception.
+         */
+        private int errors;
+
+        /**
+         * number of ignored tests.
+         */
+        private int skipped;
+
+        /**
+         * time running the tests took in milli seconds.
+         */
+        private long time;
+
+        /**
+         * Create the results of the given test class.
+         * 
+         * @param name
+         *            name of test class
+         */
+        TestSuite(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * Add a test of the test class.
+         * 
+         * @param testName
+         *            name of the test method
+         * @return the added test case
+         */
+        TestCase addTestCase(final String testName) {
+            final TestCase testCase = new TestCase(testName);
+            testCases.add(testCase);
+
+            return testCase;
+        }
+
+        /**
+         * Record the failure of the given test (which is added when it is not a known test, e.g. a failing class initialization).
+         * 
+         * @param testName
+         *            name of the test method
+         * @param failure
+         *            the exception the test failed with
+         * @param trace
+         *            stack trace of the exception
+         */
+        void addFailure(final String testName, final Throwable failure, final String trace) {
+            TestCase testCase = null;
+
+            for (final TestCase candidate : testCases) {
+                if (candidate.name.equals(testName) && candidate.failure == null) {
+                    testCase = candidate;
+                    break;
+                }
+            }
+
+            if (testCase == null) {
+                testCase = addTestCase(testName);
+            }
+
+            testCase.failure = failure;
+            testCase.trace = trace;
+
+            if (failure instanceof AssertionError) {
+                failures++;
+            }
+            else {
+                errors++;
+            }
+        }
+    }
+
+    /**
+     * Result of a test.
+     * 
+     * @author Dirk Weigenand
+     */
+    private static final class TestCase {
+        /**
+         * name of the test method.
+         */
+        private final String name;
+
+        /**
+         * the exception the test failed with (<code>null</code> when the test passed).
+         */
+        private Throwable failure;
+
+        /**
+         * stack trace of the exception the test failed with.
+         */
+        private String trace;
+
+        /**
+         * Create the result of the given test.
+         * 
+         * @param name
+         *            name of the test method
+         */
+        TestCase(final String name) {
+            this.name = name;
+        }
+    }
+}
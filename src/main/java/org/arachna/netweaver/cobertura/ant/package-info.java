@@ -0,0 +1,4 @@
+/**
+ * Provides ant tasks used by the build files generated by the NWDI-Cobertura-Plugin.
+ */
+package org.arachna.netweaver.cobertura.ant;
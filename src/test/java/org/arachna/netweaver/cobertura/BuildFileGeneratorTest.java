@@ -6,17 +6,22 @@ package org.arachna.netweaver.cobertura;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import org.apache.velocity.app.VelocityEngine;
 import org.arachna.ant.AntHelper;
 import org.arachna.netweaver.cobertura.BuildFileGenerator.IBuildFileWriterFactory;
 import org.arachna.netweaver.dc.types.Compartment;
@@ -217,6 +222,182 @@ public class BuildFileGeneratorTest extends XMLTestCase {
         assertXPathResult("1", "count(/project/target[4]/junit[@timeout='1'])");
     }
 
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setIncrementalCompile(boolean)}.
+     */
+    @Test
+    public void testIncrementalCompileKeepsClassesDir() {
+        generator.setIncrementalCompile(true);
+        assertXPathResult("0", "count(/project/target[@name='compile-example.org~lib~dc1']/delete)");
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.netweaver.cobertura.BuildFileGenerator#evaluateContext(org.arachna.netweaver.dc.types.DevelopmentComponent, java.io.Writer)}
+     * .
+     */
+    @Test
+    public void testFullCompileKeepsResourcesForIncrementalCopy() {
+        assertXPathResult("**/*.class", "/project/target[@name='compile-example.org~lib~dc1']/delete/fileset/@includes");
+        assertXPathResult("${cobertura.state.dir}/resources.synced", "/project/target[@name='copy']/sync-resources/@manifest");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setIncrementalCompile(boolean)}.
+     */
+    @Test
+    public void testIncrementalCompileDeletesStaleClassesAndDependents() {
+        generator.setIncrementalCompile(true);
+        assertXPathResult("yes", "/project/target[@name='compile-example.org~lib~dc1']/depend/@closure");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setIncrementalInstrumentation(boolean)}.
+     */
+    @Test
+    public void testIncrementalInstrumentationKeepsInstrumentedDir() {
+        generator.setIncrementalInstrumentation(true);
+        assertXPathResult("0", "count(/project/target[@name='instrument-example.org~lib~dc1']/delete)");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setIncrementalInstrumentation(boolean)}.
+     */
+    @Test
+    public void testIncrementalInstrumentationInstrumentsChangedClassesOnly() {
+        generator.setIncrementalInstrumentation(true);
+        assertXPathResult("changed-classes-example.org~lib~dc1",
+            "/project/target[@name='instrument-changed-example.org~lib~dc1']/cobertura-instrument/fileset/@refid");
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.netweaver.cobertura.BuildFileGenerator#evaluateContext(org.arachna.netweaver.dc.types.DevelopmentComponent, java.io.Writer)}
+     * .
+     */
+    @Test
+    public void testCoberturaReportUsesDataFileWrittenByTests() {
+        assertXPathResult("${cobertura.datafile}", "/project/target[5]/coverage-report[1]/@datafile");
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.netweaver.cobertura.BuildFileGenerator#createBuildFile(DevelopmentComponent, java.util.Collection)}.
+     */
+    @Test
+    public void testEmptyManifestsSelectNoFiles() {
+        assertXPathResult("**", "/project/patternset[@id='tests-example.org~lib~dc1']/exclude/@name");
+        assertXPathResult("resources-example.org~lib~dc1", "/project/target[@name='copy']/sync-resources/fileset/patternset/@refid");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setSkipHtmlReport(boolean)}.
+     */
+    @Test
+    public void testSkipHtmlReport() {
+        generator.setSkipHtmlReport(true);
+        assertXPathResult("false", "/project/target[5]/coverage-report[1]/@html");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setTestSelection(boolean)}.
+     */
+    @Test
+    public void testTestSelectionRunsSelectedTestsOnly() {
+        generator.setTestSelection(true);
+        assertXPathResult("true",
+            "/project/target[4]/junit[1]/batchtest[1]/fileset[1]/@refid = /project/target[4]/select-tests[1]/@refid");
+        assertXPathResult("${cobertura.state.dir}/tests.fingerprints", "/project/target[4]/move[1]/@tofile");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setForkMode(String)}.
+     */
+    @Test
+    public void testTestsRunInAntJvmByDefault() {
+        assertXPathResult("no", "/project/target[4]/junit[1]/@fork");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setForkMode(String)}.
+     */
+    @Test
+    public void testWarmForkModeRunsTestsWithSharedRuntime() {
+        generator.setForkMode(BuildFileGenerator.FORK_MODE_WARM);
+        assertXPathResult("0", "count(/project/target[4]/junit)");
+        assertXPathResult("cobertura.loader", "/project/target[4]/test-runner[1]/@loaderref");
+        assertXPathResult("${cobertura.datafile}", "/project/target[4]/test-runner[1]/@datafile");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setForkMode(String)}.
+     */
+    @Test
+    public void testWarmForkModePassesJunitTimeoutToTestRunner() {
+        createBuildFileGenerator(1);
+        generator.setForkMode(BuildFileGenerator.FORK_MODE_WARM);
+        assertXPathResult("1", "/project/target[4]/test-runner[1]/@timeout");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setSingleAntProcess(boolean)}.
+     */
+    @Test
+    public void testTestsAreForkedWhenReportRunsInSameAntProcess() {
+        generator.setSingleAntProcess(true);
+        assertXPathResult("yes", "/project/target[4]/junit/@fork");
+        assertXPathResult("once", "/project/target[4]/junit/@forkmode");
+        assertXPathResult("run-tests-example.org~lib~dc1, cobertura-report-example.org~lib~dc1",
+            "/project/target[@name='coverage-example.org~lib~dc1']/@depends");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setSingleAntProcess(boolean)}.
+     */
+    @Test
+    public void testWarmTestRunnerSavesCoverageDataBeforeReportInSameAntProcess() {
+        generator.setSingleAntProcess(true);
+        generator.setForkMode(BuildFileGenerator.FORK_MODE_WARM);
+        assertXPathResult("0", "count(/project/target[4]/junit)");
+        assertXPathResult("${cobertura.datafile}", "/project/target[4]/test-runner[1]/@datafile");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setForks(int)}.
+     */
+    @Test
+    public void testForksSplitTestsAcrossJvms() {
+        generator.setForks(2);
+        generator.setJvmArgs("-Xmx1g");
+        assertXPathResult("2", "count(/project/target[4]/parallel[1]/junit[@fork = 'yes' and jvmarg/@line = '-Xmx1g'])");
+        assertXPathResult("${cobertura.datafile}", "/project/target[4]/cobertura-merge[1]/@datafile");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#setCoverageEngine(String)}.
+     */
+    @Test
+    public void testCoverageAgentRunsTestsWithoutInstrumentation() {
+        generator.setCoverageEngine(BuildFileGenerator.COVERAGE_ENGINE_AGENT);
+        generator.setIncrementalInstrumentation(true);
+        assertXPathResult("0", "count(/project/target[starts-with(@name, 'instrument')])");
+        assertXPathResult("compile-example.org~lib~dc1, copy", "/project/target[@name='run-tests-example.org~lib~dc1']/@depends");
+        assertXPathResult("yes", "/project/target[@name='run-tests-example.org~lib~dc1']/junit/@fork");
+        assertXPathResult("0", "count(//classpath[@location='${instrumented.dir}'])");
+        assertXPathResult("${cobertura.datafile}",
+            "/project/target[@name='run-tests-example.org~lib~dc1']/convert-execution-data/@datafile");
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#createAgentIncludes(Collection)}.
+     */
+    @Test
+    public void testAgentIncludesPackagesOfJavaSources() {
+        assertThat(BuildFileGenerator.createAgentIncludes(Arrays.asList("org/example/A.java", "org/example/impl/B.java",
+            "org/examples/C.java", "com/example/DTest.java")), equalTo("com.example.*:org.example.*:org.examples.*"));
+        assertThat(BuildFileGenerator.createAgentIncludes(Arrays.asList("org/example/A.java", "Default.java")), equalTo("*"));
+    }
+
     @Test
     public void testExecute() {
         final DevelopmentComponent component = dcFactory.get(VENDOR, SAMPLE_DC1);
@@ -226,11 +407,192 @@ public class BuildFileGeneratorTest extends XMLTestCase {
             equalTo(buildFiles.get(component)));
     }
 
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#execute(Collection, ExecutorService)}.
+     */
+    @Test
+    public void testExecuteInParallel() throws InterruptedException {
+        final DevelopmentComponent component = dcFactory.get(VENDOR, SAMPLE_DC1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final Map<DevelopmentComponent, String> buildFiles = generator.execute(Arrays.asList(component), executor);
+
+            assertThat(String.format("%s/cobertura-build.xml", antHelper.getBaseLocation(component)),
+                equalTo(buildFiles.get(component)));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#groupByDependencies(Collection)}.
+     */
+    @Test
+    public void testGroupByDependencies() {
+        final DevelopmentComponent component = dcFactory.get(VENDOR, SAMPLE_DC1);
+        final DevelopmentComponent securityApi = dcFactory.get("sap.com", "sap.com.security.api.sda");
+        final List<List<DevelopmentComponent>> levels = generator.groupByDependencies(Arrays.asList(component, securityApi));
+
+        assertThat(levels.size(), equalTo(2));
+        assertThat(levels.get(0).get(0), equalTo(securityApi));
+        assertThat(levels.get(1).get(0), equalTo(component));
+    }
+
+    /**
+     * Test method for {@link org.arachna.netweaver.cobertura.BuildFileGenerator#createAggregateBuildFile(Map, String, int)}.
+     */
+    @Test
+    public void testAggregateBuildFileRunsDependentComponentsInLaterLevel() throws XpathException, SAXException, IOException {
+        final Map<DevelopmentComponent, String> buildFiles = new LinkedHashMap<DevelopmentComponent, String>();
+        buildFiles.put(dcFactory.get(VENDOR, SAMPLE_DC1), "dc1/cobertura-build.xml");
+        buildFiles.put(dcFactory.get("sap.com", "sap.com.security.api.sda"), "api/cobertura-build.xml");
+        generator.createAggregateBuildFile(buildFiles, WORKSPACE + "/cobertura-aggregate-build.xml", 4);
+        final String buildFile = writerFactory.getContent();
+
+        assertXpathEvaluatesTo("level-1, level-2", "/project/target[3]/@depends", buildFile);
+        assertXpathEvaluatesTo("4", "/project/target[1]/parallel/@threadCount", buildFile);
+        assertXpathEvaluatesTo("api/cobertura-build.xml", "/project/target[1]/parallel/subant/filelist/@files", buildFile);
+        assertXpathEvaluatesTo("coverage-example.org~lib~dc1", "/project/target[2]/parallel/subant/@target", buildFile);
+    }
+
+    /**
+     * Test method for {@link BuildFileGenerator.UpdatingFileWriter#close()}.
+     * 
+     * @throws IOException
+     *             when writing the build file failed
+     */
+    @Test
+    public void testUpdatingFileWriterKeepsUnchangedBuildFile() throws IOException {
+        final File buildFile = createTempBuildFile();
+
+        try {
+            writeBuildFile(buildFile, "<project />");
+            buildFile.setLastModified(1000000000L);
+            writeBuildFile(buildFile, "<project />");
+
+            assertThat(buildFile.lastModified(), equalTo(1000000000L));
+            assertThat(readBuildFile(buildFile), equalTo("<project />"));
+        }
+        finally {
+            deleteTempBuildFile(buildFile);
+        }
+    }
+
+    /**
+     * Test method for {@link BuildFileGenerator.UpdatingFileWriter#close()}.
+     * 
+     * @throws IOException
+     *             when writing the build file failed
+     */
+    @Test
+    public void testUpdatingFileWriterReplacesChangedBuildFile() throws IOException {
+        final File buildFile = createTempBuildFile();
+
+        try {
+            writeBuildFile(buildFile, "<project />");
+            writeBuildFile(buildFile, "<project default=\"coverage\" />");
+
+            assertThat(readBuildFile(buildFile), equalTo("<project default=\"coverage\" />"));
+            assertThat(new File(buildFile.getParentFile(), buildFile.getName() + ".tmp").exists(), equalTo(false));
+        }
+        finally {
+            deleteTempBuildFile(buildFile);
+        }
+    }
+
+    /**
+     * Test method for {@link BuildFileGenerator.UpdatingFileWriter#close()}.
+     * 
+     * @throws IOException
+     *             when writing the build file failed
+     */
+    @Test
+    public void testUpdatingFileWriterCreatesNewBuildFileEvenWhenEmpty() throws IOException {
+        final File buildFile = createTempBuildFile();
+
+        try {
+            writeBuildFile(buildFile, "");
+
+            assertThat(buildFile.isFile(), equalTo(true));
+            assertThat(buildFile.length(), equalTo(0L));
+        }
+        finally {
+            deleteTempBuildFile(buildFile);
+        }
+    }
+
+    /**
+     * Returns a build file in a new temporary folder. The build file does not exist yet.
+     * 
+     * @return a build file in a new temporary folder
+     * @throws IOException
+     *             when the temporary folder could not be created
+     */
+    private File createTempBuildFile() throws IOException {
+        final File folder = File.createTempFile("build-file", "");
+        folder.delete();
+        folder.mkdirs();
+
+        return new File(folder, "cobertura-build.xml");
+    }
+
+    /**
+     * Delete the given build file and its temporary folder.
+     * 
+     * @param buildFile
+     *            build file to delete
+     */
+    private void deleteTempBuildFile(final File buildFile) {
+        buildFile.delete();
+        buildFile.getParentFile().delete();
+    }
+
+    /**
+     * Write the given content into the given build file using an {@link BuildFileGenerator.UpdatingFileWriter}.
+     * 
+     * @param buildFile
+     *            build file to write
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             when writing the build file failed
+     */
+    private void writeBuildFile(final File buildFile, final String content) throws IOException {
+        final Writer writer = new BuildFileGenerator.UpdatingFileWriter(buildFile);
+        writer.write(content);
+        writer.close();
+    }
+
+    /**
+     * Read the content of the given build file.
+     * 
+     * @param buildFile
+     *            build file to read
+     * @return the content of the build file
+     * @throws IOException
+     *             when reading the build file failed
+     */
+    private String readBuildFile(final File buildFile) throws IOException {
+        final byte[] content = new byte[(int)buildFile.length()];
+        final DataInputStream in = new DataInputStream(new FileInputStream(buildFile));
+
+        try {
+            in.readFully(content);
+        }
+        finally {
+            in.close();
+        }
+
+        return new String(content, "UTF-8");
+    }
+
     /**
      * 
      */
     protected void createBuildFileGenerator(final int timeout) {
-        generator = new TestBuildFileGenerator(antHelper, new VelocityEngine(), "UTF-8", "", timeout);
+        generator = new TestBuildFileGenerator(antHelper, "UTF-8", "", timeout);
         writerFactory = new RecordingBuildFileWriterFactory();
         generator.setWriterFactory(writerFactory);
     }
@@ -293,9 +655,9 @@ public class BuildFileGeneratorTest extends XMLTestCase {
      */
     private class TestBuildFileGenerator extends BuildFileGenerator {
 
-        TestBuildFileGenerator(final AntHelper antHelper, final VelocityEngine engine, final String encoding,
-            final String coberturaDir, final int junitTimeOut) {
-            super(antHelper, engine, encoding, coberturaDir, junitTimeOut);
+        TestBuildFileGenerator(final AntHelper antHelper, final String encoding, final String coberturaDir,
+            final int junitTimeOut) {
+            super(antHelper, encoding, coberturaDir, junitTimeOut);
         }
 
         @Override
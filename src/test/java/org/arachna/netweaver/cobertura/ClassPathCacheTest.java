@@ -0,0 +1,256 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.arachna.ant.AntHelper;
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.arachna.netweaver.dc.types.PublicPart;
+import org.arachna.netweaver.dc.types.PublicPartReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link ClassPathCache}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class ClassPathCacheTest {
+    /**
+     * number of threads accessing the cache concurrently.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * number of times a class path was resolved by the {@link AntHelper}.
+     */
+    private final AtomicInteger resolved = new AtomicInteger();
+
+    /**
+     * folder containing the class path archives.
+     */
+    private File folder;
+
+    /**
+     * development component to resolve the class path for.
+     */
+    private DevelopmentComponent component;
+
+    /**
+     * instance under test.
+     */
+    private ClassPathCache cache;
+
+    /**
+     * Create the cache using an {@link AntHelper} counting the resolved class paths.
+     * 
+     * @throws IOException
+     *             when the folder for the archives could not be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("class-path-cache", "");
+        folder.delete();
+        folder.mkdirs();
+
+        final DevelopmentComponentFactory dcFactory = new DevelopmentComponentFactory();
+        component = dcFactory.create("example.org", "lib/dc1", new PublicPart[] {}, new PublicPartReference[] {});
+        cache = new ClassPathCache(new AntHelper(folder.getAbsolutePath(), dcFactory) {
+            @Override
+            public Set<String> createClassPath(final DevelopmentComponent component) {
+                resolved.incrementAndGet();
+
+                return new HashSet<String>(Arrays.asList(folder.getAbsolutePath()));
+            }
+        });
+    }
+
+    /**
+     * Remove the folder containing the class path archives.
+     */
+    @After
+    public void tearDown() {
+        for (final File file : folder.listFiles()) {
+            file.delete();
+        }
+
+        folder.delete();
+    }
+
+    /**
+     * Test method for {@link ClassPathCache#getClassPath(DevelopmentComponent)}.
+     */
+    @Test
+    public void testClassPathIsResolvedOnlyOnce() {
+        final Set<String> classPath = cache.getClassPath(component);
+
+        assertThat(cache.getClassPath(component) == classPath, equalTo(true));
+        assertThat(resolved.get(), equalTo(1));
+    }
+
+    /**
+     * Test method for {@link ClassPathCache#invalidate()}.
+     */
+    @Test
+    public void testInvalidateResolvesClassPathAgain() {
+        cache.getClassPath(component);
+        cache.invalidate();
+        cache.getClassPath(component);
+
+        assertThat(resolved.get(), equalTo(2));
+    }
+
+    /**
+     * Test method for {@link ClassPathCache#getClassPath(DevelopmentComponent)}.
+     * 
+     * @throws Exception
+     *             when a thread accessing the cache failed
+     */
+    @Test
+    public void testConcurrentFirstAccessReturnsSameClassPath() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<Set<String>>> results = new ArrayList<Future<Set<String>>>();
+
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws InterruptedException {
+                        start.await();
+
+                        return cache.getClassPath(component);
+                    }
+                }));
+            }
+
+            start.countDown();
+
+            final Set<String> classPath = results.get(0).get();
+
+            for (final Future<Set<String>> result : results) {
+                assertThat(result.get() == classPath, equalTo(true));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertThat(cache.getClassPath(component) == results.get(0).get(), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link ClassPathCache#containsJUnit(String)} and {@link ClassPathCache#invalidate()}.
+     * 
+     * @throws IOException
+     *             when writing the archive failed
+     */
+    @Test
+    public void testJUnitLookupIsCachedUntilInvalidated() throws IOException {
+        final File junit = new File(folder, "junit-4.8.2.jar");
+        write(junit, "junit");
+
+        assertThat(cache.containsJUnit(folder.getAbsolutePath()), equalTo(true));
+
+        junit.delete();
+        assertThat(cache.containsJUnit(folder.getAbsolutePath()), equalTo(true));
+
+        cache.invalidate();
+        assertThat(cache.containsJUnit(folder.getAbsolutePath()), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link ClassPathCache#addClassPath(Fingerprint, java.util.Collection)}.
+     * 
+     * @throws IOException
+     *             when writing or reading the archive failed
+     */
+    @Test
+    public void testRebuiltArchiveChangesFingerprint() throws IOException {
+        final File archive = new File(folder, "api.jar");
+        write(archive, "version 1");
+        final String before = fingerprint();
+
+        write(archive, "version 22");
+
+        assertThat(fingerprint().equals(before), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link ClassPathCache#addClassPath(Fingerprint, java.util.Collection)} and {@link ClassPathCache#invalidate()}.
+     * 
+     * @throws IOException
+     *             when writing or reading the archive failed
+     */
+    @Test
+    public void testArchiveFingerprintIsCachedUntilInvalidated() throws IOException {
+        final File archive = new File(folder, "api.jar");
+        write(archive, "version 1");
+        final long lastModified = archive.lastModified();
+        final String before = fingerprint();
+
+        // same size and modification time: the cached fingerprint of the archive is used
+        write(archive, "version 2");
+        archive.setLastModified(lastModified);
+        assertThat(fingerprint(), equalTo(before));
+
+        cache.invalidate();
+        assertThat(fingerprint().equals(before), equalTo(false));
+    }
+
+    /**
+     * Compute the fingerprint of the class path of the development component.
+     * 
+     * @return the fingerprint of the class path
+     * @throws IOException
+     *             when reading an archive failed
+     */
+    private String fingerprint() throws IOException {
+        final Fingerprint fingerprint = new Fingerprint();
+        cache.addClassPath(fingerprint, cache.getClassPath(component));
+
+        return fingerprint.getValue();
+    }
+
+    /**
+     * Write the given content into the given file.
+     * 
+     * @param file
+     *            file to write
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             when writing the file failed
+     */
+    private void write(final File file, final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+}
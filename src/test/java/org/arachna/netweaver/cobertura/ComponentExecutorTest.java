@@ -0,0 +1,226 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.arachna.netweaver.cobertura.ComponentExecutor.ComponentTask;
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.arachna.netweaver.dc.types.PublicPart;
+import org.arachna.netweaver.dc.types.PublicPartReference;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link ComponentExecutor}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class ComponentExecutorTest {
+    /**
+     * number of development components to process.
+     */
+    private static final int COMPONENTS = 3;
+
+    /**
+     * mapping of development components to their build files.
+     */
+    private final Map<DevelopmentComponent, String> buildFiles = new LinkedHashMap<DevelopmentComponent, String>();
+
+    /**
+     * build files processed by the task.
+     */
+    private final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * the build log.
+     */
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+    /**
+     * listener writing into the build log.
+     */
+    private BuildListener listener;
+
+    /**
+     * Create the development components and their build files.
+     */
+    @Before
+    public void setUp() {
+        final DevelopmentComponentFactory factory = new DevelopmentComponentFactory();
+
+        for (int i = 1; i <= COMPONENTS; i++) {
+            buildFiles.put(factory.create("example.org", "dc" + i, new PublicPart[] {}, new PublicPartReference[] {}), "build" + i
+                + ".xml");
+        }
+
+        listener = new StreamBuildListener(log, Charset.defaultCharset());
+    }
+
+    /**
+     * Test method for {@link ComponentExecutor#execute(Map, BuildListener, ComponentTask)}.
+     * 
+     * @throws Exception
+     *             when executing the tasks failed
+     */
+    @Test
+    public void testSequentialExecutionKeepsOrder() throws Exception {
+        final boolean result = new ComponentExecutor(1).execute(buildFiles, listener, new RecordingTask(null));
+
+        assertThat(result, equalTo(true));
+        assertThat(processed, equalTo(Arrays.asList("build1.xml", "build2.xml", "build3.xml")));
+    }
+
+    /**
+     * Test method for {@link ComponentExecutor#execute(Map, BuildListener, ComponentTask)}.
+     * 
+     * @throws Exception
+     *             when executing the tasks failed
+     */
+    @Test
+    public void testParallelOutputIsWrittenAsOneBlockPerComponent() throws Exception {
+        // all tasks have started before any of them finishes, so their output would interleave without buffering
+        final CountDownLatch started = new CountDownLatch(COMPONENTS);
+
+        final boolean result = new ComponentExecutor(COMPONENTS).execute(buildFiles, listener, new ComponentTask() {
+            @Override
+            public boolean execute(final DevelopmentComponent component, final String buildFile,
+                final BuildListener componentListener) throws InterruptedException, IOException {
+                componentListener.getLogger().println("start " + buildFile);
+                started.countDown();
+                started.await(10, TimeUnit.SECONDS);
+                componentListener.getLogger().println("end " + buildFile);
+
+                return true;
+            }
+        });
+
+        assertThat(result, equalTo(true));
+
+        final List<String> lines = Arrays.asList(log.toString().split("\\r?\\n"));
+        assertThat(lines.size(), equalTo(COMPONENTS * 3));
+
+        for (int i = 1; i <= COMPONENTS; i++) {
+            final int header = lines.indexOf(String.format("[example.org:dc%d] SUCCESS", i));
+            assertThat(header >= 0, equalTo(true));
+            assertThat(lines.get(header + 1), equalTo(String.format("start build%d.xml", i)));
+            assertThat(lines.get(header + 2), equalTo(String.format("end build%d.xml", i)));
+        }
+    }
+
+    /**
+     * Test method for {@link ComponentExecutor#execute(Map, BuildListener, ComponentTask)}.
+     * 
+     * @throws Exception
+     *             when executing the tasks failed
+     */
+    @Test
+    public void testFailFastSkipsComponentsNotYetStarted() throws Exception {
+        final ComponentExecutor executor = new ComponentExecutor(1);
+        executor.setFailFast(true);
+
+        final boolean result = executor.execute(buildFiles, listener, new RecordingTask("build2.xml"));
+
+        assertThat(result, equalTo(false));
+        assertThat(processed, equalTo(Arrays.asList("build1.xml", "build2.xml")));
+        assertThat(log.toString().contains("[example.org:dc3] SKIPPED"), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link ComponentExecutor#execute(Map, BuildListener, ComponentTask)}.
+     * 
+     * @throws Exception
+     *             when executing the tasks failed
+     */
+    @Test
+    public void testWithoutFailFastAllComponentsAreProcessed() throws Exception {
+        final boolean result = new ComponentExecutor(1).execute(buildFiles, listener, new RecordingTask("build2.xml"));
+
+        assertThat(result, equalTo(false));
+        assertThat(processed, equalTo(Arrays.asList("build1.xml", "build2.xml", "build3.xml")));
+    }
+
+    /**
+     * Test method for {@link ComponentExecutor#execute(Map, BuildListener, ComponentTask)}.
+     * 
+     * @throws Exception
+     *             when executing the tasks failed
+     */
+    @Test
+    public void testExceptionOfParallelTaskIsPropagated() throws Exception {
+        try {
+            new ComponentExecutor(COMPONENTS).execute(buildFiles, listener, new ComponentTask() {
+                @Override
+                public boolean execute(final DevelopmentComponent component, final String buildFile,
+                    final BuildListener componentListener) throws InterruptedException, IOException {
+                    componentListener.getLogger().println("running " + buildFile);
+
+                    if ("build2.xml".equals(buildFile)) {
+                        throw new IOException("ant failed");
+                    }
+
+                    return true;
+                }
+            });
+            fail("IOException expected");
+        }
+        catch (final IOException e) {
+            assertThat(e.getMessage(), equalTo("ant failed"));
+        }
+
+        // the output of the failed development component is written nevertheless
+        assertThat(log.toString().contains("[example.org:dc2] FAILURE"), equalTo(true));
+        assertThat(log.toString().contains("running build2.xml"), equalTo(true));
+    }
+
+    /**
+     * Task recording the build files it processed.
+     * 
+     * @author Dirk Weigenand
+     */
+    private final class RecordingTask implements ComponentTask {
+        /**
+         * build file the task fails for (<code>null</code> when it should succeed for all).
+         */
+        private final String failingBuildFile;
+
+        /**
+         * Create a task recording the build files it processed.
+         * 
+         * @param failingBuildFile
+         *            build file the task fails for (<code>null</code> when it should succeed for all)
+         */
+        RecordingTask(final String failingBuildFile) {
+            this.failingBuildFile = failingBuildFile;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean execute(final DevelopmentComponent component, final String buildFile,
+            final BuildListener componentListener) throws InterruptedException, IOException {
+            processed.add(buildFile);
+
+            return !buildFile.equals(failingBuildFile);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.arachna.netweaver.dc.types.PublicPart;
+import org.arachna.netweaver.dc.types.PublicPartReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link CoverageAggregator}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class CoverageAggregatorTest {
+    /**
+     * folder containing the data files.
+     */
+    private File folder;
+
+    /**
+     * development component whose tests ran successfully.
+     */
+    private DevelopmentComponent completed;
+
+    /**
+     * development component whose tests failed.
+     */
+    private DevelopmentComponent failed;
+
+    /**
+     * Create the data files of a completed and a failed development component.
+     * 
+     * @throws IOException
+     *             when the folder for the data files could not be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("aggregator", "");
+        folder.delete();
+        folder.mkdirs();
+
+        final DevelopmentComponentFactory factory = new DevelopmentComponentFactory();
+        completed = factory.create("example.org", "lib/dc1", new PublicPart[] {}, new PublicPartReference[] {});
+        failed = factory.create("example.org", "lib/dc2", new PublicPart[] {}, new PublicPartReference[] {});
+        writeDataFile("dc1.ser", "org.example.A");
+        writeDataFile("dc2.ser", "org.example.B");
+    }
+
+    /**
+     * Remove the folder containing the data files.
+     */
+    @After
+    public void tearDown() {
+        for (final File file : folder.listFiles()) {
+            file.delete();
+        }
+
+        folder.delete();
+    }
+
+    /**
+     * Test method for {@link CoverageAggregator#add(DevelopmentComponent, File, java.util.Collection)}.
+     */
+    @Test
+    public void testMergesDataFilesOfCompletedComponentsOnly() {
+        final CoverageAggregator aggregator = new CoverageAggregator(Arrays.asList(completed));
+
+        assertThat(aggregator.add(completed, new File(folder, "dc1.ser"), Collections.<String> emptyList()), equalTo(true));
+        assertThat(aggregator.add(failed, new File(folder, "dc2.ser"), Collections.<String> emptyList()), equalTo(false));
+        assertThat(aggregator.getDataFiles(), equalTo(1));
+        assertThat(aggregator.getProjectData().getClassData("org.example.A") != null, equalTo(true));
+        assertThat(aggregator.getProjectData().getClassData("org.example.B") == null, equalTo(true));
+    }
+
+    /**
+     * Test method for {@link CoverageAggregator#add(DevelopmentComponent, File, java.util.Collection)}.
+     */
+    @Test
+    public void testMissingDataFileOfCompletedComponentIsSkipped() {
+        final CoverageAggregator aggregator = new CoverageAggregator(Arrays.asList(completed));
+
+        assertThat(aggregator.add(completed, new File(folder, "missing.ser"), Collections.<String> emptyList()), equalTo(false));
+        assertThat(aggregator.getDataFiles(), equalTo(0));
+    }
+
+    /**
+     * Write a data file containing a class with one covered line.
+     * 
+     * @param name
+     *            name of the data file
+     * @param className
+     *            name of the class
+     */
+    private void writeDataFile(final String name, final String className) {
+        final ProjectData data = new ProjectData();
+        final ClassData classData = new ClassData(className);
+        classData.addLine(1, "m", "()V");
+        classData.touch(1, 1);
+        data.addClassData(classData);
+        CoverageDataFileHandler.saveCoverageData(data, new File(folder, name));
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link CoverageReports}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class CoverageReportsTest {
+    /**
+     * a coverage report with one covered line.
+     */
+    private static final String REPORT = "<?xml version=\"1.0\"?>\n<coverage><packages><package name=\"org.example\"><classes>"
+        + "<class name=\"org.example.A\" filename=\"org/example/A.java\"><methods/><lines>"
+        + "<line number=\"1\" hits=\"1\" branch=\"false\"/></lines></class></classes></package></packages></coverage>\n";
+
+    /**
+     * development component the report belongs to.
+     */
+    private DevelopmentComponent component;
+
+    /**
+     * the coverage report of the development component.
+     */
+    private File report;
+
+    /**
+     * Write the example coverage report.
+     * 
+     * @throws IOException
+     *             when the report could not be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        component = new DevelopmentComponentFactory().create("example.org", "lib/util");
+        report = File.createTempFile("coverage", ".xml");
+        final OutputStream out = new FileOutputStream(report);
+
+        try {
+            out.write(REPORT.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Remove the example coverage report.
+     */
+    @After
+    public void tearDown() {
+        report.delete();
+    }
+
+    /**
+     * Test method for {@link CoverageReports#get(DevelopmentComponent, File)}.
+     * 
+     * @throws IOException
+     *             when the report could not be read
+     */
+    @Test
+    public void testReportIsReadOnlyOnce() throws IOException {
+        final CoverageReports reports = new CoverageReports();
+        final CoverageModel model = reports.get(component, report);
+        report.delete();
+
+        assertThat(model.getLineRate(), equalTo(1d));
+        assertThat(reports.get(component, report) == model, equalTo(true));
+    }
+
+    /**
+     * Test method for {@link CoverageReports#get(DevelopmentComponent, File)}.
+     * 
+     * @throws IOException
+     *             when the report could not be read
+     */
+    @Test
+    public void testMissingReport() throws IOException {
+        assertThat(new CoverageReports().get(component, new File(report.getAbsolutePath() + ".missing")) == null, equalTo(true));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link CoverageThresholds}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class CoverageThresholdsTest {
+    /**
+     * a coverage report with a line coverage of 75% and a branch coverage of 50%.
+     */
+    private static final String REPORT = "<?xml version=\"1.0\"?>\n<coverage><packages><package name=\"org.example\"><classes>"
+        + "<class name=\"org.example.A\" filename=\"org/example/A.java\"><methods/><lines>"
+        + "<line number=\"1\" hits=\"1\" branch=\"false\"/><line number=\"2\" hits=\"1\" branch=\"false\"/>"
+        + "<line number=\"3\" hits=\"0\" branch=\"false\"/>"
+        + "<line number=\"4\" hits=\"1\" branch=\"true\" condition-coverage=\"50% (1/2)\"/>"
+        + "</lines></class></classes></package></packages></coverage>\n";
+
+    /**
+     * development component to check.
+     */
+    private DevelopmentComponent component;
+
+    /**
+     * the coverage report of the development component.
+     */
+    private File report;
+
+    /**
+     * the coverage read from the report.
+     */
+    private CoverageModel model;
+
+    /**
+     * logger for violated thresholds.
+     */
+    private final PrintStream logger = new PrintStream(new ByteArrayOutputStream());
+
+    /**
+     * Write and read the example coverage report.
+     * 
+     * @throws IOException
+     *             when the report could not be written or read
+     */
+    @Before
+    public void setUp() throws IOException {
+        component = new DevelopmentComponentFactory().create("example.org", "lib/util");
+        report = File.createTempFile("coverage", ".xml");
+        final OutputStream out = new FileOutputStream(report);
+
+        try {
+            out.write(REPORT.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+
+        model = new CoverageXmlReader().read(report);
+    }
+
+    /**
+     * Remove the example coverage report.
+     */
+    @After
+    public void tearDown() {
+        report.delete();
+    }
+
+    /**
+     * Test method for {@link CoverageThresholds#check(DevelopmentComponent, CoverageModel, PrintStream)}.
+     */
+    @Test
+    public void testGlobalThresholds() {
+        assertThat(new CoverageThresholds(75, 50, null).check(component, model, logger), equalTo(true));
+        assertThat(new CoverageThresholds(80, 0, null).check(component, model, logger), equalTo(false));
+        assertThat(new CoverageThresholds(0, 60, null).check(component, model, logger), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link CoverageThresholds#check(DevelopmentComponent, CoverageModel, PrintStream)}.
+     */
+    @Test
+    public void testOverrideReplacesGlobalThresholds() {
+        final CoverageThresholds thresholds =
+            new CoverageThresholds(90, 90, "# relaxed for legacy code\nexample.org:lib/util=70,40\nexample.org:other=10");
+
+        assertThat(thresholds.check(component, model, logger), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link CoverageThresholds#check(DevelopmentComponent, CoverageModel, PrintStream)}.
+     */
+    @Test
+    public void testMissingReportDoesNotReachThresholds() {
+        assertThat(new CoverageThresholds(10, 0, "").check(component, null, logger), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link CoverageThresholds#CoverageThresholds(int, int, String)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidOverride() {
+        new CoverageThresholds(0, 0, "example.org:lib/util=many");
+    }
+}
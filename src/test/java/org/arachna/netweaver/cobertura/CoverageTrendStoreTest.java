@@ -0,0 +1,243 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import org.arachna.netweaver.cobertura.CoverageTrendStore.Build;
+import org.arachna.netweaver.cobertura.CoverageTrendStore.Entry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link CoverageTrendStore}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class CoverageTrendStoreTest {
+    /**
+     * file containing the store.
+     */
+    private File file;
+
+    /**
+     * instance under test.
+     */
+    private CoverageTrendStore store;
+
+    /**
+     * Create a store in a temporary file.
+     * 
+     * @throws IOException
+     *             when the temporary file could not be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("coverage-trend", ".dat");
+        file.delete();
+        store = new CoverageTrendStore(file);
+    }
+
+    /**
+     * Remove the file containing the store.
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Test method for {@link CoverageTrendStore#readTotals()}.
+     * 
+     * @throws IOException
+     *             when reading the store failed
+     */
+    @Test
+    public void testReadTotalsOfMissingStore() throws IOException {
+        assertThat(store.readTotals().isEmpty(), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link CoverageTrendStore#append(int, long, java.util.Collection)} and {@link CoverageTrendStore#readAll()}.
+     * 
+     * @throws IOException
+     *             when reading or writing the store failed
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        appendBuilds();
+
+        final List<Build> builds = store.readAll();
+        assertThat(builds.size(), equalTo(2));
+        assertBuild(builds.get(0), 1, 1000L, 30, 20);
+        assertBuild(builds.get(1), 2, 2000L, 34, 25);
+
+        final Entry entry = builds.get(1).getEntries().get(1);
+        assertThat(entry.getComponent(), equalTo("example.org:dc1"));
+        assertThat(entry.getPackageName(), equalTo("org.example.util"));
+        assertThat(entry.getLinesValid(), equalTo(24));
+        assertThat(entry.getLinesCovered(), equalTo(20));
+        assertThat(entry.getBranchesValid(), equalTo(6));
+        assertThat(entry.getBranchesCovered(), equalTo(3));
+    }
+
+    /**
+     * Test method for {@link CoverageTrendStore#readTotals()}.
+     * 
+     * @throws IOException
+     *             when reading or writing the store failed
+     */
+    @Test
+    public void testReadTotalsSkipsEntries() throws IOException {
+        appendBuilds();
+
+        final List<Build> builds = store.readTotals();
+        assertThat(builds.size(), equalTo(2));
+        assertBuild(builds.get(1), 2, 2000L, 34, 25);
+        assertThat(builds.get(1).getEntries().isEmpty(), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link CoverageTrendStore#readTotals(int)}.
+     * 
+     * @throws IOException
+     *             when reading or writing the store failed
+     */
+    @Test
+    public void testReadTotalsWithEntriesOfLastBuildOnly() throws IOException {
+        appendBuilds();
+        store.append(3, 3000L, Arrays.asList(new Entry("example.org:dc2", "org.example", 10, 5, 0, 0)));
+
+        final List<Build> builds = store.readTotals(1);
+        assertThat(builds.size(), equalTo(3));
+        assertBuild(builds.get(1), 2, 2000L, 34, 25);
+        assertThat(builds.get(0).getEntries().isEmpty(), equalTo(true));
+        assertThat(builds.get(1).getEntries().isEmpty(), equalTo(true));
+        assertThat(builds.get(2).getEntries().size(), equalTo(1));
+        // the name of the entry was assigned after the names of the skipped builds
+        assertThat(builds.get(2).getEntries().get(0).getComponent(), equalTo("example.org:dc2"));
+        assertThat(builds.get(2).getEntries().get(0).getPackageName(), equalTo("org.example"));
+    }
+
+    /**
+     * Test method for {@link CoverageTrendStore#append(int, long, java.util.Collection)}.
+     * 
+     * @throws IOException
+     *             when reading or writing the store failed
+     */
+    @Test
+    public void testTruncatedRecordIsIgnoredAndOverwritten() throws IOException {
+        appendBuilds();
+        final RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+
+        try {
+            truncated.setLength(truncated.length() - 5);
+        }
+        finally {
+            truncated.close();
+        }
+
+        assertThat(store.readAll().size(), equalTo(1));
+        assertThat(store.readTotals().size(), equalTo(1));
+
+        store.append(3, 3000L, Arrays.asList(new Entry("example.org:dc2", "org.example", 10, 5, 0, 0)));
+
+        final List<Build> builds = store.readAll();
+        assertThat(builds.size(), equalTo(2));
+        assertBuild(builds.get(1), 3, 3000L, 10, 5);
+        assertThat(builds.get(1).getEntries().get(0).getComponent(), equalTo("example.org:dc2"));
+    }
+
+    /**
+     * Test method for {@link CoverageTrendStore#append(int, long, java.util.Collection)}.
+     * 
+     * @throws IOException
+     *             when reading or writing the store failed
+     */
+    @Test
+    public void testCorruptRecordIsIgnoredAndOverwritten() throws IOException {
+        appendBuilds();
+        final OutputStream out = new FileOutputStream(file, true);
+
+        try {
+            out.write(new byte[] { 'X', 1, 2, 3 });
+        }
+        finally {
+            out.close();
+        }
+
+        assertThat(store.readAll().size(), equalTo(2));
+
+        store.append(3, 3000L, Arrays.asList(new Entry("example.org:dc1", "org.example", 10, 10, 2, 2)));
+
+        final List<Build> builds = store.readAll();
+        assertThat(builds.size(), equalTo(3));
+        assertBuild(builds.get(2), 3, 3000L, 10, 10);
+    }
+
+    /**
+     * Test method for {@link CoverageTrendStore#readAll()}.
+     * 
+     * @throws IOException
+     *             when writing the store failed
+     */
+    @Test(expected = IOException.class)
+    public void testUnknownVersionIsRejected() throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(new byte[] { 0, 0, 0, 99 });
+        }
+        finally {
+            out.close();
+        }
+
+        store.readAll();
+    }
+
+    /**
+     * Append two builds of the development component <code>example.org:dc1</code>.
+     * 
+     * @throws IOException
+     *             when writing the store failed
+     */
+    private void appendBuilds() throws IOException {
+        store.append(1, 1000L, Arrays.asList(new Entry("example.org:dc1", "org.example", 10, 5, 4, 2), new Entry(
+            "example.org:dc1", "org.example.util", 20, 15, 6, 3)));
+        store.append(2, 2000L, Arrays.asList(new Entry("example.org:dc1", "org.example", 10, 5, 4, 2), new Entry(
+            "example.org:dc1", "org.example.util", 24, 20, 6, 3)));
+    }
+
+    /**
+     * Assert number, time and line totals of the given build.
+     * 
+     * @param build
+     *            build to check
+     * @param number
+     *            expected number of build
+     * @param timestamp
+     *            expected time of build
+     * @param linesValid
+     *            expected number of lines
+     * @param linesCovered
+     *            expected number of covered lines
+     */
+    private void assertBuild(final Build build, final int number, final long timestamp, final int linesValid,
+        final int linesCovered) {
+        assertThat(build.getNumber(), equalTo(number));
+        assertThat(build.getTimestamp(), equalTo(timestamp));
+        assertThat(build.getTotals().getLinesValid(), equalTo(linesValid));
+        assertThat(build.getTotals().getLinesCovered(), equalTo(linesCovered));
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import org.arachna.netweaver.cobertura.CoverageTrendStore.Entry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link CoverageTrendSummary}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class CoverageTrendSummaryTest {
+    /**
+     * file containing the store.
+     */
+    private File file;
+
+    /**
+     * store the summary is printed for.
+     */
+    private CoverageTrendStore store;
+
+    /**
+     * Create a store in a temporary file.
+     * 
+     * @throws IOException
+     *             when the temporary file could not be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("coverage-trend", ".dat");
+        file.delete();
+        store = new CoverageTrendStore(file);
+    }
+
+    /**
+     * Remove the file containing the store.
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Test method for {@link CoverageTrendSummary#print(PrintStream)}.
+     * 
+     * @throws IOException
+     *             when reading or writing the store failed
+     */
+    @Test
+    public void testPrintListsBuildsAndComponentsWithDecreasedCoverage() throws IOException {
+        store.append(1, 1000L, Arrays.asList(new Entry("example.org:dc1", "org.example", 10, 8, 0, 0), new Entry(
+            "example.org:dc2", "org.example", 10, 5, 0, 0)));
+        store.append(2, 2000L, Arrays.asList(new Entry("example.org:dc1", "org.example", 10, 6, 0, 0), new Entry(
+            "example.org:dc2", "org.example", 10, 7, 0, 0)));
+
+        final String summary = print();
+
+        assertThat(summary.contains("#1"), equalTo(true));
+        assertThat(summary.contains("#2"), equalTo(true));
+        assertThat(summary.contains("since build #1"), equalTo(true));
+        assertThat(summary.contains("example.org:dc1"), equalTo(true));
+        assertThat(summary.contains("example.org:dc2"), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link CoverageTrendSummary#print(PrintStream)}.
+     * 
+     * @throws IOException
+     *             when reading the store failed
+     */
+    @Test
+    public void testPrintWithoutBuildsPrintsNothing() throws IOException {
+        assertThat(print(), equalTo(""));
+    }
+
+    /**
+     * Print the summary of the store.
+     * 
+     * @return the printed summary
+     * @throws IOException
+     *             when reading the store failed
+     */
+    private String print() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PrintStream logger = new PrintStream(out, true, "UTF-8");
+        new CoverageTrendSummary(store).print(logger);
+        logger.close();
+
+        return out.toString("UTF-8");
+    }
+}
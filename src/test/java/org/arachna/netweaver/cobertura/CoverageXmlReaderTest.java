@@ -0,0 +1,97 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.arachna.netweaver.cobertura.CoverageModel.ClassCoverage;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link CoverageXmlReader}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class CoverageXmlReaderTest {
+    /**
+     * an example coverage report.
+     */
+    private static final String REPORT = "<?xml version=\"1.0\"?>\n"
+        + "<!DOCTYPE coverage SYSTEM \"http://cobertura.sourceforge.net/xml/coverage-04.dtd\">\n"
+        + "<coverage line-rate=\"0.75\" branch-rate=\"0.5\" version=\"1.9.4.1\" timestamp=\"0\">\n"
+        + "  <sources><source>/src/packages</source></sources>\n" + "  <packages>\n"
+        + "    <package name=\"org.example\" line-rate=\"0.75\" branch-rate=\"0.5\" complexity=\"1.0\">\n" + "      <classes>\n"
+        + "        <class name=\"org.example.A\" filename=\"org/example/A.java\" line-rate=\"0.5\" branch-rate=\"0.5\">\n"
+        + "          <methods>\n" + "            <method name=\"a\" signature=\"()V\" line-rate=\"0.5\" branch-rate=\"0.5\">\n"
+        + "              <lines><line number=\"3\" hits=\"2\" branch=\"false\"/></lines>\n" + "            </method>\n"
+        + "          </methods>\n" + "          <lines>\n" + "            <line number=\"3\" hits=\"2\" branch=\"false\"/>\n"
+        + "            <line number=\"4\" hits=\"0\" branch=\"true\" condition-coverage=\"50% (1/2)\">\n"
+        + "              <conditions><condition number=\"0\" type=\"jump\" coverage=\"50%\"/></conditions>\n"
+        + "            </line>\n" + "          </lines>\n" + "        </class>\n"
+        + "        <class name=\"org.example.B\" filename=\"org/example/B.java\" line-rate=\"1.0\" branch-rate=\"1.0\">\n"
+        + "          <methods/>\n" + "          <lines>\n" + "            <line number=\"7\" hits=\"1\" branch=\"false\"/>\n"
+        + "            <line number=\"8\" hits=\"5\" branch=\"false\"/>\n" + "          </lines>\n" + "        </class>\n"
+        + "      </classes>\n" + "    </package>\n" + "  </packages>\n" + "</coverage>\n";
+
+    /**
+     * the coverage model read from the example report.
+     */
+    private CoverageModel model;
+
+    /**
+     * Read the example report.
+     * 
+     * @throws XMLStreamException
+     *             when the example report could not be parsed
+     * @throws UnsupportedEncodingException
+     *             never
+     */
+    @Before
+    public void setUp() throws XMLStreamException, UnsupportedEncodingException {
+        model = new CoverageXmlReader().read(new ByteArrayInputStream(REPORT.getBytes("UTF-8")));
+    }
+
+    /**
+     * Test method for {@link CoverageXmlReader#read(java.io.InputStream)}.
+     */
+    @Test
+    public void testLinesOfMethodsAreNotCountedTwice() {
+        assertThat(model.getLinesValid(), equalTo(4));
+        assertThat(model.getLinesCovered(), equalTo(3));
+    }
+
+    /**
+     * Test method for {@link CoverageXmlReader#read(java.io.InputStream)}.
+     */
+    @Test
+    public void testBranchesAreReadFromConditionCoverage() {
+        final ClassCoverage clazz = model.getClasses().get(0);
+
+        assertThat(clazz.getLine(1), equalTo(4));
+        assertThat(clazz.getBranchesCovered(1), equalTo(1));
+        assertThat(clazz.getBranchesValid(1), equalTo(2));
+        assertThat(model.getBranchRate(), equalTo(0.5d));
+    }
+
+    /**
+     * Test method for {@link CoverageXmlReader#read(java.io.InputStream)}.
+     */
+    @Test
+    public void testPackageNamesAreShared() {
+        final ClassCoverage first = model.getClasses().get(0);
+        final ClassCoverage second = model.getClasses().get(1);
+
+        assertThat(first.getPackageName(), equalTo("org.example"));
+        assertThat(second.getPackageName(), sameInstance(first.getPackageName()));
+        assertThat(second.getFileName(), equalTo("org/example/B.java"));
+    }
+}
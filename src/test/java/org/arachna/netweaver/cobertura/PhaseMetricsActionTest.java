@@ -0,0 +1,78 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link PhaseMetricsAction}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class PhaseMetricsActionTest {
+    /**
+     * file written by the phase timer.
+     */
+    private File metricsFile;
+
+    /**
+     * Write a metrics file as the phase timer does.
+     * 
+     * @throws IOException
+     *             when the file could not be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        metricsFile = File.createTempFile("phase-metrics", ".txt");
+        final OutputStream out = new FileOutputStream(metricsFile);
+
+        try {
+            out.write("compile-example.org~dc\t120\t80\t4096\t2048\tfinished\nrun-tests-example.org~dc\t300\t-1\t-1\t-1\tfailed\ninvalid line\n"
+                .getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Remove the metrics file.
+     */
+    @After
+    public void tearDown() {
+        metricsFile.delete();
+    }
+
+    /**
+     * Test method for {@link PhaseMetricsAction#read(String, String, File)}.
+     * 
+     * @throws IOException
+     *             when reading the metrics file failed
+     */
+    @Test
+    public void testReadStripsComponentFromTargetNames() throws IOException {
+        final PhaseMetricsAction action = new PhaseMetricsAction();
+        action.read("example.org:dc", "-example.org~dc", metricsFile);
+
+        final List<PhaseMetricsAction.Phase> phases = action.getPhases();
+        assertThat(phases.size(), equalTo(2));
+        assertThat(phases.get(0).getName(), equalTo("compile"));
+        assertThat(phases.get(0).getCpuTime(), equalTo(80L));
+        assertThat(phases.get(0).getBytesRead(), equalTo(4096L));
+        assertThat(phases.get(1).getName(), equalTo("run-tests"));
+        assertThat(phases.get(1).getCpuTime(), equalTo(-1L));
+        assertThat(phases.get(1).isFailed(), equalTo(true));
+    }
+}
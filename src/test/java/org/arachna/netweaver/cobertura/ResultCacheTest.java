@@ -0,0 +1,273 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.arachna.ant.AntHelper;
+import org.arachna.netweaver.dc.types.DevelopmentComponent;
+import org.arachna.netweaver.dc.types.DevelopmentComponentFactory;
+import org.arachna.netweaver.dc.types.PublicPart;
+import org.arachna.netweaver.dc.types.PublicPartReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link ResultCache}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class ResultCacheTest {
+    /**
+     * folder containing the cache, sources, class path and log folder.
+     */
+    private File folder;
+
+    /**
+     * the build file generated for the development component.
+     */
+    private File buildFile;
+
+    /**
+     * source folder of the development component.
+     */
+    private File sourceDir;
+
+    /**
+     * class path folder of the development component.
+     */
+    private File classPathDir;
+
+    /**
+     * log folder of the development component.
+     */
+    private File logDir;
+
+    /**
+     * development component whose results are cached.
+     */
+    private DevelopmentComponent component;
+
+    /**
+     * instance under test.
+     */
+    private ResultCache cache;
+
+    /**
+     * Create the build file, sources, class path and results of a development component.
+     * 
+     * @throws IOException
+     *             when writing the files failed
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("result-cache", "");
+        folder.delete();
+        sourceDir = new File(folder, "src");
+        classPathDir = new File(folder, "lib");
+        logDir = new File(folder, "logs");
+        new File(logDir, "junit").mkdirs();
+        new File(logDir, "coveragereport").mkdirs();
+        sourceDir.mkdirs();
+        classPathDir.mkdirs();
+
+        buildFile = new File(folder, "cobertura-build.xml");
+        write(buildFile, "<project><junit fork=\"no\" /></project>");
+        write(new File(sourceDir, "A.java"), "public class A { }");
+        write(new File(classPathDir, "api.jar"), "api");
+        write(new File(logDir, "junit/TEST-ATest.xml"), "<testsuite tests=\"1\" />");
+        write(new File(logDir, "coveragereport/coverage.xml"), "<coverage />");
+        write(new File(logDir, "cobertura.ser"), "data");
+
+        component =
+            new DevelopmentComponentFactory().create("example.org", "lib/dc1", new PublicPart[] {}, new PublicPartReference[] {});
+        cache = new ResultCache(new File(folder, "cache"), new ClassPathCache(new AntHelper(folder.getAbsolutePath(), null)));
+    }
+
+    /**
+     * Remove the folder containing the cache, sources, class path and log folder.
+     */
+    @After
+    public void tearDown() {
+        delete(folder);
+    }
+
+    /**
+     * Test method for {@link ResultCache#restore(DevelopmentComponent, String, File)}.
+     * 
+     * @throws Exception
+     *             when accessing the cache failed
+     */
+    @Test
+    public void testRestoreStoredResultsIsHit() throws Exception {
+        final String key = createKey();
+        cache.store(component, key, logDir);
+        delete(logDir);
+
+        assertThat(cache.restore(component, createKey(), logDir), equalTo(true));
+        assertThat(read(new File(logDir, "junit/TEST-ATest.xml")), equalTo("<testsuite tests=\"1\" />"));
+        assertThat(read(new File(logDir, "coveragereport/coverage.xml")), equalTo("<coverage />"));
+        assertThat(read(new File(logDir, "cobertura.ser")), equalTo("data"));
+        assertThat(cache.getHits(), equalTo(1));
+        assertThat(cache.getMisses(), equalTo(0));
+    }
+
+    /**
+     * Test method for {@link ResultCache#restore(DevelopmentComponent, String, File)}.
+     * 
+     * @throws Exception
+     *             when accessing the cache failed
+     */
+    @Test
+    public void testRestoreWithoutEntryIsMiss() throws Exception {
+        assertThat(cache.restore(component, createKey(), logDir), equalTo(false));
+        assertThat(cache.getMisses(), equalTo(1));
+    }
+
+    /**
+     * Test method for {@link ResultCache#createKey(File, Collection, Collection, String, String, String)}.
+     * 
+     * @throws Exception
+     *             when accessing the cache failed
+     */
+    @Test
+    public void testChangedSourceInvalidatesEntry() throws Exception {
+        cache.store(component, createKey(), logDir);
+        write(new File(sourceDir, "A.java"), "public class A { int value; }");
+
+        assertThat(cache.restore(component, createKey(), logDir), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link ResultCache#createKey(File, Collection, Collection, String, String, String)}.
+     * 
+     * @throws Exception
+     *             when accessing the cache failed
+     */
+    @Test
+    public void testChangedSettingsInBuildFileInvalidateEntry() throws Exception {
+        cache.store(component, createKey(), logDir);
+        write(buildFile, "<project><junit fork=\"yes\" /></project>");
+
+        assertThat(cache.restore(component, createKey(), logDir), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link ResultCache#createKey(File, Collection, Collection, String, String, String)}.
+     * 
+     * @throws Exception
+     *             when accessing the cache failed
+     */
+    @Test
+    public void testChangedArchiveInClassPathInvalidatesEntry() throws Exception {
+        cache.store(component, createKey(), logDir);
+        write(new File(classPathDir, "api.jar"), "rebuilt api");
+
+        assertThat(cache.restore(component, createKey(), logDir), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link ResultCache#createKey(File, Collection, Collection, String, String, String)}.
+     * 
+     * @throws Exception
+     *             when accessing the cache failed
+     */
+    @Test
+    public void testChangedPluginVersionInvalidatesEntry() throws Exception {
+        cache.store(component, createKey(), logDir);
+
+        assertThat(cache.restore(component, cache.createKey(buildFile, Arrays.asList(sourceDir.getAbsolutePath()),
+            Arrays.asList(classPathDir.getAbsolutePath()), "UTF-8", "1.5", "2.0"), logDir), equalTo(false));
+    }
+
+    /**
+     * Create the key of the development component for the current build file, sources and class path.
+     * 
+     * @return the key of the development component
+     * @throws IOException
+     *             when reading the files failed
+     */
+    private String createKey() throws IOException {
+        return cache.createKey(buildFile, Arrays.asList(sourceDir.getAbsolutePath()), Arrays.asList(classPathDir.getAbsolutePath()),
+            "UTF-8", "1.5", "1.0");
+    }
+
+    /**
+     * Write the given content into the given file.
+     * 
+     * @param file
+     *            file to write
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             when writing the file failed
+     */
+    private void write(final File file, final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read the content of the given file.
+     * 
+     * @param file
+     *            file to read
+     * @return content of the file
+     * @throws IOException
+     *             when reading the file failed
+     */
+    private String read(final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+
+        try {
+            final byte[] content = new byte[(int)file.length()];
+            int offset = 0;
+            int count;
+
+            while (offset < content.length && (count = in.read(content, offset, content.length - offset)) != -1) {
+                offset += count;
+            }
+
+            return new String(content, 0, offset, "UTF-8");
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Delete the given file or folder including its content.
+     * 
+     * @param file
+     *            file or folder to delete
+     */
+    private void delete(final File file) {
+        final File[] files = file.listFiles();
+
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link SourceManifest}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class SourceManifestTest {
+    /**
+     * source folder to scan.
+     */
+    private File folder;
+
+    /**
+     * Create a source folder containing sources, tests, resources and version control meta data.
+     * 
+     * @throws IOException
+     *             when the files could not be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("sources", "");
+        folder.delete();
+
+        createFile("org/example/Util.java");
+        createFile("org/example/UtilTest.java");
+        createFile("org/example/messages.properties");
+        createFile("META-INF/service.wsdl");
+        createFile(".svn/entries");
+    }
+
+    /**
+     * Create an empty file in the source folder.
+     * 
+     * @param path
+     *            path of file relative to the source folder
+     * @throws IOException
+     *             when the file could not be created
+     */
+    private void createFile(final String path) throws IOException {
+        final File file = new File(folder, path);
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+    }
+
+    /**
+     * Remove the source folder.
+     */
+    @After
+    public void tearDown() {
+        delete(folder);
+    }
+
+    /**
+     * Delete the given file or folder including its contents.
+     * 
+     * @param file
+     *            file or folder to delete
+     */
+    private void delete(final File file) {
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Test method for {@link SourceManifest#scan(java.util.Collection)}.
+     */
+    @Test
+    public void testScanClassifiesFiles() {
+        final SourceManifest manifest = SourceManifest.scan(Arrays.asList(folder.getAbsolutePath(), "/does/not/exist"));
+
+        assertThat(manifest.getJavaSources(),
+            equalTo(new TreeSet<String>(Arrays.asList("org/example/Util.java", "org/example/UtilTest.java"))));
+        assertThat(manifest.getTests(), equalTo(new TreeSet<String>(Arrays.asList("org/example/UtilTest.java"))));
+        assertThat(manifest.getResources(),
+            equalTo(new TreeSet<String>(Arrays.asList("META-INF/service.wsdl", "org/example/messages.properties"))));
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link TestDurationIndex}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class TestDurationIndexTest {
+    /**
+     * folder containing JUnit reports and the index.
+     */
+    private File folder;
+
+    /**
+     * Create a folder containing JUnit reports.
+     * 
+     * @throws IOException
+     *             when the reports could not be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("durations", "");
+        folder.delete();
+        folder.mkdirs();
+
+        writeReport("org.example.ATest", "1.5");
+        writeReport("org.example.BTest", "0.25");
+        writeReport("CTest", "2");
+    }
+
+    /**
+     * Remove the folder containing JUnit reports.
+     */
+    @After
+    public void tearDown() {
+        for (final File file : folder.listFiles()) {
+            file.delete();
+        }
+
+        folder.delete();
+    }
+
+    /**
+     * Test method for {@link TestDurationIndex#update(String, File)}.
+     * 
+     * @throws IOException
+     *             when reading the reports failed
+     */
+    @Test
+    public void testUpdateReadsDurationsFromReports() throws IOException {
+        final TestDurationIndex index = new TestDurationIndex(new File(folder, "index.dat"));
+        index.update("example.org:dc", folder);
+
+        assertThat(index.getDurations("example.org:dc").get("org.example.ATest"), equalTo(1500));
+        assertThat(index.getTotalDuration("example.org:dc"), equalTo(3750L));
+        assertThat(index.getTotalDuration("example.org:other"), equalTo(-1L));
+    }
+
+    /**
+     * Test method for {@link TestDurationIndex#store()} and {@link TestDurationIndex#load()}.
+     * 
+     * @throws IOException
+     *             when reading or writing the index failed
+     */
+    @Test
+    public void testStoredIndexIsLoadedAgain() throws IOException {
+        final File file = new File(folder, "index.dat");
+        final TestDurationIndex index = new TestDurationIndex(file);
+        index.update("example.org:dc", folder);
+        index.store();
+        index.store();
+
+        final TestDurationIndex loaded = new TestDurationIndex(file);
+        loaded.load();
+
+        assertThat(loaded.getDurations("example.org:dc"), equalTo(index.getDurations("example.org:dc")));
+        assertThat(loaded.getDurations("example.org:dc").get("CTest"), equalTo(2000));
+    }
+
+    /**
+     * Write a JUnit report for the given test class.
+     * 
+     * @param testClass
+     *            name of test class
+     * @param time
+     *            duration in seconds
+     * @throws IOException
+     *             when writing the report failed
+     */
+    private void writeReport(final String testClass, final String time) throws IOException {
+        final OutputStream out = new FileOutputStream(new File(folder, "TEST-" + testClass + ".xml"));
+
+        try {
+            out.write(String.format("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<testsuite name=\"%s\" time=\"%s\" tests=\"1\" />\n",
+                testClass, time).getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+}
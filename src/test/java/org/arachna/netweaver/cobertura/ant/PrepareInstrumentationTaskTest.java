@@ -0,0 +1,256 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link PrepareInstrumentationTask}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class PrepareInstrumentationTaskTest {
+    /**
+     * reference id the class files to instrument are registered with.
+     */
+    private static final String REF_ID = "changed-classes";
+
+    /**
+     * name of property set when no class file needs to be instrumented.
+     */
+    private static final String UP_TO_DATE = "instrumentation.uptodate";
+
+    /**
+     * folder containing classes, instrumented classes, manifest and data file.
+     */
+    private File folder;
+
+    /**
+     * folder containing the compiled classes.
+     */
+    private File classesDir;
+
+    /**
+     * folder containing the instrumented classes.
+     */
+    private File instrumentedDir;
+
+    /**
+     * project the task is executed in.
+     */
+    private Project project;
+
+    /**
+     * Create the class files <code>org/example/A.class</code> and <code>org/example/B.class</code>.
+     * 
+     * @throws IOException
+     *             when writing the class files failed
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("prepare-instrumentation", "");
+        folder.delete();
+        classesDir = new File(folder, "classes");
+        instrumentedDir = new File(folder, "instrumented-classes");
+        new File(classesDir, "org/example").mkdirs();
+        write(new File(classesDir, "org/example/A.class"), "A");
+        write(new File(classesDir, "org/example/B.class"), "B");
+    }
+
+    /**
+     * Remove the folder containing classes, instrumented classes, manifest and data file.
+     */
+    @After
+    public void tearDown() {
+        delete(folder);
+    }
+
+    /**
+     * Test method for {@link PrepareInstrumentationTask#execute()}.
+     * 
+     * @throws IOException
+     *             when instrumenting the class files failed
+     */
+    @Test
+    public void testFirstRunInstrumentsAllClasses() throws IOException {
+        assertThat(prepare(), equalTo(Arrays.asList("org/example/A.class", "org/example/B.class")));
+        assertThat(project.getProperty(UP_TO_DATE) == null, equalTo(true));
+    }
+
+    /**
+     * Test method for {@link PrepareInstrumentationTask#execute()}.
+     * 
+     * @throws IOException
+     *             when instrumenting the class files failed
+     */
+    @Test
+    public void testUnchangedClassesAreUpToDate() throws IOException {
+        prepare();
+
+        assertThat(prepare().isEmpty(), equalTo(true));
+        assertThat(project.getProperty(UP_TO_DATE), equalTo("true"));
+    }
+
+    /**
+     * Test method for {@link PrepareInstrumentationTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing a class file or instrumenting the class files failed
+     */
+    @Test
+    public void testChangedClassIsInstrumented() throws IOException {
+        prepare();
+        write(new File(classesDir, "org/example/A.class"), "A changed");
+
+        assertThat(prepare(), equalTo(Arrays.asList("org/example/A.class")));
+    }
+
+    /**
+     * Test method for {@link PrepareInstrumentationTask#execute()}.
+     * 
+     * @throws IOException
+     *             when instrumenting the class files failed
+     */
+    @Test
+    public void testMissingInstrumentedClassIsInstrumentedAgain() throws IOException {
+        prepare();
+        new File(instrumentedDir, "org/example/B.class").delete();
+
+        assertThat(prepare(), equalTo(Arrays.asList("org/example/B.class")));
+        assertThat(project.getProperty(UP_TO_DATE) == null, equalTo(true));
+    }
+
+    /**
+     * Test method for {@link PrepareInstrumentationTask#execute()}.
+     * 
+     * @throws IOException
+     *             when instrumenting the class files failed
+     */
+    @Test
+    public void testInstrumentedCopyOfRemovedClassIsDeleted() throws IOException {
+        prepare();
+        new File(classesDir, "org/example/B.class").delete();
+
+        assertThat(prepare().isEmpty(), equalTo(true));
+        assertThat(new File(instrumentedDir, "org/example/B.class").exists(), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link PrepareInstrumentationTask#execute()}.
+     * 
+     * @throws IOException
+     *             when instrumenting the class files failed
+     */
+    @Test
+    public void testMissingDataFileInstrumentsAllClasses() throws IOException {
+        prepare();
+        new File(folder, "cobertura.ser").delete();
+
+        assertThat(prepare(), equalTo(Arrays.asList("org/example/A.class", "org/example/B.class")));
+    }
+
+    /**
+     * Run the task like the generated build file does: the selected class files are 'instrumented' by copying them into the folder of
+     * instrumented classes, the data file is written and the new manifest replaces the old one.
+     * 
+     * @return the class files selected for instrumentation sorted by name
+     * @throws IOException
+     *             when copying a class file failed
+     */
+    private List<String> prepare() throws IOException {
+        project = new Project();
+        project.init();
+
+        final File dataFile = new File(folder, "cobertura.ser");
+        final File manifest = new File(folder, "instrumentation.fingerprints");
+        final PrepareInstrumentationTask task = new PrepareInstrumentationTask();
+        task.setProject(project);
+        task.setClassesDir(classesDir);
+        task.setInstrumentedDir(instrumentedDir);
+        task.setDataFile(dataFile);
+        task.setManifest(manifest);
+        task.setRefId(REF_ID);
+        task.setUpToDateProperty(UP_TO_DATE);
+        task.execute();
+
+        final FileSet selected = (FileSet)project.getReference(REF_ID);
+        final String[] classFiles = selected.getDirectoryScanner(project).getIncludedFiles();
+
+        for (final String classFile : classFiles) {
+            final File instrumentedClass = new File(instrumentedDir, classFile);
+            instrumentedClass.getParentFile().mkdirs();
+            write(instrumentedClass, "instrumented " + classFile);
+        }
+
+        CoverageDataFileHandler.saveCoverageData(new ProjectData(), dataFile);
+        manifest.delete();
+        new File(folder, "instrumentation.fingerprints.new").renameTo(manifest);
+
+        final List<String> names = new ArrayList<String>();
+
+        for (final String classFile : new TreeSet<String>(Arrays.asList(classFiles))) {
+            names.add(classFile.replace(File.separatorChar, '/'));
+        }
+
+        return names;
+    }
+
+    /**
+     * Write the given content into the given file.
+     * 
+     * @param file
+     *            file to write
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             when writing the file failed
+     */
+    private void write(final File file, final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Delete the given file or folder including its content.
+     * 
+     * @param file
+     *            file or folder to delete
+     */
+    private void delete(final File file) {
+        final File[] files = file.listFiles();
+
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
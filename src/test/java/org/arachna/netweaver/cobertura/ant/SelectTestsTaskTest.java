@@ -0,0 +1,299 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unittests for {@link SelectTestsTask}.
+ * 
+ * @author Dirk Weigenand
+ */
+public class SelectTestsTaskTest {
+    /**
+     * signature of class path, target version and encoding used for the test runs.
+     */
+    private static final String SIGNATURE = "signature";
+
+    /**
+     * reference id the selected tests are registered with.
+     */
+    private static final String REF_ID = "selected-tests";
+
+    /**
+     * folder containing sources, classes, reports and data files.
+     */
+    private File folder;
+
+    /**
+     * folder containing the sources.
+     */
+    private File sourceDir;
+
+    /**
+     * folder containing the compiled classes.
+     */
+    private File classesDir;
+
+    /**
+     * folder containing the JUnit reports.
+     */
+    private File reportDir;
+
+    /**
+     * Create sources of the classes <code>A</code>, <code>B</code> (using <code>A</code>) and <code>C</code> and of the tests
+     * <code>BTest</code> (using <code>B</code>) and <code>CTest</code> (using <code>C</code>) and compile them.
+     * 
+     * @throws IOException
+     *             when writing sources or data files failed
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("select-tests", "");
+        folder.delete();
+        sourceDir = new File(folder, "src");
+        classesDir = new File(folder, "classes");
+        reportDir = new File(folder, "junit");
+        sourceDir.mkdirs();
+        classesDir.mkdirs();
+        reportDir.mkdirs();
+
+        write(new File(sourceDir, "A.java"), "public class A { }");
+        write(new File(sourceDir, "B.java"), "public class B { A a; }");
+        write(new File(sourceDir, "C.java"), "public class C { }");
+        write(new File(sourceDir, "BTest.java"), "public class BTest { B b; }");
+        write(new File(sourceDir, "CTest.java"), "public class CTest { C c; }");
+        compile("A.java", "B.java", "C.java", "BTest.java", "CTest.java");
+        CoverageDataFileHandler.saveCoverageData(new ProjectData(), new File(folder, "instrumentation.ser"));
+    }
+
+    /**
+     * Remove the folder containing sources, classes, reports and data files.
+     */
+    @After
+    public void tearDown() {
+        delete(folder);
+    }
+
+    /**
+     * Test method for {@link SelectTestsTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing the manifest failed
+     */
+    @Test
+    public void testFirstRunSelectsAllTests() throws IOException {
+        assertThat(select(SIGNATURE), equalTo(Arrays.asList("BTest.class", "CTest.class")));
+    }
+
+    /**
+     * Test method for {@link SelectTestsTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing sources or the manifest failed
+     */
+    @Test
+    public void testUnchangedClassesSelectNoTests() throws IOException {
+        select(SIGNATURE);
+
+        assertThat(select(SIGNATURE).isEmpty(), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link SelectTestsTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing sources or the manifest failed
+     */
+    @Test
+    public void testChangedClassSelectsTestsUsingItIndirectly() throws IOException {
+        select(SIGNATURE);
+        write(new File(sourceDir, "A.java"), "public class A { int value; }");
+        compile("A.java");
+
+        assertThat(select(SIGNATURE), equalTo(Arrays.asList("BTest.class")));
+    }
+
+    /**
+     * Test method for {@link SelectTestsTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing the manifest failed
+     */
+    @Test
+    public void testMissingReportSelectsTest() throws IOException {
+        select(SIGNATURE);
+        new File(reportDir, "TEST-CTest.xml").delete();
+
+        assertThat(select(SIGNATURE), equalTo(Arrays.asList("CTest.class")));
+    }
+
+    /**
+     * Test method for {@link SelectTestsTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing the manifest failed
+     */
+    @Test
+    public void testChangedSignatureSelectsAllTests() throws IOException {
+        select(SIGNATURE);
+
+        assertThat(select("rebuilt archive in class path"), equalTo(Arrays.asList("BTest.class", "CTest.class")));
+    }
+
+    /**
+     * Test method for {@link SelectTestsTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing the resource or the manifest failed
+     */
+    @Test
+    public void testChangedResourceSelectsAllTests() throws IOException {
+        write(new File(classesDir, "messages.properties"), "greeting=hello");
+        select(SIGNATURE);
+        write(new File(classesDir, "messages.properties"), "greeting=hi");
+
+        assertThat(select(SIGNATURE), equalTo(Arrays.asList("BTest.class", "CTest.class")));
+    }
+
+    /**
+     * Test method for {@link SelectTestsTask#execute()}.
+     * 
+     * @throws IOException
+     *             when writing the manifest failed
+     */
+    @Test
+    public void testMissingCoverageDataSelectsAllTests() throws IOException {
+        select(SIGNATURE);
+        new File(folder, "cobertura.ser").delete();
+
+        assertThat(select(SIGNATURE), equalTo(Arrays.asList("BTest.class", "CTest.class")));
+    }
+
+    /**
+     * Run the task selecting tests like a test run would: the new manifest replaces the old one and each selected test writes its
+     * report.
+     * 
+     * @param signature
+     *            signature of class path, target version and encoding
+     * @return the class files of the selected tests sorted by name
+     * @throws IOException
+     *             when writing a report failed
+     */
+    private List<String> select(final String signature) throws IOException {
+        final Project project = new Project();
+        project.init();
+
+        final SelectTestsTask task = new SelectTestsTask();
+        task.setProject(project);
+        task.setClassesDir(classesDir);
+        final File manifest = new File(folder, "tests.fingerprints");
+        task.setManifest(manifest);
+        task.setSignature(signature);
+        task.setReportDir(reportDir);
+        task.setDataFile(new File(folder, "cobertura.ser"));
+        task.setInstrumentationDataFile(new File(folder, "instrumentation.ser"));
+        task.setRefId(REF_ID);
+
+        final FileSet tests = new FileSet();
+        tests.setProject(project);
+        tests.setDir(sourceDir);
+        tests.setIncludes("*Test.java");
+        task.addFileSet(tests);
+        task.execute();
+
+        manifest.delete();
+        new File(folder, "tests.fingerprints.new").renameTo(manifest);
+
+        final FileSet selected = (FileSet)project.getReference(REF_ID);
+        final List<String> classFiles = Arrays.asList(selected.getDirectoryScanner(project).getIncludedFiles());
+
+        for (final String classFile : classFiles) {
+            write(new File(reportDir, "TEST-" + classFile.replace(".class", ".xml")), "<testsuite />");
+        }
+
+        return Arrays.asList(new TreeSet<String>(classFiles).toArray(new String[classFiles.size()]));
+    }
+
+    /**
+     * Compile the given sources into the classes folder.
+     * 
+     * @param sources
+     *            names of the sources to compile
+     */
+    private void compile(final String... sources) {
+        final String[] arguments = new String[sources.length + 4];
+        arguments[0] = "-d";
+        arguments[1] = classesDir.getAbsolutePath();
+        arguments[2] = "-cp";
+        arguments[3] = classesDir.getAbsolutePath();
+
+        for (int i = 0; i < sources.length; i++) {
+            arguments[i + 4] = new File(sourceDir, sources[i]).getAbsolutePath();
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertThat(compiler.run(null, null, null, arguments), equalTo(0));
+    }
+
+    /**
+     * Write the given content into the given file.
+     * 
+     * @param file
+     *            file to write
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             when writing the file failed
+     */
+    private void write(final File file, final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Delete the given file or folder including its content.
+     * 
+     * @param file
+     *            file or folder to delete
+     */
+    private void delete(final File file) {
+        final File[] files = file.listFiles();
+
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,512 @@
+/**
+ * 
+ */
+package org.arachna.netweaver.cobertura.ant;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.Path;
+import org.apache.tools.ant.types.Reference;
+import org.hamcrest.Matcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Unittests for {@link TestRunnerTask}.
+ * 
+ * The tests run a small fixture suite against a minimal stand-in for the Cobertura runtime which records the classes touched by the
+ * 'instrumented' fixture class. Like the Cobertura runtime it caches its data file in <code>CoverageDataFileHandler.defaultFile</code>
+ * and merges the recorded data into the existing data file when saving it.
+ * 
+ * @author Dirk Weigenand
+ */
+public class TestRunnerTaskTest {
+    /**
+     * system property naming the data file the Cobertura runtime saves coverage data to.
+     */
+    private static final String DATAFILE_PROPERTY = "net.sourceforge.cobertura.datafile";
+
+    /**
+     * system property counting how often the runtime stand-in was loaded.
+     */
+    private static final String LOADS_PROPERTY = "cobertura.fixture.loads";
+
+    /**
+     * name of the fixture test class.
+     */
+    private static final String TEST_CLASS = "org.example.CalculatorTest";
+
+    /**
+     * data file handler of the runtime stand-in, caches the data file like the one of Cobertura.
+     */
+    private static final String DATA_FILE_HANDLER = "package net.sourceforge.cobertura.coveragedata;\n"
+        + "public class CoverageDataFileHandler {\n" + "  private static java.io.File defaultFile;\n"
+        + "  public static java.io.File getDefaultDataFile() {\n" + "    if (defaultFile == null) {\n"
+        + "      defaultFile = new java.io.File(System.getProperty(\"" + DATAFILE_PROPERTY + "\", \"cobertura.ser\"));\n" + "    }\n"
+        + "    return defaultFile;\n" + "  }\n" + "}\n";
+
+    /**
+     * project data of the runtime stand-in recording the names of touched classes and merging them into the data file on save.
+     */
+    private static final String PROJECT_DATA = "package net.sourceforge.cobertura.coveragedata;\n" + "import java.io.*;\n"
+        + "import java.util.*;\n" + "public class ProjectData {\n"
+        + "  private static final Set<String> TOUCHED = new TreeSet<String>();\n" + "  static {\n" + "    System.setProperty(\""
+        + LOADS_PROPERTY + "\", Integer.toString(Integer.getInteger(\"" + LOADS_PROPERTY + "\", 0) + 1));\n" + "  }\n"
+        + "  public static ProjectData getGlobalProjectData() {\n" + "    return new ProjectData();\n" + "  }\n"
+        + "  public static synchronized void touch(String name) {\n" + "    TOUCHED.add(name);\n" + "  }\n"
+        + "  public static synchronized void saveGlobalProjectData() throws IOException {\n"
+        + "    File file = CoverageDataFileHandler.getDefaultDataFile();\n" + "    Set<String> data = new TreeSet<String>(TOUCHED);\n"
+        + "    if (file.exists()) {\n" + "      BufferedReader in = new BufferedReader(new FileReader(file));\n"
+        + "      for (String line = in.readLine(); line != null; line = in.readLine()) {\n" + "        data.add(line);\n" + "      }\n"
+        + "      in.close();\n" + "    }\n" + "    PrintWriter out = new PrintWriter(new FileWriter(file));\n"
+        + "    for (String name : data) {\n" + "      out.println(name);\n" + "    }\n" + "    out.close();\n"
+        + "    TOUCHED.clear();\n" + "  }\n" + "}\n";
+
+    /**
+     * 'instrumented' class under test reporting its use to the runtime stand-in.
+     */
+    private static final String CALCULATOR = "package org.example;\n" + "public class Calculator {\n"
+        + "  public int add(int a, int b) {\n"
+        + "    net.sourceforge.cobertura.coveragedata.ProjectData.touch(\"org.example.Calculator\");\n" + "    return a + b;\n"
+        + "  }\n" + "}\n";
+
+    /**
+     * fixture test with a passing and a failing test.
+     */
+    private static final String CALCULATOR_TEST = "package org.example;\n" + "import org.junit.Test;\n"
+        + "public class CalculatorTest {\n" + "  @Test\n" + "  public void testAdd() {\n"
+        + "    if (new Calculator().add(1, 2) != 3) {\n" + "      throw new AssertionError(\"1 + 2\");\n" + "    }\n" + "  }\n"
+        + "  @Test\n" + "  public void testFails() {\n" + "    throw new AssertionError(\"expected failure\");\n" + "  }\n" + "}\n";
+
+    /**
+     * fixture test which does not finish in time.
+     */
+    private static final String HANGING_TEST = "package org.example;\n" + "import org.junit.Test;\n"
+        + "public class HangingTest {\n" + "  @Test\n" + "  public void testHangs() throws InterruptedException {\n"
+        + "    Thread.sleep(60000);\n" + "  }\n" + "}\n";
+
+    /**
+     * folder containing runtime, fixture classes, reports and data files.
+     */
+    private File folder;
+
+    /**
+     * folder containing the runtime stand-in.
+     */
+    private File runtimeDir;
+
+    /**
+     * folder containing the compiled fixture classes.
+     */
+    private File classesDir;
+
+    /**
+     * folder to write the JUnit reports to.
+     */
+    private File reportDir;
+
+    /**
+     * the JUnit archives the fixture classes are run with.
+     */
+    private final Set<File> junit = new LinkedHashSet<File>();
+
+    /**
+     * Compile the runtime stand-in and the fixture classes.
+     * 
+     * @throws Exception
+     *             when writing or compiling the sources failed
+     */
+    @Before
+    public void setUp() throws Exception {
+        folder = File.createTempFile("test-runner", "");
+        folder.delete();
+        runtimeDir = new File(folder, "runtime");
+        classesDir = new File(folder, "classes");
+        reportDir = new File(folder, "junit");
+        final File sourceDir = new File(folder, "src");
+        runtimeDir.mkdirs();
+        classesDir.mkdirs();
+        new File(sourceDir, "net/sourceforge/cobertura/coveragedata").mkdirs();
+        new File(sourceDir, "org/example").mkdirs();
+        junit.add(getLocation(JUnitCore.class));
+        junit.add(getLocation(Matcher.class));
+        System.clearProperty(LOADS_PROPERTY);
+
+        final File dataFileHandler = new File(sourceDir, "net/sourceforge/cobertura/coveragedata/CoverageDataFileHandler.java");
+        final File projectData = new File(sourceDir, "net/sourceforge/cobertura/coveragedata/ProjectData.java");
+        write(dataFileHandler, DATA_FILE_HANDLER);
+        write(projectData, PROJECT_DATA);
+        compile(runtimeDir, runtimeDir.getAbsolutePath(), dataFileHandler, projectData);
+
+        final File calculator = new File(sourceDir, "org/example/Calculator.java");
+        final File calculatorTest = new File(sourceDir, "org/example/CalculatorTest.java");
+        write(calculator, CALCULATOR);
+        write(calculatorTest, CALCULATOR_TEST);
+        final StringBuilder classPath = new StringBuilder(runtimeDir.getAbsolutePath());
+
+        for (final File archive : junit) {
+            classPath.append(File.pathSeparatorChar).append(archive.getAbsolutePath());
+        }
+
+        compile(classesDir, classPath.toString(), calculator, calculatorTest);
+    }
+
+    /**
+     * Remove the folder containing runtime, fixture classes, reports and data files.
+     */
+    @After
+    public void tearDown() {
+        System.clearProperty(LOADS_PROPERTY);
+        delete(folder);
+    }
+
+    /**
+     * Test method for {@link TestRunnerTask#execute()}.
+     * 
+     * @throws Exception
+     *             when reading the report failed
+     */
+    @Test
+    public void testReportHasFormatOfJUnitXmlFormatter() throws Exception {
+        final Project project = createProject(null);
+        execute(project, new File(folder, "cobertura.ser"), null);
+
+        final File report = new File(reportDir, "TEST-" + TEST_CLASS + ".xml");
+        assertThat(report.exists(), equalTo(true));
+        assertThat(project.getProperty("test.failed"), equalTo("true"));
+
+        final Element suite =
+            DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(report).getDocumentElement();
+        assertThat(suite.getTagName(), equalTo("testsuite"));
+        assertThat(suite.getAttribute("name"), equalTo(TEST_CLASS));
+        assertThat(suite.getAttribute("tests"), equalTo("2"));
+        assertThat(suite.getAttribute("failures"), equalTo("1"));
+        assertThat(suite.getAttribute("errors"), equalTo("0"));
+        assertThat(suite.getAttribute("skipped"), equalTo("0"));
+        assertThat(suite.getAttribute("timestamp").length() > 0, equalTo(true));
+        assertThat(suite.getElementsByTagName("properties").getLength(), equalTo(1));
+        assertThat(suite.getElementsByTagName("system-out").getLength(), equalTo(1));
+        assertThat(suite.getElementsByTagName("system-err").getLength(), equalTo(1));
+
+        final NodeList testCases = suite.getElementsByTagName("testcase");
+        assertThat(testCases.getLength(), equalTo(2));
+        assertThat(((Element)testCases.item(0)).getAttribute("classname"), equalTo(TEST_CLASS));
+        assertThat(((Element)testCases.item(0)).getAttribute("name"), equalTo("testAdd"));
+        assertThat(((Element)testCases.item(0)).getElementsByTagName("failure").getLength(), equalTo(0));
+        assertThat(((Element)testCases.item(1)).getAttribute("name"), equalTo("testFails"));
+
+        final Element failure = (Element)((Element)testCases.item(1)).getElementsByTagName("failure").item(0);
+        assertThat(failure.getAttribute("message"), equalTo("expected failure"));
+        assertThat(failure.getAttribute("type"), equalTo(AssertionError.class.getName()));
+        assertThat(failure.getTextContent().contains("expected failure"), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link TestRunnerTask#execute()}.
+     * 
+     * @throws IOException
+     *             when reading or writing the data file failed
+     */
+    @Test
+    public void testCoverageDataIsMergedIntoDataFile() throws IOException {
+        final File dataFile = new File(folder, "cobertura.ser");
+        write(dataFile, "org.example.Instrumented\n");
+        System.setProperty(DATAFILE_PROPERTY, "previous.ser");
+
+        try {
+            execute(createProject(null), dataFile, null);
+
+            assertThat(readLines(dataFile), equalTo(Arrays.asList("org.example.Calculator", "org.example.Instrumented")));
+            assertThat(System.getProperty(DATAFILE_PROPERTY), equalTo("previous.ser"));
+        }
+        finally {
+            System.clearProperty(DATAFILE_PROPERTY);
+        }
+
+        execute(createProject(null), dataFile, null);
+        assertThat(System.getProperty(DATAFILE_PROPERTY) == null, equalTo(true));
+    }
+
+    /**
+     * Test method for {@link TestRunnerTask#execute()}.
+     * 
+     * @throws IOException
+     *             when reading the data files failed
+     */
+    @Test
+    public void testEachDataFileGetsCoverageOfItsOwnTests() throws IOException {
+        final File first = new File(folder, "first.ser");
+        final File second = new File(folder, "second.ser");
+
+        execute(createProject(null), first, null);
+        // the runtime cached the first data file, it has to be reset to save to the second one
+        execute(createProject(null), second, null);
+
+        assertThat(readLines(first), equalTo(Arrays.asList("org.example.Calculator")));
+        assertThat(readLines(second), equalTo(Arrays.asList("org.example.Calculator")));
+        assertThat(Integer.getInteger(LOADS_PROPERTY), equalTo(1));
+    }
+
+    /**
+     * Test method for {@link TestRunnerTask#execute()}.
+     * 
+     * @throws Exception
+     *             when locating the classes of the task failed
+     */
+    @Test
+    public void testRuntimeIsSharedThroughLoaderRef() throws Exception {
+        // a copy of the task class with runtimes of its own, like the one of the build passing its loader to subant
+        final ClassLoader loader =
+            new URLClassLoader(new URL[] { getLocation(TestRunnerTask.class).toURI().toURL(),
+                getLocation(Task.class).toURI().toURL() }, ClassLoader.getSystemClassLoader().getParent());
+
+        execute(createProject(loader), new File(folder, "first.ser"), "cobertura.loader");
+        execute(createProject(loader), new File(folder, "second.ser"), "cobertura.loader");
+        assertThat(Integer.getInteger(LOADS_PROPERTY), equalTo(1));
+
+        // without loader reference the runtimes of the task class of this test are used
+        execute(createProject(null), new File(folder, "third.ser"), null);
+        assertThat(Integer.getInteger(LOADS_PROPERTY), equalTo(2));
+    }
+
+    /**
+     * Test method for {@link TestRunnerTask#execute()}.
+     * 
+     * @throws Exception
+     *             when compiling the fixture or reading the reports failed
+     */
+    @Test
+    public void testTimedOutTestClassIsReportedAsError() throws Exception {
+        final File hangingTest = new File(folder, "src/org/example/HangingTest.java");
+        write(hangingTest, HANGING_TEST);
+        final StringBuilder classPath = new StringBuilder();
+
+        for (final File archive : junit) {
+            classPath.append(archive.getAbsolutePath()).append(File.pathSeparatorChar);
+        }
+
+        compile(classesDir, classPath.toString(), hangingTest);
+
+        final Project project = createProject(null);
+        final long start = System.currentTimeMillis();
+        execute(project, new File(folder, "cobertura.ser"), null, 500);
+
+        assertThat(System.currentTimeMillis() - start < 30000, equalTo(true));
+        assertThat(project.getProperty("test.failed"), equalTo("true"));
+
+        final Element suite =
+            DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(reportDir, "TEST-org.example.HangingTest.xml"))
+                .getDocumentElement();
+        assertThat(suite.getAttribute("errors"), equalTo("1"));
+        assertThat(suite.getAttribute("failures"), equalTo("0"));
+
+        final Element testCase = (Element)suite.getElementsByTagName("testcase").item(0);
+        assertThat(testCase.getAttribute("name"), equalTo("timeout"));
+        assertThat(((Element)testCase.getElementsByTagName("error").item(0)).getAttribute("message"),
+            equalTo("Timeout occurred after 500 ms."));
+
+        // the test classes after the one timed out are run nevertheless
+        assertThat(new File(reportDir, "TEST-" + TEST_CLASS + ".xml").exists(), equalTo(true));
+    }
+
+    /**
+     * Create a project like the one of the build file of a development component.
+     * 
+     * @param loader
+     *            class loader to register as <code>cobertura.loader</code> (may be <code>null</code>)
+     * @return the project to run the task in
+     */
+    private Project createProject(final ClassLoader loader) {
+        final Project project = new Project();
+        project.init();
+
+        final Path runtime = new Path(project);
+        runtime.setLocation(runtimeDir);
+        project.addReference("cobertura.path", runtime);
+
+        if (loader != null) {
+            project.addReference("cobertura.loader", loader);
+        }
+
+        return project;
+    }
+
+    /**
+     * Run the fixture suite in the given project.
+     * 
+     * @param project
+     *            project to run the task in
+     * @param dataFile
+     *            data file to merge the coverage data into
+     * @param loaderRef
+     *            id of the reference to the class loader holding the runtimes (may be <code>null</code>)
+     */
+    private void execute(final Project project, final File dataFile, final String loaderRef) {
+        execute(project, dataFile, loaderRef, 0);
+    }
+
+    /**
+     * Run the fixture suite in the given project.
+     * 
+     * @param project
+     *            project to run the task in
+     * @param dataFile
+     *            data file to merge the coverage data into
+     * @param loaderRef
+     *            id of the reference to the class loader holding the runtimes (may be <code>null</code>)
+     * @param timeout
+     *            time in milliseconds the tests of a test class may run (<code>0</code> when not limited)
+     */
+    private void execute(final Project project, final File dataFile, final String loaderRef, final long timeout) {
+        final TestRunnerTask task = new TestRunnerTask();
+        task.setTimeout(timeout);
+        task.setProject(project);
+        task.setRuntimeClassPathRef(new Reference(project, "cobertura.path"));
+        task.setLoaderRef(loaderRef);
+        task.setDataFile(dataFile);
+        task.setReportDir(reportDir);
+        task.setFailureProperty("test.failed");
+        task.createClassPath().setLocation(classesDir);
+
+        for (final File archive : junit) {
+            task.createClassPath().setLocation(archive);
+        }
+
+        final FileSet tests = new FileSet();
+        tests.setProject(project);
+        tests.setDir(classesDir);
+        tests.setIncludes("**/*Test.class");
+        task.addFileSet(tests);
+        task.execute();
+    }
+
+    /**
+     * Returns the archive or folder the given class was loaded from.
+     * 
+     * @param clazz
+     *            class to locate
+     * @return the archive or folder containing the class
+     * @throws URISyntaxException
+     *             when the location could not be converted into a file
+     */
+    private File getLocation(final Class<?> clazz) throws URISyntaxException {
+        return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /**
+     * Compile the given sources into the given folder.
+     * 
+     * @param outputDir
+     *            folder to write the class files to
+     * @param classPath
+     *            class path to compile against
+     * @param sources
+     *            sources to compile
+     */
+    private void compile(final File outputDir, final String classPath, final File... sources) {
+        final List<String> arguments = new ArrayList<String>();
+        arguments.add("-d");
+        arguments.add(outputDir.getAbsolutePath());
+        arguments.add("-cp");
+        arguments.add(classPath);
+
+        for (final File source : sources) {
+            arguments.add(source.getAbsolutePath());
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertThat(compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])), equalTo(0));
+    }
+
+    /**
+     * Read the lines of the given file.
+     * 
+     * @param file
+     *            file to read
+     * @return lines of the file
+     * @throws IOException
+     *             when reading the file failed
+     */
+    private List<String> readLines(final File file) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lines.add(line);
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        return lines;
+    }
+
+    /**
+     * Write the given content into the given file.
+     * 
+     * @param file
+     *            file to write
+     * @param content
+     *            content to write
+     * @throws IOException
+     *             when writing the file failed
+     */
+    private void write(final File file, final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Delete the given file or folder including its content.
+     * 
+     * @param file
+     *            file or folder to delete
+     */
+    private void delete(final File file) {
+        final File[] files = file.listFiles();
+
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}